@@ -0,0 +1,72 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.CounterMetric;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares {@link CounterMetric#inc()} against the single {@link AtomicLong}
+ * which used to back it, at increasing levels of contention.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar CounterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+    private final AtomicLong atomicLong = new AtomicLong();
+    private final CounterMetric counter = new CounterMetric();
+
+    @Benchmark
+    @Threads(1)
+    public long atomicLong_01_threads() {
+        return atomicLong.addAndGet(1);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long atomicLong_08_threads() {
+        return atomicLong.addAndGet(1);
+    }
+
+    @Benchmark
+    @Threads(32)
+    public long atomicLong_32_threads() {
+        return atomicLong.addAndGet(1);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public long atomicLong_64_threads() {
+        return atomicLong.addAndGet(1);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void counter_01_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void counter_08_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(32)
+    public void counter_32_threads() {
+        counter.inc();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void counter_64_threads() {
+        counter.inc();
+    }
+}
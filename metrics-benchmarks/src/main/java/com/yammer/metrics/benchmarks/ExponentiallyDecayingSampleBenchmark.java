@@ -0,0 +1,106 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.benchmarks.baseline.SkipListExponentiallyDecayingSample;
+import com.yammer.metrics.stats.ExponentiallyDecayingSample;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Field;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares the heap-backed {@link ExponentiallyDecayingSample} against the
+ * skip-list implementation it replaced, using the reservoir size and alpha of
+ * a biased histogram.
+ * <p/>
+ * Samples only rescale once an hour, so the {@code rescale} benchmarks fill
+ * a reservoir and then bring its next rescale forward before every
+ * invocation; each of those updates also walks the whole reservoir.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar ExponentiallyDecayingSampleBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExponentiallyDecayingSampleBenchmark {
+    @State(Scope.Thread)
+    public static class Values {
+        private long next;
+
+        long next() {
+            return (next++ & 0xFFFF) * 1000;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Rescaling {
+        final SkipListExponentiallyDecayingSample skipList = new SkipListExponentiallyDecayingSample(1028, 0.015);
+        final ExponentiallyDecayingSample heap = new ExponentiallyDecayingSample(1028, 0.015);
+
+        @Setup(Level.Trial)
+        public void fill() {
+            for (int i = 0; i < 1028; i++) {
+                skipList.update(i);
+                heap.update(i);
+            }
+        }
+
+        @Setup(Level.Invocation)
+        public void scheduleRescale() throws Exception {
+            dueNow(skipList);
+            dueNow(heap);
+        }
+
+        private static void dueNow(Object sample) throws Exception {
+            final Field field = sample.getClass().getDeclaredField("nextScaleTime");
+            field.setAccessible(true);
+            ((AtomicLong) field.get(sample)).set(0);
+        }
+    }
+
+    private final SkipListExponentiallyDecayingSample skipList =
+            new SkipListExponentiallyDecayingSample(1028, 0.015);
+    private final ExponentiallyDecayingSample heap = new ExponentiallyDecayingSample(1028, 0.015);
+
+    @Benchmark
+    @Threads(1)
+    public void skipList_01_threads(Values values) {
+        skipList.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void skipList_08_threads(Values values) {
+        skipList.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void heap_01_threads(Values values) {
+        heap.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void heap_08_threads(Values values) {
+        heap.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    public void skipList_rescale(Rescaling rescaling, Values values) {
+        rescaling.skipList.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    @BenchmarkMode(Mode.AverageTime)
+    public void heap_rescale(Rescaling rescaling, Values values) {
+        rescaling.heap.update(values.next());
+    }
+}
@@ -0,0 +1,126 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.benchmarks.baseline.AtomicHistogramStatistics;
+import com.yammer.metrics.core.HistogramMetric;
+import com.yammer.metrics.core.IntervalHistogramMetric;
+import com.yammer.metrics.stats.StripedStatistics;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the striped statistics behind {@link HistogramMetric#update(long)}
+ * against the atomic write path they replaced, alone and as part of a whole
+ * histogram of each {@link HistogramMetric.SampleType}.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar HistogramBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HistogramBenchmark {
+    @State(Scope.Thread)
+    public static class Values {
+        private long next;
+
+        long next() {
+            return (next++ & 0xFFFF) * 1000;
+        }
+    }
+
+    private final AtomicHistogramStatistics atomic = new AtomicHistogramStatistics();
+    private final StripedStatistics striped = new StripedStatistics();
+    private final HistogramMetric uniform = new HistogramMetric(HistogramMetric.SampleType.UNIFORM);
+    private final HistogramMetric biased = new HistogramMetric(HistogramMetric.SampleType.BIASED);
+    private final HistogramMetric logLinear = new HistogramMetric(HistogramMetric.SampleType.LOG_LINEAR);
+    private final HistogramMetric slidingWindow = new HistogramMetric(HistogramMetric.SampleType.SLIDING_WINDOW);
+    private final HistogramMetric interval = new IntervalHistogramMetric(HistogramMetric.SampleType.UNIFORM);
+
+    @Benchmark
+    @Threads(1)
+    public void atomicStats_01_threads(Values values) {
+        atomic.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void atomicStats_08_threads(Values values) {
+        atomic.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void stripedStats_01_threads(Values values) {
+        striped.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void stripedStats_08_threads(Values values) {
+        striped.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void uniformHistogram_01_threads(Values values) {
+        uniform.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void uniformHistogram_08_threads(Values values) {
+        uniform.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void biasedHistogram_01_threads(Values values) {
+        biased.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void biasedHistogram_08_threads(Values values) {
+        biased.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void logLinearHistogram_01_threads(Values values) {
+        logLinear.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void logLinearHistogram_08_threads(Values values) {
+        logLinear.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void slidingWindowHistogram_01_threads(Values values) {
+        slidingWindow.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void slidingWindowHistogram_08_threads(Values values) {
+        slidingWindow.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void intervalHistogram_01_threads(Values values) {
+        interval.update(values.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void intervalHistogram_08_threads(Values values) {
+        interval.update(values.next());
+    }
+}
@@ -0,0 +1,77 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.DynamicJmxReporter;
+import com.yammer.metrics.reporting.JmxReporter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures creating 10,000 counters, in 100 groups, in a registry with a JMX
+ * reporter attached, as an application does at startup. {@link JmxReporter}
+ * registers an MBean per metric; {@link DynamicJmxReporter} registers one per
+ * group. Both register with the platform MBean server.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar JmxRegistrationBenchmark -prof gc}
+ * to see the allocation rate next to the time taken.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JmxRegistrationBenchmark {
+    private static final int METRICS = 10000;
+    private static final int GROUPS = 100;
+
+    @Param({"standard", "dynamic"})
+    public String reporter;
+
+    private MetricsRegistry registry;
+    private JmxReporter jmx;
+    private DynamicJmxReporter dynamicJmx;
+    private final MetricName[] names = new MetricName[METRICS];
+
+    @Setup(Level.Trial)
+    public void createNames() {
+        for (int i = 0; i < METRICS; i++) {
+            names[i] = new MetricName("com.example.benchmark", "type" + (i % GROUPS), "counter" + i);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        registry = new MetricsRegistry();
+        if ("standard".equals(reporter)) {
+            jmx = new JmxReporter(registry);
+            jmx.start();
+        } else {
+            dynamicJmx = new DynamicJmxReporter(registry);
+            dynamicJmx.start();
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDown() {
+        if (jmx != null) {
+            jmx.shutdown();
+            jmx = null;
+        }
+        if (dynamicJmx != null) {
+            dynamicJmx.shutdown();
+            dynamicJmx = null;
+        }
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Benchmark
+    public MetricsRegistry register() {
+        for (MetricName name : names) {
+            registry.newCounter(name);
+        }
+        return registry;
+    }
+}
@@ -0,0 +1,63 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.MeterMetric;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link MeterMetric#mark()} for a meter ticked by a background
+ * thread and for one which catches up on its ticks lazily.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar MeterBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeterBenchmark {
+    private ScheduledExecutorService tickThread;
+    private MeterMetric scheduled;
+    private MeterMetric lazy;
+
+    @Setup
+    public void setUp() {
+        tickThread = Executors.newSingleThreadScheduledExecutor();
+        scheduled = MeterMetric.newMeter(tickThread, "calls", TimeUnit.SECONDS);
+        lazy = MeterMetric.newLazyMeter("calls", TimeUnit.SECONDS);
+    }
+
+    @TearDown
+    public void tearDown() {
+        tickThread.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void scheduled_01_threads() {
+        scheduled.mark();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void scheduled_08_threads() {
+        scheduled.mark();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void lazy_01_threads() {
+        lazy.mark();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void lazy_08_threads() {
+        lazy.mark();
+    }
+}
@@ -0,0 +1,81 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.MeterMetric;
+import com.yammer.metrics.core.MeterTicker;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registers 100k meters with a {@link MetricsRegistry} in each
+ * {@link MetricsRegistry.TickMode}, and measures one round of a shared
+ * {@link MeterTicker} over as many meters, which is the whole of the shared
+ * mode's steady-state cost every five seconds.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar MeterTickBenchmark}.
+ */
+@Fork(1)
+public class MeterTickBenchmark {
+    private static final int METERS = 100000;
+
+    @State(Scope.Benchmark)
+    public static class Registration {
+        @Param({"SCHEDULED", "SHARED"})
+        public MetricsRegistry.TickMode mode;
+
+        final MetricName[] names = new MetricName[METERS];
+        MetricsRegistry registry;
+
+        @Setup(Level.Trial)
+        public void createNames() {
+            for (int i = 0; i < METERS; i++) {
+                names[i] = new MetricName(MeterTickBenchmark.class, "meter-" + i);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void createRegistry() {
+            this.registry = new MetricsRegistry(mode);
+        }
+
+        @TearDown(Level.Iteration)
+        public void shutdownRegistry() {
+            registry.threadPools().shutdownThreadPools();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Ticking {
+        final MeterTicker ticker = new MeterTicker();
+
+        @Setup(Level.Trial)
+        public void createMeters() {
+            for (int i = 0; i < METERS; i++) {
+                MeterMetric.newMeter(ticker, "events", TimeUnit.SECONDS).mark(i);
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 10)
+    @Measurement(iterations = 20)
+    public MetricsRegistry register100kMeters(Registration state) {
+        for (MetricName name : state.names) {
+            state.registry.newMeter(name, "events", TimeUnit.SECONDS);
+        }
+        return state.registry;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    public void tick100kMeters(Ticking state) {
+        state.ticker.run();
+    }
+}
@@ -0,0 +1,62 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.CounterMetric;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.TimerMetric;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up metrics which are already registered, as code does
+ * when it calls {@code newTimer} or {@code newCounter} on every request
+ * instead of keeping the metric in a field.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar RegistryBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RegistryBenchmark {
+    private MetricsRegistry registry;
+
+    @Setup
+    public void setUp() {
+        registry = new MetricsRegistry();
+        registry.newTimer(RegistryBenchmark.class, "timer", "scope", TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+        registry.newCounter(RegistryBenchmark.class, "counter", "scope");
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public TimerMetric existingTimer_01_threads() {
+        return registry.newTimer(RegistryBenchmark.class, "timer", "scope", TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public TimerMetric existingTimer_08_threads() {
+        return registry.newTimer(RegistryBenchmark.class, "timer", "scope", TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public CounterMetric existingCounter_01_threads() {
+        return registry.newCounter(RegistryBenchmark.class, "counter", "scope");
+    }
+
+    @Benchmark
+    @Threads(8)
+    public CounterMetric existingCounter_08_threads() {
+        return registry.newCounter(RegistryBenchmark.class, "counter", "scope");
+    }
+}
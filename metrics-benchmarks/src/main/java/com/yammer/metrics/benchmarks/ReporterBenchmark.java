@@ -0,0 +1,227 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.*;
+import com.yammer.metrics.util.MetricPredicate;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one full poll of each reporter over a registry of 10,000 metrics,
+ * a quarter each of counters, meters, histograms and timers, with every
+ * histogram and timer holding a full sample.
+ * <p/>
+ * Graphite reports to a local socket which discards what it reads, Ganglia
+ * and Graphite over UDP to local UDP sockets which are never read, the console to a stream which
+ * discards its output and CSV to a temporary directory. JMX does not poll, so
+ * its benchmarks read every attribute of every registered bean, as a
+ * monitoring agent would, from one bean per metric ({@link JmxReporter}) or
+ * one bean per group ({@link DynamicJmxReporter}).
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar ReporterBenchmark -prof gc}
+ * to see the allocation rate next to the time per poll.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReporterBenchmark {
+    private static final int METRICS_PER_TYPE = 2500;
+
+    private MetricsRegistry registry;
+    private ServerSocket graphiteServer;
+    private DatagramSocket gangliaServer;
+    private DatagramSocket udpGraphiteServer;
+    private File csvDir;
+
+    private ConsoleReporter console;
+    private CsvReporter csv;
+    private GraphiteReporter graphite;
+    private GangliaReporter ganglia;
+    private UdpGraphiteReporter udpGraphite;
+    private JmxReporter jmx;
+    private DynamicJmxReporter dynamicJmx;
+    private MBeanServer dynamicServer;
+    private final List<ObjectName> beans = new ArrayList<ObjectName>();
+    private final List<String[]> attributes = new ArrayList<String[]>();
+    private final List<ObjectName> groupBeans = new ArrayList<ObjectName>();
+    private final List<String[]> groupAttributes = new ArrayList<String[]>();
+
+    @Setup
+    public void setUp() throws Exception {
+        registry = new MetricsRegistry();
+        for (int i = 0; i < METRICS_PER_TYPE; i++) {
+            registry.newCounter(name("counter", i)).inc(i);
+            registry.newMeter(name("meter", i), "calls", TimeUnit.SECONDS).mark(i);
+            final HistogramMetric histogram = registry.newHistogram(name("histogram", i), HistogramMetric.SampleType.BIASED);
+            final TimerMetric timer = registry.newTimer(name("timer", i), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+            for (int j = 0; j < 2000; j++) {
+                histogram.update(j);
+                timer.update(j, TimeUnit.MICROSECONDS);
+            }
+        }
+
+        console = new ConsoleReporter(registry, new PrintStream(new DiscardingOutputStream()), MetricPredicate.ALL);
+
+        csvDir = File.createTempFile("metrics-benchmark", "");
+        csvDir.delete();
+        csvDir.mkdir();
+        csv = new CsvReporter(csvDir, registry);
+
+        graphiteServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread drain = new Thread(new Drain(graphiteServer), "graphite-drain");
+        drain.setDaemon(true);
+        drain.start();
+        graphite = new GraphiteReporter(registry, "127.0.0.1", graphiteServer.getLocalPort(), "benchmark");
+
+        gangliaServer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        ganglia = new GangliaReporter(registry, "127.0.0.1", gangliaServer.getLocalPort(), "benchmark");
+
+        udpGraphiteServer = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        udpGraphite = new UdpGraphiteReporter(registry, "127.0.0.1", udpGraphiteServer.getLocalPort(), "benchmark");
+
+        jmx = new JmxReporter(registry);
+        jmx.start();
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (MetricName name : registry.allMetrics().keySet()) {
+            final ObjectName objectName = new ObjectName(name.getMBeanName());
+            final MBeanAttributeInfo[] info = server.getMBeanInfo(objectName).getAttributes();
+            final String[] names = new String[info.length];
+            for (int i = 0; i < info.length; i++) {
+                names[i] = info[i].getName();
+            }
+            beans.add(objectName);
+            attributes.add(names);
+        }
+
+        dynamicServer = MBeanServerFactory.newMBeanServer();
+        dynamicJmx = new DynamicJmxReporter(registry, dynamicServer);
+        dynamicJmx.start();
+        for (ObjectName objectName : dynamicServer.queryNames(new ObjectName("com.example.benchmark:*"), null)) {
+            final MBeanAttributeInfo[] info = dynamicServer.getMBeanInfo(objectName).getAttributes();
+            final String[] names = new String[info.length];
+            for (int i = 0; i < info.length; i++) {
+                names[i] = info[i].getName();
+            }
+            groupBeans.add(objectName);
+            groupAttributes.add(names);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        jmx.shutdown();
+        dynamicJmx.shutdown();
+        csv.shutdown();
+        graphiteServer.close();
+        gangliaServer.close();
+        udpGraphite.shutdown();
+        udpGraphiteServer.close();
+        final File[] files = csvDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        csvDir.delete();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Benchmark
+    public void console() {
+        console.run();
+    }
+
+    @Benchmark
+    public void csv() {
+        csv.run();
+    }
+
+    @Benchmark
+    public void graphite() {
+        graphite.run();
+    }
+
+    @Benchmark
+    public void udpGraphite() {
+        udpGraphite.run();
+    }
+
+    @Benchmark
+    public void ganglia() {
+        ganglia.run();
+    }
+
+    @Benchmark
+    public void jmx(Blackhole blackhole) throws Exception {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        for (int i = 0; i < beans.size(); i++) {
+            blackhole.consume(server.getAttributes(beans.get(i), attributes.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void dynamicJmx(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < groupBeans.size(); i++) {
+            blackhole.consume(dynamicServer.getAttributes(groupBeans.get(i), groupAttributes.get(i)));
+        }
+    }
+
+    private static MetricName name(String type, int i) {
+        return new MetricName("com.example.benchmark", type, type + i);
+    }
+
+    private static class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+
+    private static class Drain implements Runnable {
+        private final ServerSocket server;
+
+        Drain(ServerSocket server) {
+            this.server = server;
+        }
+
+        @Override
+        public void run() {
+            final byte[] buffer = new byte[64 * 1024];
+            try {
+                while (!server.isClosed()) {
+                    final Socket socket = server.accept();
+                    try {
+                        final InputStream in = socket.getInputStream();
+                        while (in.read(buffer) >= 0) {
+                            // discard
+                        }
+                    } finally {
+                        socket.close();
+                    }
+                }
+            } catch (IOException ignored) {
+                // the server was closed
+            }
+        }
+    }
+}
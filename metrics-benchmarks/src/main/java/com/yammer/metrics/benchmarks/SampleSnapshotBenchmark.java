@@ -0,0 +1,54 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.stats.ExponentiallyDecayingSample;
+import com.yammer.metrics.stats.Sample;
+import com.yammer.metrics.stats.UniformSample;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares copying and sorting a full sample through the boxed
+ * {@link Sample#values()} list, as reporters used to, against the primitive
+ * {@link Sample#snapshotValues()} array.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar SampleSnapshotBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SampleSnapshotBenchmark {
+    @Param({"uniform", "biased"})
+    public String type;
+
+    private Sample sample;
+
+    @Setup
+    public void fill() {
+        sample = "uniform".equals(type) ? new UniformSample(1028) : new ExponentiallyDecayingSample(1028, 0.015);
+        for (int i = 0; i < 100000; i++) {
+            sample.update((i * 7919L) % 100000);
+        }
+    }
+
+    @Benchmark
+    public List<Long> boxed() {
+        final List<Long> values = sample.values();
+        Collections.sort(values);
+        return values;
+    }
+
+    @Benchmark
+    public long[] primitive() {
+        final long[] values = sample.snapshotValues();
+        Arrays.sort(values);
+        return values;
+    }
+}
@@ -0,0 +1,82 @@
+package com.yammer.metrics.benchmarks;
+
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.TimerMetric;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures timing an empty event with a {@link TimerMetric} through a
+ * {@link com.yammer.metrics.core.TimerContext}, a {@link Callable} and the
+ * primitive {@link TimerMetric#start()}/{@link TimerMetric#stop(long)} pair,
+ * with the default biased sample.
+ * <p/>
+ * Run with {@code java -jar metrics-benchmarks/target/benchmarks.jar TimerBenchmark -prof gc}
+ * to see the allocation rate next to the throughput.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+    private static final Callable<Object> EVENT = new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+            return null;
+        }
+    };
+
+    private MetricsRegistry registry;
+    private TimerMetric timer;
+
+    @Setup
+    public void setUp() {
+        registry = new MetricsRegistry();
+        timer = registry.newTimer(TimerBenchmark.class, "timer");
+    }
+
+    @TearDown
+    public void tearDown() {
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void context_01_threads() {
+        timer.time().stop();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void context_08_threads() {
+        timer.time().stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object callable_01_threads() throws Exception {
+        return timer.time(EVENT);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object callable_08_threads() throws Exception {
+        return timer.time(EVENT);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void startStop_01_threads() {
+        timer.stop(timer.start());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void startStop_08_threads() {
+        timer.stop(timer.start());
+    }
+}
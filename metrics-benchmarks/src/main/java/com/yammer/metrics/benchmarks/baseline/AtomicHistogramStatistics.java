@@ -0,0 +1,69 @@
+package com.yammer.metrics.benchmarks.baseline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The write path {@code HistogramMetric} used before its statistics were
+ * striped: a count, CAS loops for the minimum and maximum, a shared sum, and a
+ * freshly allocated {@code double[]} swapped in for every variance update.
+ * Kept here only so benchmarks have something to compare against.
+ */
+public class AtomicHistogramStatistics {
+    private final AtomicLong _min = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong _max = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong _sum = new AtomicLong();
+    private final AtomicReference<double[]> variance =
+            new AtomicReference<double[]>(new double[]{-1, 0}); // M, S
+    private final AtomicLong count = new AtomicLong();
+
+    public void update(long value) {
+        count.incrementAndGet();
+        setMax(value);
+        setMin(value);
+        _sum.getAndAdd(value);
+        updateVariance(value);
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    private void setMax(long potentialMax) {
+        boolean done = false;
+        while (!done) {
+            long currentMax = _max.get();
+            done = currentMax >= potentialMax || _max.compareAndSet(currentMax, potentialMax);
+        }
+    }
+
+    private void setMin(long potentialMin) {
+        boolean done = false;
+        while (!done) {
+            long currentMin = _min.get();
+            done = currentMin <= potentialMin || _min.compareAndSet(currentMin, potentialMin);
+        }
+    }
+
+    private void updateVariance(long value) {
+        boolean done = false;
+        while (!done) {
+            final double[] oldValues = variance.get();
+            final double[] newValues = new double[2];
+            if (oldValues[0] == -1) {
+                newValues[0] = value;
+                newValues[1] = 0;
+            } else {
+                final double oldM = oldValues[0];
+                final double oldS = oldValues[1];
+
+                final double newM = oldM + ((value - oldM) / count());
+                final double newS = oldS + ((value - oldM) * (value - newM));
+
+                newValues[0] = newM;
+                newValues[1] = newS;
+            }
+            done = variance.compareAndSet(oldValues, newValues);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.yammer.metrics;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.core.HistogramMetric.SampleType;
 import com.yammer.metrics.reporting.ConsoleReporter;
 import com.yammer.metrics.reporting.JmxReporter;
 
@@ -198,6 +199,23 @@ public class Metrics {
         return DEFAULT_REGISTRY.newHistogram(klass, name, scope, biased);
     }
 
+    /**
+     * Creates a new {@link HistogramMetric} with the given type of sample and
+     * registers it under the given class, name, and scope.
+     *
+     * @param klass      the class which owns the metric
+     * @param name       the name of the metric
+     * @param scope      the scope of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link HistogramMetric}
+     */
+    public static HistogramMetric newHistogram(Class<?> klass,
+                                               String name,
+                                               String scope,
+                                               SampleType sampleType) {
+        return DEFAULT_REGISTRY.newHistogram(klass, name, scope, sampleType);
+    }
+
     /**
      * Creates a new {@link HistogramMetric} and registers it under the given
      * metric name.
@@ -211,6 +229,49 @@ public class Metrics {
         return DEFAULT_REGISTRY.newHistogram(metricName, biased);
     }
 
+    /**
+     * Creates a new {@link HistogramMetric} with the given type of sample and
+     * registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link HistogramMetric}
+     */
+    public static HistogramMetric newHistogram(MetricName metricName,
+                                               SampleType sampleType) {
+        return DEFAULT_REGISTRY.newHistogram(metricName, sampleType);
+    }
+
+    /**
+     * Creates a new {@link IntervalHistogramMetric} with the given type of
+     * sample and registers it under the given class, name, and scope.
+     *
+     * @param klass      the class which owns the metric
+     * @param name       the name of the metric
+     * @param scope      the scope of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link IntervalHistogramMetric}
+     */
+    public static IntervalHistogramMetric newIntervalHistogram(Class<?> klass,
+                                                               String name,
+                                                               String scope,
+                                                               SampleType sampleType) {
+        return DEFAULT_REGISTRY.newIntervalHistogram(klass, name, scope, sampleType);
+    }
+
+    /**
+     * Creates a new {@link IntervalHistogramMetric} with the given type of
+     * sample and registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link IntervalHistogramMetric}
+     */
+    public static IntervalHistogramMetric newIntervalHistogram(MetricName metricName,
+                                                               SampleType sampleType) {
+        return DEFAULT_REGISTRY.newIntervalHistogram(metricName, sampleType);
+    }
+
     /**
      * Creates a new non-biased {@link HistogramMetric} and registers it under
      * the given class and name.
@@ -352,6 +413,27 @@ public class Metrics {
         return DEFAULT_REGISTRY.newTimer(klass, name, scope, durationUnit, rateUnit);
     }
 
+    /**
+     * Creates a new {@link TimerMetric} whose durations are kept in the given
+     * type of sample and registers it under the given class, name, and scope.
+     *
+     * @param klass        the class which owns the metric
+     * @param name         the name of the metric
+     * @param scope        the scope of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer's durations are kept in
+     * @return a new {@link TimerMetric}
+     */
+    public static TimerMetric newTimer(Class<?> klass,
+                                       String name,
+                                       String scope,
+                                       TimeUnit durationUnit,
+                                       TimeUnit rateUnit,
+                                       SampleType sampleType) {
+        return DEFAULT_REGISTRY.newTimer(klass, name, scope, durationUnit, rateUnit, sampleType);
+    }
+
     /**
      * Creates a new {@link TimerMetric} and registers it under the given class, name, and scope,
      * measuring elapsed time in milliseconds and invocations per second.
@@ -382,6 +464,23 @@ public class Metrics {
         return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit);
     }
 
+    /**
+     * Creates a new {@link TimerMetric} whose durations are kept in the given
+     * type of sample and registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer's durations are kept in
+     * @return a new {@link TimerMetric}
+     */
+    public static TimerMetric newTimer(MetricName metricName,
+                                       TimeUnit durationUnit,
+                                       TimeUnit rateUnit,
+                                       SampleType sampleType) {
+        return DEFAULT_REGISTRY.newTimer(metricName, durationUnit, rateUnit, sampleType);
+    }
+
     /**
      * Removes the metric with the given name.
      *
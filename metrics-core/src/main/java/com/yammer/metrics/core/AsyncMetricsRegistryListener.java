@@ -0,0 +1,228 @@
+package com.yammer.metrics.core;
+
+import com.yammer.metrics.util.NamedThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link MetricsRegistryListener} which passes events on to another
+ * listener from a background thread, so that an expensive listener (e.g.,
+ * one which registers MBeans) doesn't slow down the thread which creates a
+ * metric.
+ * <p/>
+ * Events are queued in a bounded queue and delivered in the order they
+ * happened. Whenever the background thread wakes up it takes every queued
+ * event at once, so a burst of registrations, such as at startup, is handled
+ * as a batch. If the queue is full, the thread creating a metric waits for
+ * room rather than dropping the event. The background thread is only started
+ * once the first event arrives, so a listener which is never added to a
+ * registry costs no thread.
+ * <p/>
+ * Events which are never delivered (because the listener was shut down, or
+ * the thread creating a metric was interrupted while waiting for room) are
+ * counted by {@link #getEventsDropped()}, and events for which the delegate
+ * threw an exception by {@link #getEventsFailed()}. Either way, the delegate
+ * is passed the events after them as usual.
+ */
+public class AsyncMetricsRegistryListener implements MetricsRegistryListener {
+    /**
+     * The default number of events which can be waiting to be delivered.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    private final MetricsRegistryListener delegate;
+    private final BlockingQueue<Event> queue;
+    private final Thread thread;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicLong eventsDropped = new AtomicLong();
+    private final AtomicLong eventsFailed = new AtomicLong();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new {@link AsyncMetricsRegistryListener} with a queue of
+     * {@link #DEFAULT_QUEUE_SIZE} events.
+     *
+     * @param delegate the listener to pass events on to
+     */
+    public AsyncMetricsRegistryListener(MetricsRegistryListener delegate) {
+        this(delegate, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * Creates a new {@link AsyncMetricsRegistryListener}.
+     *
+     * @param delegate  the listener to pass events on to
+     * @param queueSize the number of events which can be waiting to be
+     *                  delivered
+     */
+    public AsyncMetricsRegistryListener(MetricsRegistryListener delegate, int queueSize) {
+        this.delegate = delegate;
+        this.queue = new ArrayBlockingQueue<Event>(queueSize);
+        this.thread = new NamedThreadFactory("listener").newThread(new Runnable() {
+            @Override
+            public void run() {
+                dispatch();
+            }
+        });
+    }
+
+    @Override
+    public void onMetricAdded(MetricName name, Metric metric) {
+        enqueue(new Event(name, metric, true, null));
+    }
+
+    @Override
+    public void onMetricRemoved(MetricName name) {
+        enqueue(new Event(name, null, false, null));
+    }
+
+    /**
+     * Returns the number of events which were never passed on to the
+     * delegate.
+     *
+     * @return the number of events dropped
+     */
+    public long getEventsDropped() {
+        return eventsDropped.get();
+    }
+
+    /**
+     * Returns the number of events for which the delegate threw an
+     * exception.
+     *
+     * @return the number of events the delegate failed to handle
+     */
+    public long getEventsFailed() {
+        return eventsFailed.get();
+    }
+
+    /**
+     * Waits until every event queued before this call has been delivered.
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     *                              while waiting
+     */
+    public void flush() throws InterruptedException {
+        if (!started.get()) {
+            return;
+        }
+        final CountDownLatch delivered = new CountDownLatch(1);
+        if (enqueue(new Event(null, null, false, delivered))) {
+            while (!delivered.await(100, TimeUnit.MILLISECONDS)) {
+                if (!running) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops delivering events. Events which haven't been delivered yet are
+     * dropped. Once this returns, the delegate won't be called again.
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     *                              while waiting for an event being
+     *                              delivered
+     */
+    public void shutdown() throws InterruptedException {
+        running = false;
+        // claiming the thread's start keeps it from being started later
+        if (!started.compareAndSet(false, true)) {
+            thread.interrupt();
+            thread.join();
+        }
+        for (Event event : queue) {
+            release(event);
+        }
+        queue.clear();
+    }
+
+    private boolean enqueue(Event event) {
+        if (!running) {
+            release(event);
+            return false;
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            thread.start();
+        }
+        try {
+            queue.put(event);
+            if (!running && queue.remove(event)) {
+                // shut down while this was being queued
+                release(event);
+                return false;
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(event);
+            return false;
+        }
+    }
+
+    private void dispatch() {
+        final List<Event> batch = new ArrayList<Event>();
+        try {
+            while (running) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                for (Event event : batch) {
+                    if (running) {
+                        deliver(event);
+                    } else {
+                        release(event);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // shutting down
+        }
+    }
+
+    private void deliver(Event event) {
+        if (event.delivered != null) {
+            event.delivered.countDown();
+            return;
+        }
+        try {
+            if (event.added) {
+                delegate.onMetricAdded(event.name, event.metric);
+            } else {
+                delegate.onMetricRemoved(event.name);
+            }
+        } catch (RuntimeException e) {
+            // keep delivering events to the delegate
+            eventsFailed.incrementAndGet();
+        }
+    }
+
+    private void release(Event event) {
+        if (event.delivered != null) {
+            event.delivered.countDown();
+        } else {
+            eventsDropped.incrementAndGet();
+        }
+    }
+
+    private static class Event {
+        final MetricName name;
+        final Metric metric;
+        final boolean added;
+        final CountDownLatch delivered;
+
+        Event(MetricName name, Metric metric, boolean added, CountDownLatch delivered) {
+            this.name = name;
+            this.metric = metric;
+            this.added = added;
+            this.delivered = delivered;
+        }
+    }
+}
@@ -1,12 +1,14 @@
 package com.yammer.metrics.core;
 
-import java.util.concurrent.atomic.AtomicLong;
+import com.yammer.metrics.stats.StripedLong;
 
 /**
- * An incrementing and decrementing counter metric.
+ * An incrementing and decrementing counter metric. The count is striped
+ * across per-thread cells, so heavily contended counters don't bounce a single
+ * cache line between processors.
  */
 public class CounterMetric implements Metric {
-    private final AtomicLong count = new AtomicLong(0);
+    private final StripedLong count = new StripedLong();
 
     /**
      * Increment the counter by one.
@@ -21,7 +23,7 @@ public class CounterMetric implements Metric {
      * @param n the amount by which the counter will be increased
      */
     public void inc(long n) {
-        count.addAndGet(n);
+        count.add(n);
     }
 
     /**
@@ -37,7 +39,7 @@ public class CounterMetric implements Metric {
      * @param n the amount by which the counter will be increased
      */
     public void dec(long n) {
-        count.addAndGet(0 - n);
+        count.add(0 - n);
     }
 
     /**
@@ -46,13 +48,13 @@ public class CounterMetric implements Metric {
      * @return the counter's current value
      */
     public long count() {
-        return count.get();
+        return count.sum();
     }
 
     /**
      * Resets the counter to 0.
      */
     public void clear() {
-        count.set(0);
+        count.reset();
     }
 }
@@ -1,21 +1,28 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.stats.ExponentiallyDecayingSample;
+import com.yammer.metrics.stats.LogLinearSample;
+import com.yammer.metrics.stats.PercentileSample;
 import com.yammer.metrics.stats.Sample;
+import com.yammer.metrics.stats.SlidingTimeWindowSample;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.stats.StripedStatistics;
 import com.yammer.metrics.stats.UniformSample;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
 
-import static java.lang.Math.floor;
 import static java.lang.Math.sqrt;
 
 /**
  * A metric which calculates the distribution of a value.
+ * <p/>
+ * The count, sum, minimum, maximum, and variance are accumulated in
+ * {@link StripedStatistics}, so recording a value neither allocates nor
+ * retries on a shared atomic.
  *
  * @see <a href="http://www.johndcook.com/standard_deviation.html">Accurately
  * computing running variance</a>
@@ -48,20 +55,41 @@ public class HistogramMetric implements Metric {
             public Sample newSample() {
                 return new ExponentiallyDecayingSample(1028, 0.015);
             }
+        },
+
+        /**
+         * Counts every value in log-linear buckets accurate to two
+         * significant digits, up to one hour in nanoseconds. Uses a fixed
+         * amount of memory, and unlike the reservoirs keeps the tail of the
+         * distribution intact.
+         */
+        LOG_LINEAR {
+            @Override
+            public Sample newSample() {
+                return new LogLinearSample();
+            }
+        },
+
+        /**
+         * Keeps only the values recorded in the last minute, in twelve
+         * five-second buckets of up to 128 values each. Unlike the biased
+         * sample, a spike stops showing in the percentiles as soon as it
+         * slides out of the window. The window is fixed; for a different
+         * one, pass a {@link SlidingTimeWindowSample} to
+         * {@link MetricsRegistry#newHistogram(MetricName, Sample)}.
+         */
+        SLIDING_WINDOW {
+            @Override
+            public Sample newSample() {
+                return new SlidingTimeWindowSample(60, 5, TimeUnit.SECONDS, 128);
+            }
         };
 
         public abstract Sample newSample();
     }
 
     private final Sample sample;
-    private final AtomicLong _min = new AtomicLong();
-    private final AtomicLong _max = new AtomicLong();
-    private final AtomicLong _sum = new AtomicLong();
-    // These are for the Welford algorithm for calculating running variance
-    // without floating-point doom.
-    private final AtomicReference<double[]> variance =
-            new AtomicReference<double[]>(new double[]{-1, 0}); // M, S
-    private final AtomicLong count = new AtomicLong();
+    private final StripedStatistics stats = new StripedStatistics();
 
     /**
      * Creates a new {@link HistogramMetric} with the given sample type.
@@ -87,11 +115,7 @@ public class HistogramMetric implements Metric {
      */
     public void clear() {
         sample.clear();
-        count.set(0);
-        _max.set(Long.MIN_VALUE);
-        _min.set(Long.MAX_VALUE);
-        _sum.set(0);
-        variance.set(new double[] { -1, 0 });
+        stats.clear();
     }
 
     /**
@@ -109,12 +133,8 @@ public class HistogramMetric implements Metric {
      * @param value the length of the value
      */
     public void update(long value) {
-        count.incrementAndGet();
         sample.update(value);
-        setMax(value);
-        setMin(value);
-        _sum.getAndAdd(value);
-        updateVariance(value);
+        stats.update(value);
     }
 
     /**
@@ -122,7 +142,7 @@ public class HistogramMetric implements Metric {
      *
      * @return the number of values recorded
      */
-    public long count() { return count.get(); }
+    public long count() { return stats.count(); }
 
     /**
      * Returns the largest recorded value.
@@ -131,7 +151,7 @@ public class HistogramMetric implements Metric {
      */
     public double max() {
         if (count() > 0) {
-            return _max.get();
+            return stats.max();
         }
         return 0.0;
     }
@@ -143,7 +163,7 @@ public class HistogramMetric implements Metric {
      */
     public double min() {
         if (count() > 0) {
-            return _min.get();
+            return stats.min();
         }
         return 0.0;
     }
@@ -154,8 +174,9 @@ public class HistogramMetric implements Metric {
      * @return the arithmetic mean of all recorded values
      */
     public double mean() {
-        if (count() > 0) {
-            return _sum.get() / (double) count();
+        final long count = count();
+        if (count > 0) {
+            return stats.sum() / (double) count;
         }
         return 0.0;
     }
@@ -167,7 +188,7 @@ public class HistogramMetric implements Metric {
      */
     public double stdDev() {
         if (count() > 0) {
-            return sqrt(variance());
+            return sqrt(stats.variance());
         }
         return 0.0;
     }
@@ -179,32 +200,43 @@ public class HistogramMetric implements Metric {
      * @return an array of values at the given percentiles
      */
     public double[] percentiles(double... percentiles) {
-        final double[] scores = new double[percentiles.length];
-        for (int i = 0; i < scores.length; i++) {
-            scores[i] = 0.0;
+        return snapshot().quantiles(percentiles);
+    }
 
+    /**
+     * Returns a snapshot of the histogram's sample and statistics. Reading
+     * several values from one snapshot sorts the sample only once.
+     *
+     * @return a snapshot of the histogram
+     */
+    public Snapshot snapshot() {
+        return snapshot(sample, stats);
+    }
+
+    static Snapshot snapshot(Sample sample, StripedStatistics stats) {
+        if (sample instanceof PercentileSample) {
+            return ((PercentileSample) sample).snapshot(stats);
         }
 
-        if (count() > 0) {
-            final List<Long> values = sample.values();
-            Collections.sort(values);
+        final long[] values = sample.snapshotValues();
+        Arrays.sort(values);
+        return stats.snapshot(values, null);
+    }
 
-            for (int i = 0; i < percentiles.length; i++) {
-                final double p = percentiles[i];
-                final double pos = p * (values.size() + 1);
-                if (pos < 1) {
-                    scores[i] = values.get(0);
-                } else if (pos >= values.size()) {
-                    scores[i] = values.get(values.size() - 1);
-                } else {
-                    final double lower = values.get((int) pos - 1);
-                    final double upper = values.get((int) pos);
-                    scores[i] = lower + (pos - floor(pos)) * (upper - lower);
-                }
-            }
+    /**
+     * Returns a copy of the histogram's sample if it is a
+     * {@link LogLinearSample}, which can be encoded and merged exactly with
+     * the samples of other histograms, such as those of other processes.
+     *
+     * @return a copy of the histogram's sample, or {@code null} if it does
+     *         not keep a {@link LogLinearSample}
+     * @see SampleType#LOG_LINEAR
+     */
+    public LogLinearSample logLinearSample() {
+        if (sample instanceof LogLinearSample) {
+            return ((LogLinearSample) sample).copy();
         }
-
-        return scores;
+        return null;
     }
 
     /**
@@ -225,49 +257,4 @@ public class HistogramMetric implements Metric {
     public void dump(File output) throws IOException {
         sample.dump(output);
     }
-
-    private double variance() {
-        if (count() <= 1) {
-            return 0.0;
-        }
-        return variance.get()[1] / (count() - 1);
-    }
-
-    private void setMax(long potentialMax) {
-        boolean done = false;
-        while (!done) {
-            long currentMax = _max.get();
-            done = currentMax >= potentialMax || _max.compareAndSet(currentMax, potentialMax);
-        }
-    }
-
-    private void setMin(long potentialMin) {
-        boolean done = false;
-        while (!done) {
-            long currentMin = _min.get();
-            done = currentMin <= potentialMin || _min.compareAndSet(currentMin, potentialMin);
-        }
-    }
-
-    private void updateVariance(long value) {
-        boolean done = false;
-        while (!done) {
-            final double[] oldValues = variance.get();
-            final double[] newValues = new double[2];
-            if (oldValues[0] == -1) {
-                newValues[0] = value;
-                newValues[1] = 0;
-            } else {
-                final double oldM = oldValues[0];
-                final double oldS = oldValues[1];
-
-                final double newM = oldM + ((value - oldM) / count());
-                final double newS = oldS + ((value - oldM) * (value - newM));
-
-                newValues[0] = newM;
-                newValues[1] = newS;
-            }
-            done = variance.compareAndSet(oldValues, newValues);
-        }
-    }
 }
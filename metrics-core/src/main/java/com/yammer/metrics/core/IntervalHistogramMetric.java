@@ -0,0 +1,100 @@
+package com.yammer.metrics.core;
+
+import com.yammer.metrics.stats.Sample;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.stats.StripedStatistics;
+
+/**
+ * A {@link HistogramMetric} which can also report on just the values recorded
+ * since it was last asked, for reporters which send per-interval statistics.
+ * <p/>
+ * Besides the usual cumulative statistics, values are recorded into one of
+ * two interval recorders. {@link #getIntervalSnapshot()} swaps the recorders
+ * and reads the one swapped out, so each value lands in exactly one interval
+ * and {@link #update(long)} is never blocked by a reader. Only one reader
+ * should take interval snapshots of a given histogram, since each call
+ * consumes the interval it returns.
+ */
+public class IntervalHistogramMetric extends HistogramMetric {
+    private static class Recorder {
+        private final Sample sample;
+        private final StripedStatistics stats = new StripedStatistics();
+
+        Recorder(Sample sample) {
+            this.sample = sample;
+        }
+
+        void update(long value) {
+            sample.update(value);
+            stats.update(value);
+        }
+
+        void clear() {
+            sample.clear();
+            stats.clear();
+        }
+    }
+
+    private final WriterReaderPhaser phaser = new WriterReaderPhaser();
+    private volatile Recorder active;
+    private Recorder inactive;
+
+    /**
+     * Creates a new {@link IntervalHistogramMetric} with the given sample
+     * type, used both for the cumulative sample and for each interval.
+     *
+     * @param type the type of sample to use
+     */
+    public IntervalHistogramMetric(SampleType type) {
+        super(type);
+        this.active = new Recorder(type.newSample());
+        this.inactive = new Recorder(type.newSample());
+    }
+
+    @Override
+    public void update(long value) {
+        super.update(value);
+        final long criticalValue = phaser.writerCriticalSectionEnter();
+        try {
+            active.update(value);
+        } finally {
+            phaser.writerCriticalSectionExit(criticalValue);
+        }
+    }
+
+    /**
+     * Clears all recorded values, both cumulative and in the current
+     * interval.
+     */
+    @Override
+    public synchronized void clear() {
+        super.clear();
+        // HistogramMetric's constructor clears before the recorders exist
+        if (active != null) {
+            final Recorder interval = active;
+            inactive.clear();
+            active = inactive;
+            phaser.flipPhase();
+            // no writer can still be recording into the swapped-out recorder
+            interval.clear();
+            inactive = interval;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the values recorded since the previous call, and
+     * starts a new interval. The histogram's cumulative statistics are not
+     * affected.
+     *
+     * @return a snapshot of the last interval
+     */
+    public synchronized Snapshot getIntervalSnapshot() {
+        final Recorder interval = active;
+        // no writer has touched the inactive recorder since the last flip
+        inactive.clear();
+        active = inactive;
+        phaser.flipPhase();
+        inactive = interval;
+        return snapshot(interval.sample, interval.stats);
+    }
+}
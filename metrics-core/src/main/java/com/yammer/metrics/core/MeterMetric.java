@@ -2,6 +2,7 @@ package com.yammer.metrics.core;
 
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.stats.EWMA;
+import com.yammer.metrics.stats.LazyEWMA;
 import com.yammer.metrics.util.Utils;
 
 import java.util.concurrent.ScheduledExecutorService;
@@ -16,7 +17,7 @@ import java.util.concurrent.atomic.AtomicLong;
  * @see <a href="http://en.wikipedia.org/wiki/Moving_average#Exponential_moving_average">EMA</a>
  */
 public class MeterMetric implements Metered {
-    private static final long INTERVAL = 5; // seconds
+    private static final long INTERVAL = MeterTicker.INTERVAL; // seconds
 
     /**
      * Creates a new {@link MeterMetric}.
@@ -43,28 +44,88 @@ public class MeterMetric implements Metered {
      * @return a new {@link MeterMetric}
      */
     public static MeterMetric newMeter(ScheduledExecutorService tickThread, String eventType, TimeUnit rateUnit) {
-        return new MeterMetric(tickThread, eventType, rateUnit);
+        final MeterMetric meter = new MeterMetric(eventType, rateUnit, null,
+                                                  EWMA.oneMinuteEWMA(),
+                                                  EWMA.fiveMinuteEWMA(),
+                                                  EWMA.fifteenMinuteEWMA());
+        meter.future = tickThread.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                meter.tick();
+            }
+        }, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+        return meter;
     }
 
-    private final EWMA m1Rate = EWMA.oneMinuteEWMA();
-    private final EWMA m5Rate = EWMA.fiveMinuteEWMA();
-    private final EWMA m15Rate = EWMA.fifteenMinuteEWMA();
+    /**
+     * Creates a new {@link MeterMetric} which is ticked by the given shared
+     * {@link MeterTicker} rather than a task of its own.
+     *
+     * @param ticker the ticker which will update the rates
+     * @param eventType the plural name of the event the meter is measuring
+     *                  (e.g., {@code "requests"})
+     * @param rateUnit the rate unit of the new meter
+     * @return a new {@link MeterMetric}
+     */
+    public static MeterMetric newMeter(MeterTicker ticker, String eventType, TimeUnit rateUnit) {
+        final MeterMetric meter = new MeterMetric(eventType, rateUnit, ticker,
+                                                  EWMA.oneMinuteEWMA(),
+                                                  EWMA.fiveMinuteEWMA(),
+                                                  EWMA.fifteenMinuteEWMA());
+        ticker.add(meter);
+        return meter;
+    }
+
+    /**
+     * Creates a new {@link MeterMetric} which is never ticked in the
+     * background. Its moving averages catch up on any intervals which have
+     * passed whenever it is marked or read, so an idle meter costs nothing.
+     *
+     * @param eventType the plural name of the event the meter is measuring
+     *                  (e.g., {@code "requests"})
+     * @param rateUnit the rate unit of the new meter
+     * @return a new {@link MeterMetric}
+     */
+    public static MeterMetric newLazyMeter(String eventType, TimeUnit rateUnit) {
+        return newLazyMeter(eventType, rateUnit, Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link MeterMetric} which is never ticked in the
+     * background, using the given clock to tell how much time has passed.
+     *
+     * @param eventType the plural name of the event the meter is measuring
+     *                  (e.g., {@code "requests"})
+     * @param rateUnit the rate unit of the new meter
+     * @param clock the clock used to tell how many intervals have passed
+     * @return a new {@link MeterMetric}
+     */
+    public static MeterMetric newLazyMeter(String eventType, TimeUnit rateUnit, Clock clock) {
+        return new MeterMetric(eventType, rateUnit, null,
+                               LazyEWMA.oneMinuteEWMA(clock),
+                               LazyEWMA.fiveMinuteEWMA(clock),
+                               LazyEWMA.fifteenMinuteEWMA(clock));
+    }
+
+    private final EWMA m1Rate;
+    private final EWMA m5Rate;
+    private final EWMA m15Rate;
 
     private final AtomicLong count = new AtomicLong();
     private final long startTime = System.nanoTime();
     private final TimeUnit rateUnit;
     private final String eventType;
-    private final ScheduledFuture<?> future;
+    private final MeterTicker ticker;
+    private volatile ScheduledFuture<?> future;
 
-    private MeterMetric(ScheduledExecutorService tickThread, String eventType, TimeUnit rateUnit) {
+    private MeterMetric(String eventType, TimeUnit rateUnit, MeterTicker ticker,
+                        EWMA m1Rate, EWMA m5Rate, EWMA m15Rate) {
         this.rateUnit = rateUnit;
         this.eventType = eventType;
-        this.future = tickThread.scheduleAtFixedRate(new Runnable() {
-            @Override
-            public void run() {
-                tick();
-            }
-        }, INTERVAL, INTERVAL, TimeUnit.SECONDS);
+        this.ticker = ticker;
+        this.m1Rate = m1Rate;
+        this.m5Rate = m5Rate;
+        this.m15Rate = m15Rate;
     }
 
     @Override
@@ -140,6 +201,11 @@ public class MeterMetric implements Metered {
     }
 
     void stop() {
-        future.cancel(false);
+        if (ticker != null) {
+            ticker.remove(this);
+        }
+        if (future != null) {
+            future.cancel(false);
+        }
     }
 }
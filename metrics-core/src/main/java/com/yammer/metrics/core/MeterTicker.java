@@ -0,0 +1,49 @@
+package com.yammer.metrics.core;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ticks the moving averages of a set of {@link MeterMetric}s. Scheduling one
+ * of these every five seconds replaces a scheduled task per meter, so the
+ * meters themselves need no scheduler at all.
+ *
+ * @see MeterMetric#newMeter(MeterTicker, String, java.util.concurrent.TimeUnit)
+ */
+public class MeterTicker implements Runnable {
+    /**
+     * The interval, in seconds, at which a ticker should be run.
+     */
+    public static final long INTERVAL = 5;
+
+    private final Set<MeterMetric> meters =
+            Collections.newSetFromMap(new ConcurrentHashMap<MeterMetric, Boolean>());
+
+    /**
+     * Returns the number of meters being ticked.
+     *
+     * @return the number of meters being ticked
+     */
+    public int size() {
+        return meters.size();
+    }
+
+    /**
+     * Ticks every meter once.
+     */
+    @Override
+    public void run() {
+        for (MeterMetric meter : meters) {
+            meter.tick();
+        }
+    }
+
+    void add(MeterMetric meter) {
+        meters.add(meter);
+    }
+
+    void remove(MeterMetric meter) {
+        meters.remove(meter);
+    }
+}
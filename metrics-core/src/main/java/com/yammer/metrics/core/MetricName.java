@@ -1,16 +1,29 @@
 package com.yammer.metrics.core;
 
 import javax.management.ObjectName;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * A value class encapsulating a metric's owning class and name.
  */
 public class MetricName {
+    // group and type for each class, so that naming a class's second metric
+    // doesn't go through reflection and a regex again; weak so that the
+    // cache doesn't keep unloaded classes alive
+    private static final Map<Class<?>, String[]> CLASS_NAMES =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, String[]>());
+
     private final String group;
     private final String type;
     private final String name;
     private final String scope;
-    private final String mbeanName;
+    private final MetricTags tags;
+    // both are computed on first use; racing threads compute the same value,
+    // and Strings are safe to publish without synchronization
+    private String mbeanName;
+    private int hash;
 
     /**
      * Creates a new {@link MetricName} without a scope.
@@ -41,7 +54,27 @@ public class MetricName {
      * @param scope the scope of the {@link Metric}
      */
     public MetricName(Class<?> klass, String name, String scope) {
-        this(klass.getPackage().getName(), klass.getSimpleName().replaceAll("\\$$", ""), name, scope);
+        this(groupAndType(klass), name, scope);
+    }
+
+    /**
+     * Creates a new tagged {@link MetricName}.
+     *
+     * @param klass the {@link Class} to which the {@link Metric} belongs
+     * @param name  the name of the {@link Metric}
+     * @param scope the scope of the {@link Metric}
+     * @param tags  the tags of the {@link Metric}
+     */
+    public MetricName(Class<?> klass, String name, String scope, MetricTags tags) {
+        this(groupAndType(klass), name, scope, tags);
+    }
+
+    private MetricName(String[] groupAndType, String name, String scope) {
+        this(groupAndType[0], groupAndType[1], name, scope);
+    }
+
+    private MetricName(String[] groupAndType, String name, String scope, MetricTags tags) {
+        this(groupAndType[0], groupAndType[1], name, scope, tags);
     }
 
     /**
@@ -53,7 +86,20 @@ public class MetricName {
      * @param scope the scope of the {@link Metric}
      */
     public MetricName(String group, String type, String name, String scope) {
-        this(group, type, name, scope, MetricName.createMBeanName(group, type, name, scope));
+        this(group, type, name, scope, MetricTags.EMPTY, null);
+    }
+
+    /**
+     * Creates a new tagged {@link MetricName}.
+     *
+     * @param group the group to which the {@link Metric} belongs
+     * @param type the type to which the {@link Metric} belongs
+     * @param name the name of the {@link Metric}
+     * @param scope the scope of the {@link Metric}
+     * @param tags the tags of the {@link Metric}
+     */
+    public MetricName(String group, String type, String name, String scope, MetricTags tags) {
+        this(group, type, name, scope, tags, null);
     }
     
     /**
@@ -63,9 +109,25 @@ public class MetricName {
      * @param type the type to which the {@link Metric} belongs
      * @param name the name of the {@link Metric}
      * @param scope the scope of the {@link Metric}
-     * @param mbeanName the 'ObjectName', represented as a string, to use when registering the mbean.
+     * @param mbeanName the 'ObjectName', represented as a string, to use when registering the mbean,
+     *                  or {@code null} to derive it from the other parts of the name
      */
     public MetricName(String group, String type, String name, String scope, String mbeanName) {
+        this(group, type, name, scope, MetricTags.EMPTY, mbeanName);
+    }
+
+    /**
+     * Creates a new tagged {@link MetricName}.
+     *
+     * @param group the group to which the {@link Metric} belongs
+     * @param type the type to which the {@link Metric} belongs
+     * @param name the name of the {@link Metric}
+     * @param scope the scope of the {@link Metric}
+     * @param tags the tags of the {@link Metric}
+     * @param mbeanName the 'ObjectName', represented as a string, to use when registering the mbean,
+     *                  or {@code null} to derive it from the other parts of the name
+     */
+    public MetricName(String group, String type, String name, String scope, MetricTags tags, String mbeanName) {
         if (group == null || type == null) {
             throw new IllegalArgumentException("Both group and type need to be specified");
         }
@@ -76,6 +138,7 @@ public class MetricName {
         this.type = type;
         this.name = name;
         this.scope = scope;
+        this.tags = tags == null ? MetricTags.EMPTY : tags;
         this.mbeanName = mbeanName;
     }
     
@@ -129,31 +192,92 @@ public class MetricName {
         return scope != null;
     }
 
+    /**
+     * Returns the tags of the {@link Metric}, which are empty for untagged
+     * metrics.
+     *
+     * @return the tags of the {@link Metric}
+     */
+    public MetricTags getTags() {
+        return tags;
+    }
+
+    /**
+     * Returns {@code true} if the {@link Metric} has any tags, {@code false}
+     * otherwise.
+     *
+     * @return {@code true} if the {@link Metric} has tags
+     */
+    public boolean hasTags() {
+        return !tags.isEmpty();
+    }
+
     /**
      * Returns the mbean name for the {@link Metric} identified by this metric name.
      * @return the mbean name
      */
     public String getMBeanName() {
-        return mbeanName;
+        String result = mbeanName;
+        if (result == null) {
+            result = createMBeanName(group, type, name, scope, tags);
+            mbeanName = result;
+        }
+        return result;
     }
 
     @Override
     public boolean equals(Object o) {
-        return (o != null) && (this == o || this.mbeanName.equals(((MetricName)o).mbeanName));
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricName)) {
+            return false;
+        }
+        final MetricName that = (MetricName) o;
+        return hashCode() == that.hashCode()
+                && getMBeanName().equals(that.getMBeanName())
+                && tags.equals(that.tags);
     }
 
     @Override
     public int hashCode() {
-        return mbeanName.hashCode();
+        int result = hash;
+        if (result == 0) {
+            result = 31 * getMBeanName().hashCode() + tags.hashCode();
+            hash = result;
+        }
+        return result;
     }
 
     @Override
     public String toString() {
-        return mbeanName;
+        return getMBeanName();
     }
+
+    private static String quoteIfNeeded(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (",=:\"*?\n".indexOf(value.charAt(i)) >= 0) {
+                return ObjectName.quote(value);
+            }
+        }
+        return value;
+    }
+
+    private static String[] groupAndType(Class<?> klass) {
+        String[] groupAndType = CLASS_NAMES.get(klass);
+        if (groupAndType == null) {
+            final String type = klass.getSimpleName();
+            groupAndType = new String[]{
+                    klass.getPackage().getName(),
+                    type.endsWith("$") ? type.substring(0, type.length() - 1) : type
+            };
+            CLASS_NAMES.put(klass, groupAndType);
+        }
+        return groupAndType;
+    }
+
     
-    
-    private static String createMBeanName(String group, String type, String name, String scope){
+    private static String createMBeanName(String group, String type, String name, String scope, MetricTags tags){
         StringBuilder mbeanNameBuilder = new StringBuilder();
 
         mbeanNameBuilder.append(group);
@@ -167,6 +291,12 @@ public class MetricName {
             mbeanNameBuilder.append(",name=");
             mbeanNameBuilder.append(name);
         }
+        for (int i = 0; i < tags.size(); i++) {
+            mbeanNameBuilder.append(',');
+            mbeanNameBuilder.append(tags.key(i));
+            mbeanNameBuilder.append('=');
+            mbeanNameBuilder.append(quoteIfNeeded(tags.value(i)));
+        }
         
         return mbeanNameBuilder.toString();
     }
@@ -0,0 +1,137 @@
+package com.yammer.metrics.core;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The {@link MetricName}s a {@link MetricsRegistry} has created for
+ * class-based metrics, indexed by class, scope and name so that finding the
+ * name of a metric which already exists allocates nothing. A scope's map is
+ * dropped as soon as its last name is, so per-request or per-connection
+ * scopes don't leave empty maps behind.
+ */
+class MetricNameIndex {
+    private final ConcurrentMap<Class<?>, ClassNames> classes =
+            new ConcurrentHashMap<Class<?>, ClassNames>();
+    private final ConcurrentMap<MetricName, Key> keys =
+            new ConcurrentHashMap<MetricName, Key>();
+
+    /**
+     * Returns the name indexed under the given class, name and scope, or
+     * {@code null}.
+     */
+    MetricName get(Class<?> klass, String name, String scope) {
+        final ClassNames names = classes.get(klass);
+        if (names == null) {
+            return null;
+        }
+        return names.get(name, scope);
+    }
+
+    /**
+     * Indexes {@code metricName} under the given class, name and scope unless
+     * another thread got there first, and returns whichever name is indexed.
+     */
+    MetricName putIfAbsent(Class<?> klass, String name, String scope, MetricName metricName) {
+        ClassNames names = classes.get(klass);
+        if (names == null) {
+            final ClassNames newNames = new ClassNames();
+            names = classes.putIfAbsent(klass, newNames);
+            if (names == null) {
+                names = newNames;
+            }
+        }
+        final MetricName existing = names.putIfAbsent(name, scope, metricName);
+        if (existing != null) {
+            return existing;
+        }
+        keys.put(metricName, new Key(klass, name, scope));
+        return metricName;
+    }
+
+    /**
+     * Drops the given name from the index, if it is there.
+     */
+    void remove(MetricName metricName) {
+        final Key key = keys.remove(metricName);
+        if (key != null) {
+            final ClassNames names = classes.get(key.klass);
+            if (names != null) {
+                names.remove(key.name, key.scope);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of names and scopes indexed.
+     */
+    int size() {
+        int size = keys.size();
+        for (ClassNames names : classes.values()) {
+            size += names.scopes();
+        }
+        return size;
+    }
+
+    private static class ClassNames {
+        private final ConcurrentMap<String, MetricName> unscoped =
+                new ConcurrentHashMap<String, MetricName>();
+        private final ConcurrentMap<String, ConcurrentMap<String, MetricName>> scoped =
+                new ConcurrentHashMap<String, ConcurrentMap<String, MetricName>>();
+
+        MetricName get(String name, String scope) {
+            if (scope == null) {
+                return unscoped.get(name);
+            }
+            final ConcurrentMap<String, MetricName> names = scoped.get(scope);
+            if (names == null) {
+                return null;
+            }
+            return names.get(name);
+        }
+
+        // writes to scoped names are synchronized so that a scope's map
+        // can't be dropped just as another thread adds a name to it
+        synchronized MetricName putIfAbsent(String name, String scope, MetricName metricName) {
+            if (scope == null) {
+                return unscoped.putIfAbsent(name, metricName);
+            }
+            ConcurrentMap<String, MetricName> names = scoped.get(scope);
+            if (names == null) {
+                names = new ConcurrentHashMap<String, MetricName>();
+                scoped.put(scope, names);
+            }
+            return names.putIfAbsent(name, metricName);
+        }
+
+        synchronized void remove(String name, String scope) {
+            if (scope == null) {
+                unscoped.remove(name);
+            } else {
+                final ConcurrentMap<String, MetricName> names = scoped.get(scope);
+                if (names != null) {
+                    names.remove(name);
+                    if (names.isEmpty()) {
+                        scoped.remove(scope);
+                    }
+                }
+            }
+        }
+
+        int scopes() {
+            return scoped.size();
+        }
+    }
+
+    private static class Key {
+        final Class<?> klass;
+        final String name;
+        final String scope;
+
+        Key(Class<?> klass, String name, String scope) {
+            this.klass = klass;
+            this.name = name;
+            this.scope = scope;
+        }
+    }
+}
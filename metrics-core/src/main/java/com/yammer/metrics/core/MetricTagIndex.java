@@ -0,0 +1,98 @@
+package com.yammer.metrics.core;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The names of a {@link MetricsRegistry}'s tagged metrics, indexed by tag key
+ * and value, so that finding the metrics with a given tag doesn't mean
+ * scanning every metric in the registry.
+ */
+class MetricTagIndex {
+    private final ConcurrentMap<String, ConcurrentMap<String, Set<MetricName>>> tags =
+            new ConcurrentHashMap<String, ConcurrentMap<String, Set<MetricName>>>();
+
+    /**
+     * Indexes the given name under each of its tags.
+     */
+    synchronized void add(MetricName name) {
+        final MetricTags nameTags = name.getTags();
+        for (int i = 0; i < nameTags.size(); i++) {
+            ConcurrentMap<String, Set<MetricName>> values = tags.get(nameTags.key(i));
+            if (values == null) {
+                values = new ConcurrentHashMap<String, Set<MetricName>>();
+                tags.put(nameTags.key(i), values);
+            }
+            Set<MetricName> names = values.get(nameTags.value(i));
+            if (names == null) {
+                names = Collections.newSetFromMap(new ConcurrentHashMap<MetricName, Boolean>());
+                values.put(nameTags.value(i), names);
+            }
+            names.add(name);
+        }
+    }
+
+    /**
+     * Drops the given name from the index, along with any tag value or key
+     * which no longer has any names, so that short-lived tag values don't
+     * accumulate. Additions and removals are serialized, so a set can't be
+     * dropped just as a name is added to it; lookups don't lock.
+     */
+    synchronized void remove(MetricName name) {
+        final MetricTags nameTags = name.getTags();
+        for (int i = 0; i < nameTags.size(); i++) {
+            final ConcurrentMap<String, Set<MetricName>> values = tags.get(nameTags.key(i));
+            if (values != null) {
+                final Set<MetricName> names = values.get(nameTags.value(i));
+                if (names != null) {
+                    names.remove(name);
+                    if (names.isEmpty()) {
+                        values.remove(nameTags.value(i), names);
+                        if (values.isEmpty()) {
+                            tags.remove(nameTags.key(i), values);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the names which have every one of the given tags. The smallest
+     * of the tags' sets of names is filtered by the others' tags, so the cost
+     * is proportional to the number of metrics with the rarest tag.
+     */
+    Set<MetricName> find(MetricTags query) {
+        if (query.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<MetricName> smallest = null;
+        for (int i = 0; i < query.size(); i++) {
+            final Set<MetricName> names = find(query.key(i), query.value(i));
+            if (names == null) {
+                return Collections.emptySet();
+            }
+            if (smallest == null || names.size() < smallest.size()) {
+                smallest = names;
+            }
+        }
+        final Set<MetricName> result = new HashSet<MetricName>();
+        for (MetricName name : smallest) {
+            if (name.getTags().containsAll(query)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    private Set<MetricName> find(String key, String value) {
+        final ConcurrentMap<String, Set<MetricName>> values = tags.get(key);
+        if (values == null) {
+            return null;
+        }
+        return values.get(value);
+    }
+}
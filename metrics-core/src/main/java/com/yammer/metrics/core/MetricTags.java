@@ -0,0 +1,221 @@
+package com.yammer.metrics.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * An immutable set of key/value tags which, along with its group, type, name
+ * and scope, identify a {@link Metric} (e.g., {@code endpoint=/search} and
+ * {@code status=200}).
+ * <p/>
+ * Tags are kept sorted by key and the hash code is computed once, so tag sets
+ * are cheap to compare and to use as map keys. Keys may not contain any of
+ * {@code ,=:*?"} or a newline, nor be one of the properties a metric's mbean
+ * name already has ({@code type}, {@code scope} or {@code name}).
+ */
+public final class MetricTags {
+    /**
+     * A tag set with no tags.
+     */
+    public static final MetricTags EMPTY = new MetricTags(new String[0], new String[0]);
+
+    private static final String RESERVED_CHARACTERS = ",=:*?\"\n";
+
+    private final String[] keys;
+    private final String[] values;
+    private final int hash;
+
+    /**
+     * Returns a tag set of the given alternating keys and values (e.g.,
+     * {@code MetricTags.of("endpoint", "/search", "status", "200")}).
+     *
+     * @param keysAndValues alternating tag keys and values
+     * @return a tag set of the given tags
+     * @throws IllegalArgumentException if a key is given twice, a key or
+     *                                  value is missing, or a key is invalid
+     */
+    public static MetricTags of(String... keysAndValues) {
+        if (keysAndValues.length % 2 != 0) {
+            throw new IllegalArgumentException("tags must be given as pairs of keys and values");
+        }
+        final SortedMap<String, String> tags = new TreeMap<String, String>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            if (tags.put(checkKey(keysAndValues[i]), checkValue(keysAndValues[i + 1])) != null) {
+                throw new IllegalArgumentException("duplicate tag: " + keysAndValues[i]);
+            }
+        }
+        return of(tags);
+    }
+
+    /**
+     * Returns a tag set of the given tags.
+     *
+     * @param tags a map of tag keys to values
+     * @return a tag set of the given tags
+     * @throws IllegalArgumentException if a key or value is missing or a key
+     *                                  is invalid
+     */
+    public static MetricTags of(Map<String, String> tags) {
+        if (tags.isEmpty()) {
+            return EMPTY;
+        }
+        final SortedMap<String, String> sorted = new TreeMap<String, String>();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            sorted.put(checkKey(entry.getKey()), checkValue(entry.getValue()));
+        }
+        return new MetricTags(sorted.keySet().toArray(new String[sorted.size()]),
+                              sorted.values().toArray(new String[sorted.size()]));
+    }
+
+    private MetricTags(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+        this.hash = 31 * Arrays.hashCode(keys) + Arrays.hashCode(values);
+    }
+
+    /**
+     * Returns a copy of this tag set with the given tag added, replacing any
+     * tag with the same key.
+     *
+     * @param key   the tag's key
+     * @param value the tag's value
+     * @return a tag set with the given tag
+     */
+    public MetricTags with(String key, String value) {
+        final SortedMap<String, String> tags = new TreeMap<String, String>(asMap());
+        tags.put(checkKey(key), checkValue(value));
+        return of(tags);
+    }
+
+    /**
+     * Returns the number of tags.
+     *
+     * @return the number of tags
+     */
+    public int size() {
+        return keys.length;
+    }
+
+    /**
+     * Returns {@code true} if there are no tags.
+     *
+     * @return {@code true} if there are no tags
+     */
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * Returns the key of the {@code i}th tag, in key order.
+     *
+     * @param i the index of the tag
+     * @return the key of the {@code i}th tag
+     */
+    public String key(int i) {
+        return keys[i];
+    }
+
+    /**
+     * Returns the value of the {@code i}th tag, in key order.
+     *
+     * @param i the index of the tag
+     * @return the value of the {@code i}th tag
+     */
+    public String value(int i) {
+        return values[i];
+    }
+
+    /**
+     * Returns the value of the tag with the given key, or {@code null}.
+     *
+     * @param key the tag's key
+     * @return the value of the tag with the given key, or {@code null}
+     */
+    public String get(String key) {
+        final int i = Arrays.binarySearch(keys, key);
+        return i < 0 ? null : values[i];
+    }
+
+    /**
+     * Returns {@code true} if this tag set includes every tag in
+     * {@code tags}.
+     *
+     * @param tags a tag set
+     * @return {@code true} if this includes every tag in {@code tags}
+     */
+    public boolean containsAll(MetricTags tags) {
+        for (int i = 0; i < tags.keys.length; i++) {
+            if (!tags.values[i].equals(get(tags.keys[i]))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the tags as a sorted map of keys to values.
+     *
+     * @return the tags as an unmodifiable sorted map
+     */
+    public SortedMap<String, String> asMap() {
+        final SortedMap<String, String> tags = new TreeMap<String, String>();
+        for (int i = 0; i < keys.length; i++) {
+            tags.put(keys[i], values[i]);
+        }
+        return Collections.unmodifiableSortedMap(tags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof MetricTags)) {
+            return false;
+        }
+        final MetricTags that = (MetricTags) o;
+        return hash == that.hash && Arrays.equals(keys, that.keys) && Arrays.equals(values, that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(keys[i]).append('=').append(values[i]);
+        }
+        return builder.append('}').toString();
+    }
+
+    private static String checkKey(String key) {
+        if (key == null || key.length() == 0) {
+            throw new IllegalArgumentException("tag keys need to be specified");
+        }
+        if ("type".equals(key) || "scope".equals(key) || "name".equals(key)) {
+            throw new IllegalArgumentException("reserved tag key: " + key);
+        }
+        for (int i = 0; i < key.length(); i++) {
+            if (RESERVED_CHARACTERS.indexOf(key.charAt(i)) >= 0) {
+                throw new IllegalArgumentException("invalid tag key: " + key);
+            }
+        }
+        return key;
+    }
+
+    private static String checkValue(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("tag values need to be specified");
+        }
+        return value;
+    }
+}
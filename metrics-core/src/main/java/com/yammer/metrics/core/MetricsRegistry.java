@@ -1,20 +1,230 @@
 package com.yammer.metrics.core;
 
 import com.yammer.metrics.core.HistogramMetric.SampleType;
+import com.yammer.metrics.stats.Sample;
 import com.yammer.metrics.util.ThreadPools;
 
 import javax.management.MalformedObjectNameException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A registry of metric instances.
  */
 public class MetricsRegistry {
+    /**
+     * How the moving averages of a registry's meters and timers are ticked.
+     */
+    public enum TickMode {
+        /**
+         * Each meter schedules its own task on the {@code meter-tick} pool.
+         */
+        SCHEDULED,
+
+        /**
+         * A single task on the {@code meter-tick} pool ticks every meter in
+         * the registry.
+         */
+        SHARED,
+
+        /**
+         * Nothing is ticked in the background; each meter catches up on the
+         * intervals which have passed whenever it is marked or read.
+         */
+        LAZY
+    }
+
+    private static final MetricName REJECTED_REGISTRATIONS =
+            new MetricName(MetricsRegistry.class, "rejected-registrations");
+
     private final ConcurrentMap<MetricName, Metric> metrics = newMetricsMap();
+    private final MetricNameIndex names = new MetricNameIndex();
+    private final MetricTagIndex tagIndex = new MetricTagIndex();
     private final ThreadPools threadPools = new ThreadPools();
     private final List<MetricsRegistryListener> listeners =
             new CopyOnWriteArrayList<MetricsRegistryListener>();
+    private final TickMode tickMode;
+    private final MeterTicker ticker = new MeterTicker();
+    private ScheduledExecutorService tickerPool;
+    private final Clock clock;
+    private final Map<MetricName, Activity> activity = new HashMap<MetricName, Activity>();
+    private long timeToIdle;
+    private ScheduledFuture<?> expiry;
+    private final ConcurrentMap<String, AtomicInteger> groupSizes =
+            new ConcurrentHashMap<String, AtomicInteger>();
+    private final Set<MetricName> overflowNames =
+            Collections.newSetFromMap(new ConcurrentHashMap<MetricName, Boolean>());
+    private final CounterMetric rejectedRegistrations = new CounterMetric();
+    private volatile int maxMetrics = Integer.MAX_VALUE;
+    private volatile int maxMetricsPerGroup = Integer.MAX_VALUE;
+
+    /**
+     * Creates a new {@link MetricsRegistry} whose meters and timers share a
+     * single ticker.
+     */
+    public MetricsRegistry() {
+        this(TickMode.SHARED);
+    }
+
+    /**
+     * Creates a new {@link MetricsRegistry}.
+     *
+     * @param tickMode how the registry's meters and timers should be ticked
+     */
+    public MetricsRegistry(TickMode tickMode) {
+        this(tickMode, Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link MetricsRegistry} with the given clock.
+     *
+     * @param tickMode how the registry's meters and timers should be ticked
+     * @param clock    the clock used by the registry's timers, by its lazy
+     *                 meters, and to decide when metrics have been idle
+     */
+    public MetricsRegistry(TickMode tickMode, Clock clock) {
+        this.tickMode = tickMode;
+        this.clock = clock;
+    }
+
+    /**
+     * Removes counters, meters, histograms and timers which haven't been
+     * updated for the given time, notifying listeners as
+     * {@link #removeMetric(MetricName)} does. This suits metrics for
+     * short-lived scopes, such as connections or batch jobs, which would
+     * otherwise accumulate forever.
+     * <p/>
+     * Nothing is recorded when a metric is updated. Instead, the registry
+     * checks every half of {@code timeToIdle} whether each metric's count has
+     * changed since the last check, so a metric is removed after between one
+     * and one and a half times {@code timeToIdle} without updates. Gauges
+     * are never removed, and a counter which is incremented and decremented
+     * back to the same value between checks looks idle. Code which keeps a
+     * reference to a removed metric can still update it, but those updates
+     * will no longer be reported; ask the registry for the metric again.
+     *
+     * @param timeToIdle how long a metric may go without updates, or zero to
+     *                   keep metrics forever
+     * @param unit       the unit of {@code timeToIdle}
+     */
+    public void setTimeToIdle(long timeToIdle, TimeUnit unit) {
+        synchronized (activity) {
+            this.timeToIdle = unit.toNanos(timeToIdle);
+            if (expiry != null) {
+                expiry.cancel(false);
+                expiry = null;
+            }
+            if (this.timeToIdle > 0) {
+                final long period = Math.max(this.timeToIdle / 2, TimeUnit.MILLISECONDS.toNanos(1));
+                expiry = threadPools.newScheduledThreadPool(1, "metrics-expiry").scheduleWithFixedDelay(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                expireIdleMetrics();
+                            }
+                        }, period, period, TimeUnit.NANOSECONDS);
+            } else {
+                activity.clear();
+            }
+        }
+    }
+
+    /**
+     * Removes the metrics which have been idle for longer than the
+     * registry's time to idle. This is run periodically once a time to idle
+     * is set; it's exposed so that it can also be run on demand.
+     *
+     * @see #setTimeToIdle(long, TimeUnit)
+     */
+    public void expireIdleMetrics() {
+        synchronized (activity) {
+            if (timeToIdle <= 0) {
+                return;
+            }
+            final long now = clock.tick();
+            activity.keySet().retainAll(metrics.keySet());
+            for (Map.Entry<MetricName, Metric> entry : metrics.entrySet()) {
+                final Metric metric = entry.getValue();
+                final long count;
+                if (metric instanceof CounterMetric) {
+                    count = ((CounterMetric) metric).count();
+                } else if (metric instanceof Metered) {
+                    count = ((Metered) metric).count();
+                } else if (metric instanceof HistogramMetric) {
+                    count = ((HistogramMetric) metric).count();
+                } else {
+                    continue;
+                }
+                final Activity last = activity.get(entry.getKey());
+                if (last == null || last.count != count) {
+                    activity.put(entry.getKey(), new Activity(count, now));
+                } else if (now - last.since >= timeToIdle && metrics.remove(entry.getKey(), metric)) {
+                    activity.remove(entry.getKey());
+                    metricRemoved(entry.getKey(), metric);
+                }
+            }
+        }
+    }
+
+    /**
+     * Limits the number of metrics the registry will hold. Once it holds
+     * that many, creating a metric under a new name returns a shared
+     * overflow metric of the same kind instead (e.g., an {@code overflow-timers}
+     * timer), and a new gauge is returned without being registered. Either
+     * way the registration is counted as rejected. This keeps memory bounded
+     * when metric names are built from input such as request paths.
+     *
+     * @param maxMetrics the most metrics the registry will hold
+     * @see #rejectedRegistrations()
+     */
+    public void setMaxMetrics(int maxMetrics) {
+        this.maxMetrics = maxMetrics;
+    }
+
+    /**
+     * Returns the most metrics the registry will hold.
+     *
+     * @return the most metrics the registry will hold
+     */
+    public int getMaxMetrics() {
+        return maxMetrics;
+    }
+
+    /**
+     * Limits the number of metrics the registry will hold in each group.
+     * Once a group is full, creating a metric under a new name in that group
+     * returns an overflow metric of the same kind, named after the group
+     * (e.g., {@code com.example:type=overflow,name=timers}), instead.
+     *
+     * @param maxMetricsPerGroup the most metrics the registry will hold in
+     *                           each group
+     * @see #setMaxMetrics(int)
+     */
+    public void setMaxMetricsPerGroup(int maxMetricsPerGroup) {
+        this.maxMetricsPerGroup = maxMetricsPerGroup;
+    }
+
+    /**
+     * Returns the most metrics the registry will hold in each group.
+     *
+     * @return the most metrics the registry will hold in each group
+     */
+    public int getMaxMetricsPerGroup() {
+        return maxMetricsPerGroup;
+    }
+
+    /**
+     * Returns the number of metrics which weren't registered because a
+     * cardinality limit had been reached. The count is also registered as
+     * the {@code rejected-registrations} counter once the first registration
+     * is rejected.
+     *
+     * @return the number of rejected registrations
+     */
+    public long rejectedRegistrations() {
+        return rejectedRegistrations.count();
+    }
 
     /**
      * Given a new {@link com.yammer.metrics.core.GaugeMetric}, registers it
@@ -47,7 +257,7 @@ public class MetricsRegistry {
                                        String name,
                                        String scope,
                                        GaugeMetric<T> metric) {
-        return newGauge(createName(klass, name, scope), metric);
+        return newGauge(metricName(klass, name, scope), metric);
     }
 
     /**
@@ -61,6 +271,10 @@ public class MetricsRegistry {
      */
     public <T> GaugeMetric<T> newGauge(MetricName metricName,
                                        GaugeMetric<T> metric) {
+        if (!metrics.containsKey(metricName) && admit(metricName, null) == null) {
+            // gauges are supplied by the caller, so there's no overflow gauge
+            return metric;
+        }
         return getOrAdd(metricName, metric);
     }
 
@@ -99,7 +313,7 @@ public class MetricsRegistry {
                                 String scope,
                                 String objectName,
                                 String attribute) throws MalformedObjectNameException {
-        return newJmxGauge(createName(klass, name, scope), objectName, attribute);
+        return newJmxGauge(metricName(klass, name, scope), objectName, attribute);
     }
 
     /**
@@ -115,6 +329,13 @@ public class MetricsRegistry {
     public JmxGauge newJmxGauge(MetricName metricName,
                                 String objectName,
                                 String attribute) throws MalformedObjectNameException {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (JmxGauge) existingMetric;
+        }
+        if (admit(metricName, null) == null) {
+            return new JmxGauge(objectName, attribute);
+        }
         return getOrAdd(metricName, new JmxGauge(objectName, attribute));
     }
 
@@ -143,7 +364,7 @@ public class MetricsRegistry {
     public CounterMetric newCounter(Class<?> klass,
                                     String name,
                                     String scope) {
-        return newCounter(createName(klass, name, scope));
+        return newCounter(metricName(klass, name, scope));
     }
 
     /**
@@ -154,6 +375,14 @@ public class MetricsRegistry {
      * @return a new {@link com.yammer.metrics.core.CounterMetric}
      */
     public CounterMetric newCounter(MetricName metricName) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (CounterMetric) existingMetric;
+        }
+        final MetricName admittedName = admit(metricName, "counters");
+        if (admittedName != metricName) {
+            return newCounter(admittedName);
+        }
         return getOrAdd(metricName, new CounterMetric());
     }
 
@@ -186,7 +415,24 @@ public class MetricsRegistry {
                                         String name,
                                         String scope,
                                         boolean biased) {
-        return newHistogram(createName(klass, name, scope), biased);
+        return newHistogram(metricName(klass, name, scope), biased);
+    }
+
+    /**
+     * Creates a new {@link HistogramMetric} with the given type of sample and
+     * registers it under the given class, name, and scope.
+     *
+     * @param klass      the class which owns the metric
+     * @param name       the name of the metric
+     * @param scope      the scope of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link HistogramMetric}
+     */
+    public HistogramMetric newHistogram(Class<?> klass,
+                                        String name,
+                                        String scope,
+                                        SampleType sampleType) {
+        return newHistogram(metricName(klass, name, scope), sampleType);
     }
 
     /**
@@ -227,8 +473,91 @@ public class MetricsRegistry {
      */
     public HistogramMetric newHistogram(MetricName metricName,
                                         boolean biased) {
-        return getOrAdd(metricName,
-                        new HistogramMetric(biased ? SampleType.BIASED : SampleType.UNIFORM));
+        return newHistogram(metricName, biased ? SampleType.BIASED : SampleType.UNIFORM);
+    }
+
+    /**
+     * Creates a new {@link HistogramMetric} with the given type of sample and
+     * registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link HistogramMetric}
+     */
+    public HistogramMetric newHistogram(MetricName metricName,
+                                        SampleType sampleType) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (HistogramMetric) existingMetric;
+        }
+        final MetricName admittedName = admit(metricName, "histograms");
+        if (admittedName != metricName) {
+            return newHistogram(admittedName, sampleType);
+        }
+        return getOrAdd(metricName, new HistogramMetric(sampleType));
+    }
+
+    /**
+     * Creates a new {@link HistogramMetric} which keeps the given sample and
+     * registers it under the given metric name. If a histogram is already
+     * registered under the name, it is returned and {@code sample} is
+     * unused.
+     *
+     * @param metricName the name of the metric
+     * @param sample     the sample the histogram should keep (e.g., a
+     *                   {@link com.yammer.metrics.stats.SlidingTimeWindowSample}
+     *                   with a window of its own)
+     * @return a new {@link HistogramMetric}
+     */
+    public HistogramMetric newHistogram(MetricName metricName,
+                                        Sample sample) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (HistogramMetric) existingMetric;
+        }
+        final MetricName admittedName = admit(metricName, "histograms");
+        if (admittedName != metricName) {
+            return newHistogram(admittedName, sample);
+        }
+        return getOrAdd(metricName, new HistogramMetric(sample));
+    }
+
+    /**
+     * Creates a new {@link IntervalHistogramMetric} with the given type of
+     * sample and registers it under the given class, name, and scope.
+     *
+     * @param klass      the class which owns the metric
+     * @param name       the name of the metric
+     * @param scope      the scope of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link IntervalHistogramMetric}
+     */
+    public IntervalHistogramMetric newIntervalHistogram(Class<?> klass,
+                                                        String name,
+                                                        String scope,
+                                                        SampleType sampleType) {
+        return newIntervalHistogram(metricName(klass, name, scope), sampleType);
+    }
+
+    /**
+     * Creates a new {@link IntervalHistogramMetric} with the given type of
+     * sample and registers it under the given metric name.
+     *
+     * @param metricName the name of the metric
+     * @param sampleType the type of sample the histogram should keep
+     * @return a new {@link IntervalHistogramMetric}
+     */
+    public IntervalHistogramMetric newIntervalHistogram(MetricName metricName,
+                                                        SampleType sampleType) {
+        final Metric existingMetric = metrics.get(metricName);
+        if (existingMetric != null) {
+            return (IntervalHistogramMetric) existingMetric;
+        }
+        final MetricName admittedName = admit(metricName, "interval-histograms");
+        if (admittedName != metricName) {
+            return newIntervalHistogram(admittedName, sampleType);
+        }
+        return getOrAdd(metricName, new IntervalHistogramMetric(sampleType));
     }
 
     /**
@@ -266,7 +595,7 @@ public class MetricsRegistry {
                                 String scope,
                                 String eventType,
                                 TimeUnit unit) {
-        return newMeter(createName(klass, name, scope), eventType, unit);
+        return newMeter(metricName(klass, name, scope), eventType, unit);
     }
 
     /**
@@ -284,12 +613,18 @@ public class MetricsRegistry {
                                 TimeUnit unit) {
         final Metric existingMetric = metrics.get(metricName);
         if (existingMetric == null) {
-            final MeterMetric metric = MeterMetric.newMeter(newMeterTickThreadPool(), eventType, unit);
+            final MetricName admittedName = admit(metricName, "meters");
+            if (admittedName != metricName) {
+                return newMeter(admittedName, eventType, unit);
+            }
+            final MeterMetric metric = newMeterMetric(eventType, unit);
             final Metric justAddedMetric = metrics.putIfAbsent(metricName, metric);
             if (justAddedMetric == null) {
-                notifyMetricAdded(metricName, metric);
+                metricAdded(metricName, metric);
                 return metric;
             }
+            // lost the race; don't leave the loser ticking forever
+            metric.stop();
             return (MeterMetric) justAddedMetric;
         }
         return (MeterMetric) existingMetric;
@@ -356,7 +691,28 @@ public class MetricsRegistry {
                                 String scope,
                                 TimeUnit durationUnit,
                                 TimeUnit rateUnit) {
-        return newTimer(createName(klass, name, scope), durationUnit, rateUnit);
+        return newTimer(metricName(klass, name, scope), durationUnit, rateUnit);
+    }
+
+    /**
+     * Creates a new {@link TimerMetric} whose durations are kept in the given
+     * type of sample and registers it under the given class, name, and scope.
+     *
+     * @param klass        the class which owns the metric
+     * @param name         the name of the metric
+     * @param scope        the scope of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer's durations are kept in
+     * @return a new {@link TimerMetric}
+     */
+    public TimerMetric newTimer(Class<?> klass,
+                                String name,
+                                String scope,
+                                TimeUnit durationUnit,
+                                TimeUnit rateUnit,
+                                SampleType sampleType) {
+        return newTimer(metricName(klass, name, scope), durationUnit, rateUnit, sampleType);
     }
 
     /**
@@ -371,21 +727,60 @@ public class MetricsRegistry {
     public TimerMetric newTimer(MetricName metricName,
                                 TimeUnit durationUnit,
                                 TimeUnit rateUnit) {
+        return newTimer(metricName, durationUnit, rateUnit, SampleType.BIASED);
+    }
+
+    /**
+     * Creates a new {@link TimerMetric} whose durations are kept in the given
+     * type of sample and registers it under the given metric name.
+     *
+     * @param metricName   the name of the metric
+     * @param durationUnit the duration scale unit of the new timer
+     * @param rateUnit     the rate scale unit of the new timer
+     * @param sampleType   the type of sample the timer's durations are kept in
+     * @return a new {@link TimerMetric}
+     */
+    public TimerMetric newTimer(MetricName metricName,
+                                TimeUnit durationUnit,
+                                TimeUnit rateUnit,
+                                SampleType sampleType) {
         final Metric existingMetric = metrics.get(metricName);
         if (existingMetric == null) {
-            final TimerMetric metric = new TimerMetric(newMeterTickThreadPool(), durationUnit, rateUnit);
+            final MetricName admittedName = admit(metricName, "timers");
+            if (admittedName != metricName) {
+                return newTimer(admittedName, durationUnit, rateUnit, sampleType);
+            }
+            final TimerMetric metric = newTimerMetric(durationUnit, rateUnit, sampleType);
             final Metric justAddedMetric = metrics.putIfAbsent(metricName, metric);
             if (justAddedMetric == null) {
-                notifyMetricAdded(metricName, metric);
+                metricAdded(metricName, metric);
                 return metric;
             }
+            // lost the race; don't leave the loser ticking forever
+            metric.stop();
             return (TimerMetric) justAddedMetric;
         }
         return (TimerMetric) existingMetric;
     }
     
     /**
-     * Override to customize how {@link MetricName}s are created.
+     * Returns the name for the given class, name, and scope, creating it with
+     * {@link #createName(Class, String, String)} the first time it is asked
+     * for. Later lookups are a few map reads and allocate nothing.
+     */
+    private MetricName metricName(Class<?> klass, String name, String scope) {
+        final MetricName metricName = names.get(klass, name, scope);
+        if (metricName != null) {
+            return metricName;
+        }
+        return names.putIfAbsent(klass, name, scope, createName(klass, name, scope));
+    }
+
+    /**
+     * Override to customize how {@link MetricName}s are created. The
+     * registry remembers the names it creates for each class, name, and
+     * scope, so this should always return the same name for the same
+     * arguments.
      * 
      * @param klass
      * @param name
@@ -406,6 +801,38 @@ public class MetricsRegistry {
         return Collections.unmodifiableMap(metrics);
     }
 
+    /**
+     * Returns the metrics which have the given tag.
+     *
+     * @param key   the tag's key
+     * @param value the tag's value
+     * @return a map of the names of the metrics with the given tag to the
+     *         metrics
+     */
+    public Map<MetricName, Metric> taggedMetrics(String key, String value) {
+        return taggedMetrics(MetricTags.of(key, value));
+    }
+
+    /**
+     * Returns the metrics which have every one of the given tags. The lookup
+     * goes through an index of the registry's tags rather than scanning
+     * every metric.
+     *
+     * @param tags the tags the metrics must have
+     * @return a map of the names of the metrics with the given tags to the
+     *         metrics
+     */
+    public Map<MetricName, Metric> taggedMetrics(MetricTags tags) {
+        final Map<MetricName, Metric> tagged = new HashMap<MetricName, Metric>();
+        for (MetricName name : tagIndex.find(tags)) {
+            final Metric metric = metrics.get(name);
+            if (metric != null) {
+                tagged.put(name, metric);
+            }
+        }
+        return tagged;
+    }
+
     public ThreadPools threadPools() {
         return threadPools;
     }
@@ -414,6 +841,48 @@ public class MetricsRegistry {
         return threadPools.newScheduledThreadPool(2, "meter-tick");
     }
 
+    private MeterMetric newMeterMetric(String eventType, TimeUnit unit) {
+        switch (tickMode) {
+            case SHARED:
+                return MeterMetric.newMeter(sharedTicker(), eventType, unit);
+            case LAZY:
+                return MeterMetric.newLazyMeter(eventType, unit, clock);
+            default:
+                return MeterMetric.newMeter(newMeterTickThreadPool(), eventType, unit);
+        }
+    }
+
+    private TimerMetric newTimerMetric(TimeUnit durationUnit, TimeUnit rateUnit, SampleType sampleType) {
+        switch (tickMode) {
+            case SHARED:
+                return new TimerMetric(sharedTicker(), durationUnit, rateUnit, clock, sampleType);
+            case LAZY:
+                return TimerMetric.newLazyTimer(durationUnit, rateUnit, clock, sampleType);
+            default:
+                return new TimerMetric(newMeterTickThreadPool(), durationUnit, rateUnit, clock, sampleType);
+        }
+    }
+
+    /**
+     * Returns the registry's ticker, scheduling it on the {@code meter-tick}
+     * pool first if it isn't already running there. The pool is looked up
+     * each time so that the ticker is started again after
+     * {@link ThreadPools#shutdownThreadPools()}.
+     */
+    private MeterTicker sharedTicker() {
+        final ScheduledExecutorService pool = newMeterTickThreadPool();
+        synchronized (ticker) {
+            if (tickerPool != pool) {
+                pool.scheduleAtFixedRate(ticker,
+                                         MeterTicker.INTERVAL,
+                                         MeterTicker.INTERVAL,
+                                         TimeUnit.SECONDS);
+                tickerPool = pool;
+            }
+        }
+        return ticker;
+    }
+
     /**
      * Removes the metric for the given class with the given name.
      *
@@ -433,7 +902,8 @@ public class MetricsRegistry {
      * @param scope the scope of the metric
      */
     public void removeMetric(Class<?> klass, String name, String scope) {
-        removeMetric(createName(klass, name, scope));
+        final MetricName metricName = names.get(klass, name, scope);
+        removeMetric(metricName == null ? createName(klass, name, scope) : metricName);
     }
 
     /**
@@ -444,12 +914,7 @@ public class MetricsRegistry {
     public void removeMetric(MetricName name) {
         final Metric metric = metrics.remove(name);
         if (metric != null) {
-            if (metric instanceof MeterMetric) {
-                ((MeterMetric) metric).stop();
-            } else if (metric instanceof TimerMetric) {
-                ((TimerMetric) metric).stop();
-            }
-            notifyMetricRemoved(name);
+            metricRemoved(name, metric);
         }
     }
 
@@ -469,7 +934,7 @@ public class MetricsRegistry {
         if (existingMetric == null) {
             final Metric justAddedMetric = metrics.putIfAbsent(name, metric);
             if (justAddedMetric == null) {
-                notifyMetricAdded(name, metric);
+                metricAdded(name, metric);
                 return metric;
             }
             return (T) justAddedMetric;
@@ -501,6 +966,90 @@ public class MetricsRegistry {
         listeners.remove(listener);
     }
 
+    /**
+     * Returns {@code name} if a metric may be registered under it, or the
+     * name of the overflow metric of the given kind which takes its place if
+     * a cardinality limit has been reached ({@code null} for kinds, like
+     * gauges, which have no overflow metric). Overflow metrics are always
+     * admitted. The limits are checked without locking, so concurrent
+     * registrations may overshoot them slightly.
+     */
+    private MetricName admit(MetricName name, String kind) {
+        if (overflowNames.contains(name)) {
+            return name;
+        }
+        final boolean full = maxMetrics < Integer.MAX_VALUE && metrics.size() >= maxMetrics;
+        if (!full && groupSize(name.getGroup()) < maxMetricsPerGroup) {
+            return name;
+        }
+        names.remove(name);
+        rejectedRegistrations.inc();
+        getOrAdd(REJECTED_REGISTRATIONS, rejectedRegistrations);
+        if (kind == null) {
+            return null;
+        }
+        // once the registry itself is full, every group shares one overflow
+        // metric per kind, so callers can't add to the overflow metrics by
+        // inventing new groups either
+        final MetricName overflowName = full ?
+                new MetricName(REJECTED_REGISTRATIONS.getGroup(), REJECTED_REGISTRATIONS.getType(), "overflow-" + kind) :
+                new MetricName(name.getGroup(), "overflow", kind);
+        overflowNames.add(overflowName);
+        return overflowName;
+    }
+
+    /**
+     * Returns the number of names and scopes in the index of class-based
+     * names. Visible for testing.
+     */
+    int nameIndexSize() {
+        return names.size();
+    }
+
+    private int groupSize(String group) {
+        final AtomicInteger size = groupSizes.get(group);
+        return size == null ? 0 : size.get();
+    }
+
+    private void metricAdded(MetricName name, Metric metric) {
+        tagIndex.add(name);
+        AtomicInteger size = groupSizes.get(name.getGroup());
+        if (size == null) {
+            final AtomicInteger newSize = new AtomicInteger();
+            size = groupSizes.putIfAbsent(name.getGroup(), newSize);
+            if (size == null) {
+                size = newSize;
+            }
+        }
+        size.incrementAndGet();
+        notifyMetricAdded(name, metric);
+    }
+
+    private void metricRemoved(MetricName name, Metric metric) {
+        if (metric instanceof MeterMetric) {
+            ((MeterMetric) metric).stop();
+        } else if (metric instanceof TimerMetric) {
+            ((TimerMetric) metric).stop();
+        }
+        names.remove(name);
+        tagIndex.remove(name);
+        final AtomicInteger size = groupSizes.get(name.getGroup());
+        if (size != null && size.decrementAndGet() <= 0) {
+            groupSizes.remove(name.getGroup(), size);
+        }
+        notifyMetricRemoved(name);
+    }
+
+    private static class Activity {
+        final long count;
+        final long since;
+
+        Activity(long count, long since) {
+            this.count = count;
+            this.since = since;
+        }
+    }
+
     private void notifyMetricRemoved(MetricName name) {
         for (MetricsRegistryListener listener : listeners) {
             listener.onMetricRemoved(name);
@@ -1,7 +1,5 @@
 package com.yammer.metrics.core;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * A timing context.
  *
@@ -9,7 +7,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class TimerContext {
     private final TimerMetric timer;
-    private final long startTime;
+    private final long startTick;
 
     /**
      * Creates a new {@link TimerContext} with the current time as its starting value and with the
@@ -19,13 +17,13 @@ public class TimerContext {
      */
     TimerContext(TimerMetric timer) {
         this.timer = timer;
-        this.startTime = System.nanoTime();
+        this.startTick = timer.start();
     }
 
     /**
      * Stops recording the elapsed time and updates the timer.
      */
     public void stop() {
-        timer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        timer.stop(startTick);
     }
 }
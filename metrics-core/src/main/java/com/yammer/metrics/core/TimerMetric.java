@@ -2,6 +2,8 @@ package com.yammer.metrics.core;
 
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.HistogramMetric.SampleType;
+import com.yammer.metrics.stats.LogLinearSample;
+import com.yammer.metrics.stats.Snapshot;
 
 import java.io.File;
 import java.io.IOException;
@@ -19,7 +21,7 @@ public class TimerMetric implements Metered {
 
     private final TimeUnit durationUnit, rateUnit;
     private final MeterMetric meter;
-    private final HistogramMetric histogram = new HistogramMetric(SampleType.BIASED);
+    private final HistogramMetric histogram;
     private final Clock clock;
 
     /**
@@ -47,6 +49,7 @@ public class TimerMetric implements Metered {
         this.durationUnit = durationUnit;
         this.rateUnit = rateUnit;
         this.meter = MeterMetric.newMeter("calls", rateUnit);
+        this.histogram = new HistogramMetric(SampleType.BIASED);
         this.clock = clock;
         clear();
     }
@@ -71,9 +74,58 @@ public class TimerMetric implements Metered {
      * @param clock the clock used to calculate duration
      */
     public TimerMetric(ScheduledExecutorService tickThread, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock) {
+        this(tickThread, durationUnit, rateUnit, clock, SampleType.BIASED);
+    }
+
+    /**
+     * Creates a new {@link TimerMetric} with the given type of sample.
+     *
+     * @param tickThread   background thread for updating the rates
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration
+     * @param sampleType   the type of sample to keep the durations in
+     */
+    public TimerMetric(ScheduledExecutorService tickThread, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock, SampleType sampleType) {
+        this(MeterMetric.newMeter(tickThread, "calls", rateUnit), durationUnit, rateUnit, clock, sampleType);
+    }
+
+    /**
+     * Creates a new {@link TimerMetric} whose rates are updated by the given
+     * shared {@link MeterTicker}.
+     *
+     * @param ticker       the ticker which will update the rates
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration
+     * @param sampleType   the type of sample to keep the durations in
+     */
+    public TimerMetric(MeterTicker ticker, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock, SampleType sampleType) {
+        this(MeterMetric.newMeter(ticker, "calls", rateUnit), durationUnit, rateUnit, clock, sampleType);
+    }
+
+    /**
+     * Creates a new {@link TimerMetric} whose rates are never ticked in the
+     * background, but catch up on any intervals which have passed whenever
+     * the timer is updated or read.
+     *
+     * @param durationUnit the scale unit for this timer's duration metrics
+     * @param rateUnit     the scale unit for this timer's rate metrics
+     * @param clock        the clock used to calculate duration and to tell
+     *                     how much time has passed for the rates
+     * @param sampleType   the type of sample to keep the durations in
+     * @return a new {@link TimerMetric}
+     * @see MeterMetric#newLazyMeter(String, TimeUnit, Clock)
+     */
+    public static TimerMetric newLazyTimer(TimeUnit durationUnit, TimeUnit rateUnit, Clock clock, SampleType sampleType) {
+        return new TimerMetric(MeterMetric.newLazyMeter("calls", rateUnit, clock), durationUnit, rateUnit, clock, sampleType);
+    }
+
+    private TimerMetric(MeterMetric meter, TimeUnit durationUnit, TimeUnit rateUnit, Clock clock, SampleType sampleType) {
         this.durationUnit = durationUnit;
         this.rateUnit = rateUnit;
-        this.meter = MeterMetric.newMeter(tickThread, "calls", rateUnit);
+        this.meter = meter;
+        this.histogram = new HistogramMetric(sampleType);
         this.clock = clock;
         clear();
     }
@@ -119,11 +171,11 @@ public class TimerMetric implements Metered {
      * @throws Exception if {@code event} throws an {@link Exception}
      */
     public <T> T time(Callable<T> event) throws Exception {
-        final long startTime = clock.tick();
+        final long startTick = start();
         try {
             return event.call();
         } finally {
-            update(clock.tick() - startTime);
+            stop(startTick);
         }
     }
 
@@ -136,6 +188,27 @@ public class TimerMetric implements Metered {
         return new TimerContext(this);
     }
 
+    /**
+     * Starts timing an event. Pass the returned tick to {@link #stop(long)}
+     * once the event has finished. Unlike {@link #time()}, this allocates
+     * nothing.
+     *
+     * @return the current tick of the timer's {@link Clock}
+     */
+    public long start() {
+        return clock.tick();
+    }
+
+    /**
+     * Stops timing an event, and records its duration.
+     *
+     * @param startTick the tick returned by {@link #start()} when the event
+     *                  began
+     */
+    public void stop(long startTick) {
+        update(clock.tick() - startTick);
+    }
+
     @Override
     public long count() { return histogram.count(); }
 
@@ -194,6 +267,30 @@ public class TimerMetric implements Metered {
         return scores;
     }
 
+    /**
+     * Returns a snapshot of the timer's durations, in its duration unit.
+     * Reading several values from one snapshot sorts the sample only once.
+     *
+     * @return a snapshot of the timer's durations
+     */
+    public Snapshot snapshot() {
+        return histogram.snapshot().scale(1.0 / TimeUnit.NANOSECONDS.convert(1, durationUnit));
+    }
+
+    /**
+     * Returns a copy of the timer's sample if it is a
+     * {@link LogLinearSample}, which can be encoded and merged exactly with
+     * the samples of other timers. Its values are in nanoseconds, whatever
+     * the timer's duration unit.
+     *
+     * @return a copy of the timer's sample, or {@code null} if it does not
+     *         keep a {@link LogLinearSample}
+     * @see HistogramMetric#logLinearSample()
+     */
+    public LogLinearSample logLinearSample() {
+        return histogram.logLinearSample();
+    }
+
     @Override
     public String eventType() {
         return meter.eventType();
@@ -0,0 +1,61 @@
+package com.yammer.metrics.core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets writers enter and leave critical sections without ever blocking, and
+ * lets a single reader wait until every writer which entered before a given
+ * point has left. Based on Gil Tene's {@code WriterReaderPhaser} from
+ * HdrHistogram.
+ * <p/>
+ * A reader swaps the data structure writers use, then calls
+ * {@link #flipPhase()}; once that returns, no writer can still be working on
+ * the structure it swapped out.
+ */
+class WriterReaderPhaser {
+    private final AtomicLong startEpoch = new AtomicLong(0);
+    private final AtomicLong evenEndEpoch = new AtomicLong(0);
+    private final AtomicLong oddEndEpoch = new AtomicLong(Long.MIN_VALUE);
+
+    /**
+     * Enters a writer critical section.
+     *
+     * @return the value to pass to {@link #writerCriticalSectionExit(long)}
+     */
+    long writerCriticalSectionEnter() {
+        return startEpoch.getAndIncrement();
+    }
+
+    /**
+     * Leaves a writer critical section.
+     *
+     * @param criticalValueAtEnter the value returned by
+     *                             {@link #writerCriticalSectionEnter()}
+     */
+    void writerCriticalSectionExit(long criticalValueAtEnter) {
+        if (criticalValueAtEnter < 0) {
+            oddEndEpoch.getAndIncrement();
+        } else {
+            evenEndEpoch.getAndIncrement();
+        }
+    }
+
+    /**
+     * Starts a new phase and waits until every writer which entered during
+     * the previous phase has left. Only one reader may call this at a time.
+     */
+    void flipPhase() {
+        final boolean nextPhaseIsEven = startEpoch.get() < 0;
+        final long initialStartValue = nextPhaseIsEven ? 0 : Long.MIN_VALUE;
+        if (nextPhaseIsEven) {
+            evenEndEpoch.set(initialStartValue);
+        } else {
+            oddEndEpoch.set(initialStartValue);
+        }
+        final long startValueAtFlip = startEpoch.getAndSet(initialStartValue);
+        final AtomicLong previousEndEpoch = nextPhaseIsEven ? oddEndEpoch : evenEndEpoch;
+        while (previousEndEpoch.get() != startValueAtFlip) {
+            Thread.yield();
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.yammer.metrics.reporting;
 
+import com.yammer.metrics.core.HistogramMetric;
+import com.yammer.metrics.core.IntervalHistogramMetric;
 import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.util.NamedThreadFactory;
 
 import java.util.concurrent.Executors;
@@ -9,6 +12,7 @@ import java.util.concurrent.TimeUnit;
 
 public abstract class AbstractPollingReporter extends AbstractReporter implements Runnable {
     private final ScheduledExecutorService executor;
+    private volatile boolean reportingIntervals;
 
     protected AbstractPollingReporter(MetricsRegistry registry, String name) {
         super(registry);
@@ -27,4 +31,42 @@ public abstract class AbstractPollingReporter extends AbstractReporter implement
     public void shutdown() {
         executor.shutdown();
     }
+
+    /**
+     * Sets whether {@link IntervalHistogramMetric}s are reported per
+     * interval, covering only the values recorded since the previous poll,
+     * rather than cumulatively. Other histograms are always reported
+     * cumulatively.
+     *
+     * @param reportingIntervals whether to report interval histograms per
+     *                           interval
+     */
+    public void setReportingIntervals(boolean reportingIntervals) {
+        this.reportingIntervals = reportingIntervals;
+    }
+
+    /**
+     * Returns whether {@link IntervalHistogramMetric}s are reported per
+     * interval.
+     *
+     * @return whether interval histograms are reported per interval
+     */
+    public boolean isReportingIntervals() {
+        return reportingIntervals;
+    }
+
+    /**
+     * Returns the snapshot to report for the given histogram: its last
+     * interval if this reporter reports intervals and the histogram keeps
+     * them, or its cumulative snapshot otherwise.
+     *
+     * @param histogram the histogram being reported
+     * @return the snapshot to report
+     */
+    protected Snapshot snapshot(HistogramMetric histogram) {
+        if (reportingIntervals && histogram instanceof IntervalHistogramMetric) {
+            return ((IntervalHistogramMetric) histogram).getIntervalSnapshot();
+        }
+        return histogram.snapshot();
+    }
 }
@@ -2,6 +2,7 @@ package com.yammer.metrics.reporting;
 
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.util.MetricPredicate;
 import com.yammer.metrics.util.Utils;
 
@@ -131,11 +132,12 @@ public class ConsoleReporter extends AbstractPollingReporter {
     }
 
     private void printHistogram(HistogramMetric histogram) {
-        final double[] percentiles = histogram.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
-        out.printf("               min = %2.2f\n", histogram.min());
-        out.printf("               max = %2.2f\n", histogram.max());
-        out.printf("              mean = %2.2f\n", histogram.mean());
-        out.printf("            stddev = %2.2f\n", histogram.stdDev());
+        final Snapshot snapshot = snapshot(histogram);
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        out.printf("               min = %2.2f\n", snapshot.min());
+        out.printf("               max = %2.2f\n", snapshot.max());
+        out.printf("              mean = %2.2f\n", snapshot.mean());
+        out.printf("            stddev = %2.2f\n", snapshot.stdDev());
         out.printf("            median = %2.2f\n", percentiles[0]);
         out.printf("              75%% <= %2.2f\n", percentiles[1]);
         out.printf("              95%% <= %2.2f\n", percentiles[2]);
@@ -149,11 +151,12 @@ public class ConsoleReporter extends AbstractPollingReporter {
 
         final String durationUnit = abbrev(timer.durationUnit());
 
-        final double[] percentiles = timer.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
-        out.printf("               min = %2.2f%s\n", timer.min(), durationUnit);
-        out.printf("               max = %2.2f%s\n", timer.max(), durationUnit);
-        out.printf("              mean = %2.2f%s\n", timer.mean(), durationUnit);
-        out.printf("            stddev = %2.2f%s\n", timer.stdDev(), durationUnit);
+        final Snapshot snapshot = timer.snapshot();
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        out.printf("               min = %2.2f%s\n", snapshot.min(), durationUnit);
+        out.printf("               max = %2.2f%s\n", snapshot.max(), durationUnit);
+        out.printf("              mean = %2.2f%s\n", snapshot.mean(), durationUnit);
+        out.printf("            stddev = %2.2f%s\n", snapshot.stdDev(), durationUnit);
         out.printf("            median = %2.2f%s\n", percentiles[0], durationUnit);
         out.printf("              75%% <= %2.2f%s\n", percentiles[1], durationUnit);
         out.printf("              95%% <= %2.2f%s\n", percentiles[2], durationUnit);
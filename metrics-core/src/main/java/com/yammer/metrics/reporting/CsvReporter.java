@@ -1,6 +1,7 @@
 package com.yammer.metrics.reporting;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.util.MetricPredicate;
 
 import java.io.File;
@@ -80,14 +81,15 @@ public class CsvReporter extends AbstractPollingReporter {
                     } else if (metric instanceof CounterMetric) {
                         buf.append(((CounterMetric) metric).count());
                     } else if (metric instanceof HistogramMetric) {
-                        final HistogramMetric timer = (HistogramMetric) metric;
+                        final HistogramMetric histogram = (HistogramMetric) metric;
 
-                        final double[] percentiles = timer.percentiles(0.5, 0.90, 0.95, 0.99);
-                        buf.append(timer.min()).append(",");
-                        buf.append(timer.max()).append(",");
-                        buf.append(timer.mean()).append(",");
+                        final Snapshot snapshot = snapshot(histogram);
+                        final double[] percentiles = snapshot.quantiles(0.5, 0.90, 0.95, 0.99);
+                        buf.append(snapshot.min()).append(",");
+                        buf.append(snapshot.max()).append(",");
+                        buf.append(snapshot.mean()).append(",");
                         buf.append(percentiles[0]).append(","); // median
-                        buf.append(timer.stdDev()).append(",");
+                        buf.append(snapshot.stdDev()).append(",");
                         buf.append(percentiles[1]).append(","); // 90%
                         buf.append(percentiles[2]).append(","); // 95%
                         buf.append(percentiles[3]); // 99 %
@@ -103,12 +105,13 @@ public class CsvReporter extends AbstractPollingReporter {
                     } else if (metric instanceof TimerMetric) {
                         final TimerMetric timer = (TimerMetric) metric;
 
-                        final double[] percentiles = timer.percentiles(0.5, 0.90, 0.95, 0.99);
-                        buf.append(timer.min()).append(",");
-                        buf.append(timer.max()).append(",");
-                        buf.append(timer.mean()).append(",");
+                        final Snapshot snapshot = timer.snapshot();
+                        final double[] percentiles = snapshot.quantiles(0.5, 0.90, 0.95, 0.99);
+                        buf.append(snapshot.min()).append(",");
+                        buf.append(snapshot.max()).append(",");
+                        buf.append(snapshot.mean()).append(",");
                         buf.append(percentiles[0]).append(","); // median
-                        buf.append(timer.stdDev()).append(",");
+                        buf.append(snapshot.stdDev()).append(",");
                         buf.append(percentiles[1]).append(","); // 90%
                         buf.append(percentiles[2]).append(","); // 95%
                         buf.append(percentiles[3]); // 99 %
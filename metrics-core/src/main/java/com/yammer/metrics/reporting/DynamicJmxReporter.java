@@ -0,0 +1,349 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
+
+import javax.management.*;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A reporter which exposes application metrics as JMX attributes, with one
+ * {@link DynamicMBean} per group, type, and scope rather than one MBean per
+ * metric.
+ * <p/>
+ * Registering an MBean is slow and takes a lock on the whole MBean server,
+ * so with tens of thousands of metrics {@link JmxReporter} makes startup slow
+ * and fills the server's repository. This reporter only registers an MBean
+ * the first time a group, type, and scope is seen; adding a metric to an
+ * existing group is a map update. Each of a group's metrics appears as a set
+ * of attributes named after it (e.g., {@code requests.Count} and
+ * {@code requests.99thPercentile}, or
+ * {@code requests{endpoint=/search}.Count} for a tagged metric), whose values
+ * are read from the metric when they are asked for. Histogram and timer
+ * attributes are read from a snapshot which is reused for a second, so
+ * reading all of a metric's attributes sorts its sample only once.
+ */
+public class DynamicJmxReporter extends AbstractReporter implements MetricsRegistryListener {
+    private static final String[] GAUGE_ATTRIBUTES = {"Value"};
+    private static final String[] GAUGE_TYPES = {Object.class.getName()};
+    private static final String[] COUNTER_ATTRIBUTES = {"Count"};
+    private static final String[] COUNTER_TYPES = {"long"};
+    private static final String[] METER_ATTRIBUTES = {
+            "Count", "EventType", "RateUnit", "MeanRate", "OneMinuteRate", "FiveMinuteRate",
+            "FifteenMinuteRate"
+    };
+    private static final String[] METER_TYPES = {
+            "long", String.class.getName(), String.class.getName(), "double", "double", "double", "double"
+    };
+    private static final String[] HISTOGRAM_ATTRIBUTES = {
+            "Count", "Min", "Max", "Mean", "StdDev", "50thPercentile", "75thPercentile", "95thPercentile",
+            "98thPercentile", "99thPercentile", "999thPercentile"
+    };
+    private static final String[] HISTOGRAM_TYPES = {
+            "long", "double", "double", "double", "double", "double", "double", "double", "double", "double",
+            "double"
+    };
+    private static final String[] TIMER_ATTRIBUTES = {
+            "Count", "EventType", "RateUnit", "MeanRate", "OneMinuteRate", "FiveMinuteRate",
+            "FifteenMinuteRate", "LatencyUnit", "Min", "Max", "Mean", "StdDev", "50thPercentile",
+            "75thPercentile", "95thPercentile", "98thPercentile", "99thPercentile", "999thPercentile"
+    };
+    private static final String[] TIMER_TYPES = {
+            "long", String.class.getName(), String.class.getName(), "double", "double", "double", "double",
+            String.class.getName(), "double", "double", "double", "double", "double", "double", "double",
+            "double", "double", "double"
+    };
+
+    private final MBeanServer server;
+    private final Map<ObjectName, GroupBean> beans = new ConcurrentHashMap<ObjectName, GroupBean>();
+
+    /**
+     * Creates a new {@link DynamicJmxReporter} which registers its MBeans
+     * with the platform MBean server.
+     *
+     * @param metricsRegistry the registry whose metrics are exposed
+     */
+    public DynamicJmxReporter(MetricsRegistry metricsRegistry) {
+        this(metricsRegistry, ManagementFactory.getPlatformMBeanServer());
+    }
+
+    /**
+     * Creates a new {@link DynamicJmxReporter}.
+     *
+     * @param metricsRegistry the registry whose metrics are exposed
+     * @param server          the MBean server to register MBeans with
+     */
+    public DynamicJmxReporter(MetricsRegistry metricsRegistry, MBeanServer server) {
+        super(metricsRegistry);
+        this.server = server;
+    }
+
+    public final void start() {
+        metricsRegistry.addListener(this);
+    }
+
+    /**
+     * Returns the number of MBeans registered.
+     *
+     * @return the number of MBeans registered
+     */
+    public int size() {
+        return beans.size();
+    }
+
+    @Override
+    public void onMetricAdded(MetricName name, Metric metric) {
+        if (metric == null) {
+            return;
+        }
+        try {
+            final ObjectName objectName = groupName(name);
+            synchronized (this) {
+                GroupBean bean = beans.get(objectName);
+                if (bean == null) {
+                    bean = new GroupBean();
+                    server.registerMBean(bean, objectName);
+                    beans.put(objectName, bean);
+                }
+                bean.attributes.put(attributePrefix(name), new Attributes(metric));
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    @Override
+    public void onMetricRemoved(MetricName name) {
+        try {
+            final ObjectName objectName = groupName(name);
+            synchronized (this) {
+                final GroupBean bean = beans.get(objectName);
+                if (bean != null) {
+                    bean.attributes.remove(attributePrefix(name));
+                    if (bean.attributes.isEmpty()) {
+                        beans.remove(objectName);
+                        server.unregisterMBean(objectName);
+                    }
+                }
+            }
+        } catch (Exception ignored) {
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        metricsRegistry.removeListener(this);
+        synchronized (this) {
+            for (ObjectName name : beans.keySet()) {
+                try {
+                    server.unregisterMBean(name);
+                } catch (Exception ignored) {
+                }
+            }
+            beans.clear();
+        }
+    }
+
+    private static ObjectName groupName(MetricName name) throws MalformedObjectNameException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(name.getGroup()).append(":type=").append(name.getType());
+        if (name.hasScope()) {
+            builder.append(",scope=").append(name.getScope());
+        }
+        return new ObjectName(builder.toString());
+    }
+
+    private static String attributePrefix(MetricName name) {
+        return name.hasTags() ? name.getName() + name.getTags() : name.getName();
+    }
+
+    /**
+     * The MBean for a group: every attribute of every metric in the group,
+     * keyed by {@code name.Attribute}.
+     */
+    private static class GroupBean implements DynamicMBean {
+        private final ConcurrentMap<String, Attributes> attributes =
+                new ConcurrentSkipListMap<String, Attributes>();
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            final int separator = attribute.lastIndexOf('.');
+            if (separator > 0) {
+                final Attributes metric = attributes.get(attribute.substring(0, separator));
+                if (metric != null) {
+                    final String field = attribute.substring(separator + 1);
+                    if (metric.has(field)) {
+                        return metric.get(field);
+                    }
+                }
+            }
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] names) {
+            final AttributeList list = new AttributeList(names.length);
+            for (String name : names) {
+                try {
+                    list.add(new Attribute(name, getAttribute(name)));
+                } catch (AttributeNotFoundException ignored) {
+                    // left out, as for a standard MBean
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> info = new ArrayList<MBeanAttributeInfo>();
+            for (Map.Entry<String, Attributes> entry : attributes.entrySet()) {
+                final Attributes metric = entry.getValue();
+                for (int i = 0; i < metric.names.length; i++) {
+                    info.add(new MBeanAttributeInfo(entry.getKey() + "." + metric.names[i], metric.types[i],
+                                                    metric.names[i], true, false, false));
+                }
+            }
+            return new MBeanInfo(GroupBean.class.getName(), "metrics",
+                                 info.toArray(new MBeanAttributeInfo[info.size()]),
+                                 null, null, null);
+        }
+    }
+
+    /**
+     * Reads the attributes of a single metric.
+     */
+    private static class Attributes {
+        final Metric metric;
+        final String[] names;
+        final String[] types;
+        final JmxReporter.SnapshotCache snapshot;
+
+        Attributes(final Metric metric) {
+            this.metric = metric;
+            if (metric instanceof GaugeMetric) {
+                this.names = GAUGE_ATTRIBUTES;
+                this.types = GAUGE_TYPES;
+            } else if (metric instanceof CounterMetric) {
+                this.names = COUNTER_ATTRIBUTES;
+                this.types = COUNTER_TYPES;
+            } else if (metric instanceof HistogramMetric) {
+                this.names = HISTOGRAM_ATTRIBUTES;
+                this.types = HISTOGRAM_TYPES;
+            } else if (metric instanceof TimerMetric) {
+                this.names = TIMER_ATTRIBUTES;
+                this.types = TIMER_TYPES;
+            } else if (metric instanceof Metered) {
+                this.names = METER_ATTRIBUTES;
+                this.types = METER_TYPES;
+            } else {
+                this.names = new String[0];
+                this.types = new String[0];
+            }
+            if (metric instanceof HistogramMetric || metric instanceof TimerMetric) {
+                this.snapshot = new JmxReporter.SnapshotCache() {
+                    @Override
+                    protected Snapshot take() {
+                        return metric instanceof TimerMetric ?
+                                ((TimerMetric) metric).snapshot() :
+                                ((HistogramMetric) metric).snapshot();
+                    }
+                };
+            } else {
+                this.snapshot = null;
+            }
+        }
+
+        boolean has(String field) {
+            for (String name : names) {
+                if (name.equals(field)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        Object get(String field) {
+            if (metric instanceof GaugeMetric) {
+                return ((GaugeMetric<?>) metric).value();
+            }
+            if (metric instanceof CounterMetric) {
+                return ((CounterMetric) metric).count();
+            }
+            if (metric instanceof HistogramMetric && "Count".equals(field)) {
+                return ((HistogramMetric) metric).count();
+            }
+            if (metric instanceof Metered) {
+                final Object value = meterValue((Metered) metric, field);
+                if (value != null) {
+                    return value;
+                }
+            }
+            if (metric instanceof TimerMetric && "LatencyUnit".equals(field)) {
+                return ((TimerMetric) metric).durationUnit().toString();
+            }
+            return snapshotValue(snapshot.get(), field);
+        }
+
+        private static Object meterValue(Metered meter, String field) {
+            if ("Count".equals(field)) {
+                return meter.count();
+            } else if ("EventType".equals(field)) {
+                return meter.eventType();
+            } else if ("RateUnit".equals(field)) {
+                return meter.rateUnit().toString();
+            } else if ("MeanRate".equals(field)) {
+                return meter.meanRate();
+            } else if ("OneMinuteRate".equals(field)) {
+                return meter.oneMinuteRate();
+            } else if ("FiveMinuteRate".equals(field)) {
+                return meter.fiveMinuteRate();
+            } else if ("FifteenMinuteRate".equals(field)) {
+                return meter.fifteenMinuteRate();
+            }
+            return null;
+        }
+
+        private static Object snapshotValue(Snapshot snapshot, String field) {
+            if ("Min".equals(field)) {
+                return snapshot.min();
+            } else if ("Max".equals(field)) {
+                return snapshot.max();
+            } else if ("Mean".equals(field)) {
+                return snapshot.mean();
+            } else if ("StdDev".equals(field)) {
+                return snapshot.stdDev();
+            } else if ("50thPercentile".equals(field)) {
+                return snapshot.quantile(0.5);
+            } else if ("75thPercentile".equals(field)) {
+                return snapshot.quantile(0.75);
+            } else if ("95thPercentile".equals(field)) {
+                return snapshot.quantile(0.95);
+            } else if ("98thPercentile".equals(field)) {
+                return snapshot.quantile(0.98);
+            } else if ("99thPercentile".equals(field)) {
+                return snapshot.quantile(0.99);
+            }
+            return snapshot.quantile(0.999);
+        }
+    }
+}
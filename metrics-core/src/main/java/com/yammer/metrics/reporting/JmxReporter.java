@@ -1,11 +1,14 @@
 package com.yammer.metrics.reporting;
 
 import com.yammer.metrics.core.*;
+import com.yammer.metrics.stats.Snapshot;
 
 import javax.management.*;
 import java.lang.management.ManagementFactory;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A reporter which exposes application metric as JMX MBeans.
@@ -14,6 +17,8 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
     private final Map<MetricName, ObjectName> registeredBeans;
     private final MBeanServer server;
+    private final AsyncMetricsRegistryListener backgroundListener;
+    private final AtomicLong failedRegistrations = new AtomicLong();
 
     public static interface MetricMBean {
         public ObjectName objectName();
@@ -122,6 +127,30 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         }
     }
 
+    /**
+     * Holds on to a histogram's snapshot for a moment, so that a JMX client
+     * reading every attribute of a bean in turn sorts its sample only once.
+     */
+    static abstract class SnapshotCache {
+        private static final long TTL = TimeUnit.SECONDS.toNanos(1);
+
+        private volatile Snapshot snapshot;
+        private volatile long takenAt;
+
+        protected abstract Snapshot take();
+
+        Snapshot get() {
+            final long now = System.nanoTime();
+            Snapshot current = snapshot;
+            if (current == null || now - takenAt > TTL) {
+                current = take();
+                snapshot = current;
+                takenAt = now;
+            }
+            return current;
+        }
+    }
+
     public static interface HistogramMBean extends MetricMBean {
         public long getCount();
         public double getMin();
@@ -140,10 +169,17 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
     public static class Histogram implements HistogramMBean {
         private final ObjectName objectName;
         private final HistogramMetric metric;
+        private final SnapshotCache snapshot;
 
-        public Histogram(HistogramMetric metric, ObjectName objectName) {
+        public Histogram(final HistogramMetric metric, ObjectName objectName) {
             this.metric = metric;
             this.objectName = objectName;
+            this.snapshot = new SnapshotCache() {
+                @Override
+                protected Snapshot take() {
+                    return metric.snapshot();
+                }
+            };
         }
 
         @Override
@@ -153,7 +189,7 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
         @Override
         public double get50thPercentile() {
-            return metric.percentiles(0.5)[0];
+            return snapshot.get().quantile(0.5);
         }
 
         @Override
@@ -163,47 +199,47 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
         @Override
         public double getMin() {
-            return metric.min();
+            return snapshot.get().min();
         }
 
         @Override
         public double getMax() {
-            return metric.max();
+            return snapshot.get().max();
         }
 
         @Override
         public double getMean() {
-            return metric.mean();
+            return snapshot.get().mean();
         }
 
         @Override
         public double getStdDev() {
-            return metric.stdDev();
+            return snapshot.get().stdDev();
         }
 
         @Override
         public double get75thPercentile() {
-            return metric.percentiles(0.75)[0];
+            return snapshot.get().quantile(0.75);
         }
 
         @Override
         public double get95thPercentile() {
-            return metric.percentiles(0.95)[0];
+            return snapshot.get().quantile(0.95);
         }
 
         @Override
         public double get98thPercentile() {
-            return metric.percentiles(0.98)[0];
+            return snapshot.get().quantile(0.98);
         }
 
         @Override
         public double get99thPercentile() {
-            return metric.percentiles(0.99)[0];
+            return snapshot.get().quantile(0.99);
         }
 
         @Override
         public double get999thPercentile() {
-            return metric.percentiles(0.999)[0];
+            return snapshot.get().quantile(0.999);
         }
 
         @Override
@@ -218,15 +254,22 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
     public static class Timer extends Meter implements TimerMBean {
         private final TimerMetric metric;
+        private final SnapshotCache snapshot;
 
-        public Timer(TimerMetric metric, ObjectName objectName) {
+        public Timer(final TimerMetric metric, ObjectName objectName) {
             super(metric, objectName);
             this.metric = metric;
+            this.snapshot = new SnapshotCache() {
+                @Override
+                protected Snapshot take() {
+                    return metric.snapshot();
+                }
+            };
         }
 
         @Override
         public double get50thPercentile() {
-            return metric.percentiles(0.5)[0];
+            return snapshot.get().quantile(0.5);
         }
 
         @Override
@@ -236,47 +279,47 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
         @Override
         public double getMin() {
-            return metric.min();
+            return snapshot.get().min();
         }
 
         @Override
         public double getMax() {
-            return metric.max();
+            return snapshot.get().max();
         }
 
         @Override
         public double getMean() {
-            return metric.mean();
+            return snapshot.get().mean();
         }
 
         @Override
         public double getStdDev() {
-            return metric.stdDev();
+            return snapshot.get().stdDev();
         }
 
         @Override
         public double get75thPercentile() {
-            return metric.percentiles(0.75)[0];
+            return snapshot.get().quantile(0.75);
         }
 
         @Override
         public double get95thPercentile() {
-            return metric.percentiles(0.95)[0];
+            return snapshot.get().quantile(0.95);
         }
 
         @Override
         public double get98thPercentile() {
-            return metric.percentiles(0.98)[0];
+            return snapshot.get().quantile(0.98);
         }
 
         @Override
         public double get99thPercentile() {
-            return metric.percentiles(0.99)[0];
+            return snapshot.get().quantile(0.99);
         }
 
         @Override
         public double get999thPercentile() {
-            return metric.percentiles(0.999)[0];
+            return snapshot.get().quantile(0.999);
         }
 
         @Override
@@ -298,9 +341,27 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
     }
 
     public JmxReporter(MetricsRegistry metricsRegistry) {
+        this(metricsRegistry, false);
+    }
+
+    /**
+     * Creates a new {@link JmxReporter}.
+     *
+     * @param metricsRegistry      the registry whose metrics are exposed
+     * @param registerInBackground if {@code true}, MBeans are registered and
+     *                             unregistered in batches on a background
+     *                             thread rather than on the thread which
+     *                             creates or removes the metric, so creating a
+     *                             metric doesn't wait on the MBean server; the
+     *                             thread is only started once the reporter is
+     *                             notified of a metric
+     * @see AsyncMetricsRegistryListener
+     */
+    public JmxReporter(MetricsRegistry metricsRegistry, boolean registerInBackground) {
         super(metricsRegistry);
-        this.registeredBeans = new HashMap<MetricName, ObjectName>();
+        this.registeredBeans = new ConcurrentHashMap<MetricName, ObjectName>();
         this.server = ManagementFactory.getPlatformMBeanServer();
+        this.backgroundListener = registerInBackground ? new AsyncMetricsRegistryListener(this) : null;
     }
 
     @Override
@@ -319,7 +380,8 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
                 } else if (metric instanceof TimerMetric) {
                     registerBean(name, new Timer((TimerMetric) metric, objectName), objectName);
                 }
-            } catch (Exception ignored) {
+            } catch (Exception e) {
+                failedRegistrations.incrementAndGet();
             }
         }
     }
@@ -330,13 +392,46 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
         if (objectName != null) {
             try {
                 server.unregisterMBean(objectName);
-            } catch (Exception ignored) {
+            } catch (Exception e) {
+                failedRegistrations.incrementAndGet();
             }
         }
     }
 
     public final void start() {
-        metricsRegistry.addListener(this);
+        metricsRegistry.addListener(listener());
+    }
+
+    /**
+     * Waits until the MBeans of every metric created so far are registered.
+     * This only waits if MBeans are registered in the background.
+     *
+     * @throws InterruptedException if the current thread is interrupted
+     *                              while waiting
+     */
+    public void flush() throws InterruptedException {
+        if (backgroundListener != null) {
+            backgroundListener.flush();
+        }
+    }
+
+    /**
+     * Returns the number of metrics whose MBeans couldn't be registered or
+     * unregistered, including those whose events were dropped before
+     * reaching the background thread.
+     *
+     * @return the number of failed registrations and unregistrations
+     */
+    public long getFailedRegistrations() {
+        long failed = failedRegistrations.get();
+        if (backgroundListener != null) {
+            failed += backgroundListener.getEventsDropped() + backgroundListener.getEventsFailed();
+        }
+        return failed;
+    }
+
+    private MetricsRegistryListener listener() {
+        return backgroundListener == null ? this : backgroundListener;
     }
 
     private void registerBean(MetricName name, MetricMBean bean, ObjectName objectName) throws MBeanRegistrationException, InstanceAlreadyExistsException, NotCompliantMBeanException {
@@ -346,7 +441,14 @@ public class JmxReporter extends AbstractReporter implements MetricsRegistryList
 
     @Override
     public void shutdown() {
-        metricsRegistry.removeListener(this);
+        metricsRegistry.removeListener(listener());
+        if (backgroundListener != null) {
+            try {
+                backgroundListener.shutdown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
         for (ObjectName name : registeredBeans.values()) {
             try {
                 server.unregisterMBean(name);
@@ -4,6 +4,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.lang.Math.exp;
+import static java.lang.Math.pow;
 
 /**
  * An exponentially-weighted moving average.
@@ -12,9 +13,9 @@ import static java.lang.Math.exp;
  * @see <a href="http://www.teamquest.com/pdfs/whitepaper/ldavg2.pdf">UNIX Load Average Part 2: Not Your Average Average</a>
  */
 public class EWMA {
-    private static final double M1_ALPHA  = 1 - exp(-5 / 60.0);
-    private static final double M5_ALPHA  = 1 - exp(-5 / 60.0 / 5);
-    private static final double M15_ALPHA = 1 - exp(-5 / 60.0 / 15);
+    static final double M1_ALPHA  = 1 - exp(-5 / 60.0);
+    static final double M5_ALPHA  = 1 - exp(-5 / 60.0 / 5);
+    static final double M15_ALPHA = 1 - exp(-5 / 60.0 / 15);
 
     private volatile boolean initialized = false;
     private volatile double rate = 0.0;
@@ -87,6 +88,22 @@ public class EWMA {
         }
     }
 
+    /**
+     * Mark the passage of several intervals at once, as though {@link #tick()}
+     * had been called that many times. Anything recorded since the last tick is
+     * counted in the first of them, and the rest decay the rate in closed form.
+     *
+     * @param ticks the number of intervals which have passed
+     */
+    public void tick(long ticks) {
+        if (ticks > 0) {
+            tick();
+            if (ticks > 1) {
+                rate *= pow(1 - alpha, ticks - 1);
+            }
+        }
+    }
+
     /**
      * Returns the rate in the given units of time.
      *
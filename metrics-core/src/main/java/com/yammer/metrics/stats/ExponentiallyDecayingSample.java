@@ -4,11 +4,12 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 
 import static java.lang.Math.*;
 
@@ -17,6 +18,10 @@ import static java.lang.Math.*;
  * al's forward-decaying priority reservoir sampling method to produce a
  * statistically representative sample, exponentially biased towards newer
  * entries.
+ * <p/>
+ * The reservoir is a binary min-heap on priority, kept in parallel
+ * {@code double[]} and {@code long[]} arrays, so updates neither box nor
+ * allocate. It is guarded by a single short-held lock.
  *
  * @see <a href="http://www.research.att.com/people/Cormode_Graham/library/publications/CormodeShkapenyukSrivastavaXu09.pdf">
  * Cormode et al. Forward Decay: A Practical Time Decay Model for Streaming
@@ -25,12 +30,22 @@ import static java.lang.Math.*;
  */
 public class ExponentiallyDecayingSample implements Sample {
     private static final long RESCALE_THRESHOLD = TimeUnit.HOURS.toNanos(1);
-    private final ConcurrentSkipListMap<Double, Long> values;
-    private final ReentrantReadWriteLock lock;
+    // Random's seed is a single AtomicLong, as is Math.random()'s, so sharing
+    // one across threads would serialize updates on it.
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+    private final ReentrantLock lock = new ReentrantLock();
     private final double alpha;
     private final int reservoirSize;
-    private final AtomicLong count = new AtomicLong(0);
-    private volatile long startTime;
+    private final double[] priorities;
+    private final long[] values;
+    private int size;
+    private long count;
+    private long startTime;
     private final AtomicLong nextScaleTime = new AtomicLong(0);
 
     /**
@@ -42,24 +57,34 @@ public class ExponentiallyDecayingSample implements Sample {
      *              biased the sample will be towards newer values
      */
     public ExponentiallyDecayingSample(int reservoirSize, double alpha) {
-        this.values = new ConcurrentSkipListMap<Double, Long>();
-        this.lock = new ReentrantReadWriteLock();
         this.alpha = alpha;
         this.reservoirSize = reservoirSize;
+        this.priorities = new double[reservoirSize];
+        this.values = new long[reservoirSize];
         clear();
     }
 
     @Override
     public void clear() {
-        values.clear();
-        count.set(0);
-        this.startTime = tick();
-        nextScaleTime.set(System.nanoTime() + RESCALE_THRESHOLD);
+        lock.lock();
+        try {
+            size = 0;
+            count = 0;
+            startTime = tick();
+            nextScaleTime.set(System.nanoTime() + RESCALE_THRESHOLD);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
     public int size() {
-        return (int) min(reservoirSize, count.get());
+        lock.lock();
+        try {
+            return (int) min(reservoirSize, count);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
@@ -74,25 +99,18 @@ public class ExponentiallyDecayingSample implements Sample {
      * @param timestamp the epoch timestamp of {@code value} in seconds
      */
     public void update(long value, long timestamp) {
-        lockForRegularUsage();
+        final double random = RANDOM.get().nextDouble();
+        lock.lock();
         try {
-            final double priority = weight(timestamp - startTime) / random();
-            final long newCount = count.incrementAndGet();
-            if (newCount <= reservoirSize) {
-                values.put(priority, value);
-            } else {
-                Double first = values.firstKey();
-                if (first < priority) {
-                    if (values.putIfAbsent(priority, value) == null) {
-                        // ensure we always remove an item
-                        while (values.remove(first) == null) {
-                            first = values.firstKey();
-                        }
-                    }
-                }
+            final double priority = weight(timestamp - startTime) / random;
+            count++;
+            if (size < reservoirSize) {
+                siftUp(size++, priority, value);
+            } else if (priorities[0] < priority) {
+                siftDown(0, priority, value);
             }
         } finally {
-            unlockForRegularUsage();
+            lock.unlock();
         }
 
         final long now = System.nanoTime();
@@ -104,11 +122,21 @@ public class ExponentiallyDecayingSample implements Sample {
 
     @Override
     public List<Long> values() {
-        lockForRegularUsage();
+        final long[] snapshot = snapshotValues();
+        final List<Long> copy = new ArrayList<Long>(snapshot.length);
+        for (long value : snapshot) {
+            copy.add(value);
+        }
+        return copy;
+    }
+
+    @Override
+    public long[] snapshotValues() {
+        lock.lock();
         try {
-            return new ArrayList<Long>(values.values());
+            return Arrays.copyOf(values, size);
         } finally {
-            unlockForRegularUsage();
+            lock.unlock();
         }
     }
 
@@ -116,8 +144,7 @@ public class ExponentiallyDecayingSample implements Sample {
     public void dump(File output) throws IOException {
         final PrintWriter writer = new PrintWriter(output);
         try {
-            final List<Long> values = values();
-            for (Long value : values) {
+            for (long value : snapshotValues()) {
                 writer.printf("%d\n", value);
             }
         } finally {
@@ -131,6 +158,49 @@ public class ExponentiallyDecayingSample implements Sample {
         return exp(alpha * t);
     }
 
+    /**
+     * Moves the hole at {@code index} towards the root until the given entry
+     * can be placed in it without violating the heap order.
+     */
+    private void siftUp(int index, double priority, long value) {
+        int i = index;
+        while (i > 0) {
+            final int parent = (i - 1) >>> 1;
+            if (priorities[parent] <= priority) {
+                break;
+            }
+            priorities[i] = priorities[parent];
+            values[i] = values[parent];
+            i = parent;
+        }
+        priorities[i] = priority;
+        values[i] = value;
+    }
+
+    /**
+     * Moves the hole at {@code index} towards the leaves until the given entry
+     * can be placed in it without violating the heap order.
+     */
+    private void siftDown(int index, double priority, long value) {
+        int i = index;
+        final int half = size >>> 1;
+        while (i < half) {
+            int child = (i << 1) + 1;
+            final int right = child + 1;
+            if (right < size && priorities[right] < priorities[child]) {
+                child = right;
+            }
+            if (priority <= priorities[child]) {
+                break;
+            }
+            priorities[i] = priorities[child];
+            values[i] = values[child];
+            i = child;
+        }
+        priorities[i] = priority;
+        values[i] = value;
+    }
+
     /* "A common feature of the above techniques—indeed, the key technique that
      * allows us to track the decayed weights efficiently—is that they maintain
      * counts and other quantities based on g(ti − L), and only scale by g(t − L)
@@ -151,34 +221,19 @@ public class ExponentiallyDecayingSample implements Sample {
      */
     private void rescale(long now, long next) {
         if (nextScaleTime.compareAndSet(next, now + RESCALE_THRESHOLD)) {
-            lockForRescale();
+            lock.lock();
             try {
                 final long oldStartTime = startTime;
                 this.startTime = tick();
-                final ArrayList<Double> keys = new ArrayList<Double>(values.keySet());
-                for (Double key : keys) {
-                    final Long value = values.remove(key);
-                    values.put(key * exp(-alpha * (startTime - oldStartTime)), value);
+                // scaling every priority by the same positive factor keeps
+                // the heap in order
+                final double factor = exp(-alpha * (startTime - oldStartTime));
+                for (int i = 0; i < size; i++) {
+                    priorities[i] *= factor;
                 }
             } finally {
-                unlockForRescale();
+                lock.unlock();
             }
         }
     }
-
-    private void unlockForRescale() {
-        lock.writeLock().unlock();
-    }
-
-    private void lockForRescale() {
-        lock.writeLock().lock();
-    }
-
-    private void lockForRegularUsage() {
-        lock.readLock().lock();
-    }
-
-    private void unlockForRegularUsage() {
-        lock.readLock().unlock();
-    }
 }
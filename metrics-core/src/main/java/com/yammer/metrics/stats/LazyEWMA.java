@@ -0,0 +1,92 @@
+package com.yammer.metrics.stats;
+
+import com.yammer.metrics.core.Clock;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link EWMA} which ticks itself. Rather than relying on a background
+ * thread, it remembers when it was last ticked and catches up on any missed
+ * intervals whenever it is updated or read, so an idle average costs nothing
+ * and a busy one gives the same rates as one ticked on schedule.
+ */
+public class LazyEWMA extends EWMA {
+    /**
+     * Creates a new lazy EWMA which is equivalent to the UNIX one minute load
+     * average.
+     *
+     * @param clock the clock used to tell how many intervals have passed
+     * @return a one-minute EWMA
+     */
+    public static LazyEWMA oneMinuteEWMA(Clock clock) {
+        return new LazyEWMA(M1_ALPHA, 5, TimeUnit.SECONDS, clock);
+    }
+
+    /**
+     * Creates a new lazy EWMA which is equivalent to the UNIX five minute load
+     * average.
+     *
+     * @param clock the clock used to tell how many intervals have passed
+     * @return a five-minute EWMA
+     */
+    public static LazyEWMA fiveMinuteEWMA(Clock clock) {
+        return new LazyEWMA(M5_ALPHA, 5, TimeUnit.SECONDS, clock);
+    }
+
+    /**
+     * Creates a new lazy EWMA which is equivalent to the UNIX fifteen minute
+     * load average.
+     *
+     * @param clock the clock used to tell how many intervals have passed
+     * @return a fifteen-minute EWMA
+     */
+    public static LazyEWMA fifteenMinuteEWMA(Clock clock) {
+        return new LazyEWMA(M15_ALPHA, 5, TimeUnit.SECONDS, clock);
+    }
+
+    private final long intervalNanos;
+    private final Clock clock;
+    private final AtomicLong lastTick;
+
+    /**
+     * Create a new lazy EWMA with a specific smoothing constant.
+     *
+     * @param alpha the smoothing constant
+     * @param interval the tick interval
+     * @param intervalUnit the time unit of the tick interval
+     * @param clock the clock used to tell how many intervals have passed
+     */
+    public LazyEWMA(double alpha, long interval, TimeUnit intervalUnit, Clock clock) {
+        super(alpha, interval, intervalUnit);
+        this.intervalNanos = intervalUnit.toNanos(interval);
+        this.clock = clock;
+        this.lastTick = new AtomicLong(clock.tick());
+    }
+
+    @Override
+    public void update(long n) {
+        tickIfNecessary();
+        super.update(n);
+    }
+
+    @Override
+    public double rate(TimeUnit rateUnit) {
+        tickIfNecessary();
+        return super.rate(rateUnit);
+    }
+
+    private void tickIfNecessary() {
+        final long oldTick = lastTick.get();
+        final long newTick = clock.tick();
+        final long age = newTick - oldTick;
+        if (age >= intervalNanos) {
+            // only the thread which moves the start of the current interval
+            // forward gets to apply the missed ticks
+            final long newIntervalStartTick = newTick - age % intervalNanos;
+            if (lastTick.compareAndSet(oldTick, newIntervalStartTick)) {
+                tick(age / intervalNanos);
+            }
+        }
+    }
+}
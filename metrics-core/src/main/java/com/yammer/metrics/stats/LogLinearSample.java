@@ -0,0 +1,397 @@
+package com.yammer.metrics.stats;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed-size, log-linear histogram of a stream of {@code long}s. Every
+ * recorded value is counted, so percentiles cover the whole stream rather than
+ * a reservoir, and are accurate to the configured number of significant
+ * decimal digits.
+ * <p/>
+ * Values are counted in buckets which double in width with each power of two,
+ * each of which is split into enough linear sub-buckets to hold the requested
+ * precision. Recording a value is a bit of shifting and a single increment of
+ * an {@link AtomicLongArray}. Values below zero are recorded as zero, and
+ * values above the highest trackable value as that value.
+ * <p/>
+ * Because every value is counted in a fixed bucket, samples with the same
+ * highest trackable value and significant digits can be merged exactly, and
+ * the percentiles of the merged sample are those of all the values recorded
+ * in either. {@link #writeTo(DataOutput)} encodes a sample compactly so that
+ * samples from many processes can be collected and merged in one place.
+ *
+ * @see <a href="http://hdrhistogram.github.io/HdrHistogram/">HdrHistogram</a>
+ */
+public class LogLinearSample implements PercentileSample {
+    /**
+     * The default highest trackable value: one hour, in nanoseconds.
+     */
+    public static final long DEFAULT_HIGHEST_TRACKABLE_VALUE = TimeUnit.HOURS.toNanos(1);
+
+    /**
+     * The default number of significant decimal digits.
+     */
+    public static final int DEFAULT_SIGNIFICANT_DIGITS = 2;
+
+    private static final int ENCODING_VERSION = 1;
+
+    private final long highestTrackableValue;
+    private final int significantDigits;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final AtomicLongArray counts;
+
+    /**
+     * Creates a new {@link LogLinearSample} which tracks values up to one hour
+     * in nanoseconds with two significant digits.
+     */
+    public LogLinearSample() {
+        this(DEFAULT_HIGHEST_TRACKABLE_VALUE, DEFAULT_SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Creates a new {@link LogLinearSample}.
+     *
+     * @param highestTrackableValue the largest value which can be told apart
+     *                              from its neighbours; anything larger is
+     *                              recorded as this value
+     * @param significantDigits     the number of significant decimal digits
+     *                              to which recorded values are kept
+     *                              ({@code 1..5})
+     */
+    public LogLinearSample(long highestTrackableValue, int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("significantDigits must be between 1 and 5");
+        }
+        if (highestTrackableValue < 2) {
+            throw new IllegalArgumentException("highestTrackableValue must be at least 2");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+
+        final long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        final int subBucketCountMagnitude =
+                64 - Long.numberOfLeadingZeros(largestValueWithSingleUnitResolution - 1);
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        this.subBucketHalfCount = 1 << subBucketHalfCountMagnitude;
+        final int subBucketCount = 1 << subBucketCountMagnitude;
+        this.subBucketMask = subBucketCount - 1;
+
+        // every bucket after the first only needs the upper half of its
+        // sub-buckets, the lower half being covered by the bucket before it
+        final int bucketCount = bucketsNeededFor(highestTrackableValue, subBucketCount);
+        this.counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * Returns the largest value which can be told apart from its neighbours.
+     *
+     * @return the highest trackable value
+     */
+    public long highestTrackableValue() {
+        return highestTrackableValue;
+    }
+
+    /**
+     * Returns the number of significant decimal digits values are kept to.
+     *
+     * @return the number of significant decimal digits
+     */
+    public int significantDigits() {
+        return significantDigits;
+    }
+
+    /**
+     * Returns a copy of this sample.
+     *
+     * @return a copy of this sample
+     */
+    public LogLinearSample copy() {
+        final LogLinearSample copy = new LogLinearSample(highestTrackableValue, significantDigits);
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Adds every value counted in the given sample to this one.
+     *
+     * @param other a sample with the same highest trackable value and
+     *              significant digits as this one
+     * @throws IllegalArgumentException if {@code other} buckets its values
+     *                                  differently
+     */
+    public void merge(LogLinearSample other) {
+        if (other.highestTrackableValue != highestTrackableValue
+                || other.significantDigits != significantDigits) {
+            throw new IllegalArgumentException("cannot merge samples with different highest " +
+                                                       "trackable values or significant digits");
+        }
+        for (int i = 0; i < counts.length(); i++) {
+            final long count = other.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    /**
+     * Writes this sample's layout and the counts of its populated buckets.
+     * Empty buckets take no space, and indexes and counts are written as
+     * variable-length integers, so even a distribution spanning five orders
+     * of magnitude encodes to a few kilobytes.
+     *
+     * @param out the output to write to
+     * @throws IOException if there is an error writing the sample
+     * @see #readFrom(DataInput)
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        final long[] copy = new long[counts.length()];
+        int populated = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            if (copy[i] > 0) {
+                populated++;
+            }
+        }
+
+        out.writeByte(ENCODING_VERSION);
+        writeVarLong(out, highestTrackableValue);
+        out.writeByte(significantDigits);
+        writeVarLong(out, populated);
+        int previous = -1;
+        for (int i = 0; i < copy.length && populated > 0; i++) {
+            if (copy[i] > 0) {
+                writeVarLong(out, i - previous);
+                writeVarLong(out, copy[i]);
+                previous = i;
+                populated--;
+            }
+        }
+    }
+
+    /**
+     * Reads a sample written by {@link #writeTo(DataOutput)}.
+     *
+     * @param in the input to read from
+     * @return the sample which was written
+     * @throws IOException if there is an error reading the sample, or it was
+     *                     not written by {@link #writeTo(DataOutput)}
+     */
+    public static LogLinearSample readFrom(DataInput in) throws IOException {
+        final int version = in.readByte();
+        if (version != ENCODING_VERSION) {
+            throw new IOException("Unknown sample encoding version " + version);
+        }
+        final long highestTrackableValue = readVarLong(in);
+        final int significantDigits = in.readByte();
+        final LogLinearSample sample;
+        try {
+            sample = new LogLinearSample(highestTrackableValue, significantDigits);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed sample: " + e.getMessage());
+        }
+
+        final long populated = readVarLong(in);
+        long index = -1;
+        long total = 0;
+        for (long i = 0; i < populated; i++) {
+            final long delta = readVarLong(in);
+            index += delta;
+            if (delta <= 0 || index < 0 || index >= sample.counts.length()) {
+                throw new IOException("Malformed sample: bucket " + index + " out of range");
+            }
+            final long count = readVarLong(in);
+            total += count;
+            if (count < 0 || total < 0) {
+                throw new IOException("Malformed sample: bucket " + index + " has an invalid count");
+            }
+            sample.counts.set((int) index, count);
+        }
+        return sample;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+    }
+
+    @Override
+    public int size() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return (int) Math.min(total, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void update(long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    /**
+     * Returns the values at the given percentiles, read off the same buckets
+     * as {@link #snapshot(StripedStatistics)}. Without the statistics the
+     * snapshot has, these aren't clamped to the smallest and largest values
+     * actually recorded.
+     */
+    @Override
+    public double[] percentiles(double... percentiles) {
+        final long[][] buckets = populatedBuckets();
+        return new Snapshot(buckets[0], buckets[1], 0, 0.0, 0.0, 0.0, 0.0).quantiles(percentiles);
+    }
+
+    @Override
+    public Snapshot snapshot(StripedStatistics statistics) {
+        final long[][] buckets = populatedBuckets();
+        return statistics.snapshot(buckets[0], buckets[1]);
+    }
+
+    /**
+     * Returns one representative value for each bucket which has had values
+     * recorded in it, in ascending order. Unlike other samples, this does not
+     * return one entry per recorded value.
+     *
+     * @return the representative values of all populated buckets
+     * @see #snapshotValues()
+     */
+    @Override
+    public List<Long> values() {
+        final long[] snapshot = snapshotValues();
+        final List<Long> values = new ArrayList<Long>(snapshot.length);
+        for (long value : snapshot) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    /**
+     * Returns one representative value for each bucket which has had values
+     * recorded in it, in ascending order. A bucket is represented by the
+     * highest value it holds, here and in {@link #percentiles(double...)},
+     * {@link #snapshot(StripedStatistics)} and {@link #dump(File)}, so that
+     * no percentile is understated.
+     *
+     * @return the representative values of all populated buckets
+     */
+    @Override
+    public long[] snapshotValues() {
+        return populatedBuckets()[0];
+    }
+
+    @Override
+    public void dump(File output) throws IOException {
+        final PrintWriter writer = new PrintWriter(output);
+        try {
+            for (int i = 0; i < counts.length(); i++) {
+                final long count = counts.get(i);
+                if (count > 0) {
+                    writer.printf("%d\t%d\n", highestEquivalentValue(i), count);
+                }
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the representative values of the populated buckets, in
+     * ascending order, and their counts.
+     */
+    private long[][] populatedBuckets() {
+        final long[] copy = new long[counts.length()];
+        int populated = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            if (copy[i] > 0) {
+                populated++;
+            }
+        }
+
+        final long[] values = new long[populated];
+        final long[] weights = new long[populated];
+        int j = 0;
+        for (int i = 0; i < copy.length && j < populated; i++) {
+            if (copy[i] > 0) {
+                values[j] = highestEquivalentValue(i);
+                weights[j] = copy[i];
+                j++;
+            }
+        }
+        return new long[][]{values, weights};
+    }
+
+    private int indexOf(long value) {
+        final long v = value < 0 ? 0 : (value > highestTrackableValue ? highestTrackableValue : value);
+        final int bucketIndex = (63 - subBucketHalfCountMagnitude) - Long.numberOfLeadingZeros(v | subBucketMask);
+        final int subBucketIndex = (int) (v >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private int bucketIndexOf(int index) {
+        return Math.max(0, (index >> subBucketHalfCountMagnitude) - 1);
+    }
+
+    private long lowestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        return ((long) subBucketIndex) << bucketIndex;
+    }
+
+    private long highestEquivalentValue(int index) {
+        return lowestEquivalentValue(index) + (1L << bucketIndexOf(index)) - 1;
+    }
+
+    private static void writeVarLong(DataOutput out, long value) throws IOException {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    private static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            final int b = in.readByte();
+            if (shift == 63 && (b & 0x7E) != 0) {
+                // only the lowest bit of the tenth byte fits in a long
+                throw new IOException("Malformed sample: variable-length integer overflows a long");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed sample: variable-length integer is too long");
+    }
+
+    private static int bucketsNeededFor(long value, int subBucketCount) {
+        long smallestUntrackableValue = subBucketCount;
+        int bucketsNeeded = 1;
+        while (smallestUntrackableValue <= value) {
+            if (smallestUntrackableValue > (Long.MAX_VALUE / 2)) {
+                return bucketsNeeded + 1;
+            }
+            smallestUntrackableValue <<= 1;
+            bucketsNeeded++;
+        }
+        return bucketsNeeded;
+    }
+}
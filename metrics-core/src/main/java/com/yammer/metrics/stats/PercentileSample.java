@@ -0,0 +1,25 @@
+package com.yammer.metrics.stats;
+
+/**
+ * A {@link Sample} which can calculate percentiles itself, without its values
+ * being copied out and sorted.
+ */
+public interface PercentileSample extends Sample {
+    /**
+     * Returns an array of values at the given percentiles.
+     *
+     * @param percentiles one or more percentiles ({@code 0..1})
+     * @return an array of values at the given percentiles
+     */
+    double[] percentiles(double... percentiles);
+
+    /**
+     * Returns a {@link Snapshot} of the sample's distribution, taking the
+     * count, minimum, maximum, mean, and standard deviation from the given
+     * statistics.
+     *
+     * @param statistics the statistics of every value recorded
+     * @return a snapshot of the sample
+     */
+    Snapshot snapshot(StripedStatistics statistics);
+}
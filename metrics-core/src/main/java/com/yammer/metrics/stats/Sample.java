@@ -34,6 +34,15 @@ public interface Sample {
      */
     List<Long> values();
 
+    /**
+     * Returns a copy of the sample's values as a primitive array, in no
+     * particular order. Unlike {@link #values()}, this does not box each
+     * value, so the caller may sort the returned array in place.
+     *
+     * @return a copy of the sample's values
+     */
+    long[] snapshotValues();
+
     /**
      * Writes the values of the sample to the given file.
      *
@@ -0,0 +1,357 @@
+package com.yammer.metrics.stats;
+
+import com.yammer.metrics.core.Clock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sample of the {@code long}s recorded within a sliding window of time,
+ * such as the last minute.
+ * <p/>
+ * The window is a ring of buckets, one per {@code resolution} period, each
+ * holding a fixed-size uniform reservoir of that period's values. Recording
+ * is lock-free. A bucket which has fallen out of the window is simply skipped
+ * by readers and reset by the first value recorded in it one full rotation
+ * later, so expiring old values costs nothing. Memory is bounded by the
+ * number of buckets times the size of each reservoir.
+ * <p/>
+ * Busy periods keep no more values than quiet ones, so percentiles weight
+ * each bucket's values by the number of values the bucket actually saw.
+ * A bucket's count saturates at 2<sup>24</sup> - 1 values per period. A
+ * value recorded by a thread which stalls across a whole rotation, or which
+ * races another thread for the same reservoir slot, may be dropped.
+ */
+public class SlidingTimeWindowSample implements PercentileSample {
+    // Random's seed is a single AtomicLong, so sharing one across threads
+    // would put a CAS retry loop back on the update path.
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
+    // a bucket's period and the number of values recorded in it are packed
+    // into one long, so that rolling it over to a new period and counting
+    // the first value of that period is a single CAS
+    private static final int COUNT_BITS = 24;
+    private static final long MAX_COUNT = (1L << COUNT_BITS) - 1;
+    private static final long WRITING = -1;
+
+    private final Clock clock;
+    private final long resolution;
+    private final long origin;
+    private final Bucket[] buckets;
+
+    /**
+     * Creates a new {@link SlidingTimeWindowSample}.
+     *
+     * @param window          the length of the window
+     * @param resolution      the length of each bucket; the window slides
+     *                        forward one bucket at a time
+     * @param unit            the unit of {@code window} and
+     *                        {@code resolution}
+     * @param valuesPerBucket the size of each bucket's reservoir
+     */
+    public SlidingTimeWindowSample(long window, long resolution, TimeUnit unit, int valuesPerBucket) {
+        this(window, resolution, unit, valuesPerBucket, Clock.DEFAULT);
+    }
+
+    /**
+     * Creates a new {@link SlidingTimeWindowSample} with the given clock.
+     *
+     * @param window          the length of the window
+     * @param resolution      the length of each bucket; the window slides
+     *                        forward one bucket at a time
+     * @param unit            the unit of {@code window} and
+     *                        {@code resolution}
+     * @param valuesPerBucket the size of each bucket's reservoir
+     * @param clock           the clock used to place values in buckets
+     */
+    public SlidingTimeWindowSample(long window, long resolution, TimeUnit unit, int valuesPerBucket, Clock clock) {
+        if (resolution <= 0 || window < resolution) {
+            throw new IllegalArgumentException("the window must be at least one resolution long");
+        }
+        if (valuesPerBucket <= 0) {
+            throw new IllegalArgumentException("each bucket must hold at least one value");
+        }
+        this.clock = clock;
+        this.resolution = unit.toNanos(resolution);
+        this.origin = clock.tick();
+        this.buckets = new Bucket[(int) ((window + resolution - 1) / resolution)];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket(valuesPerBucket);
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (Bucket bucket : buckets) {
+            bucket.clear();
+        }
+    }
+
+    @Override
+    public int size() {
+        final long now = currentEpoch();
+        long size = 0;
+        for (Bucket bucket : buckets) {
+            final long state = bucket.state.get();
+            if (isLive(epoch(state), now)) {
+                size += bucket.values(state).length;
+            }
+        }
+        return (int) size;
+    }
+
+    @Override
+    public void update(long value) {
+        final long now = currentEpoch();
+        buckets[(int) (now % buckets.length)].update(now, value);
+    }
+
+    @Override
+    public List<Long> values() {
+        final long[] snapshot = snapshotValues();
+        final List<Long> values = new ArrayList<Long>(snapshot.length);
+        for (long value : snapshot) {
+            values.add(value);
+        }
+        return values;
+    }
+
+    @Override
+    public long[] snapshotValues() {
+        final long now = currentEpoch();
+        final long[][] kept = new long[buckets.length][];
+        int total = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            final long state = buckets[i].state.get();
+            if (isLive(epoch(state), now)) {
+                kept[i] = buckets[i].values(state);
+                total += kept[i].length;
+            }
+        }
+
+        final long[] values = new long[total];
+        int offset = 0;
+        for (long[] bucket : kept) {
+            if (bucket != null) {
+                System.arraycopy(bucket, 0, values, offset, bucket.length);
+                offset += bucket.length;
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public double[] percentiles(double... percentiles) {
+        final Window window = window();
+        if (window.values.length == 0) {
+            return new double[percentiles.length];
+        }
+        return new Snapshot(window.values, window.weights, window.count,
+                            window.values[0], window.values[window.values.length - 1],
+                            0, 0).quantiles(percentiles);
+    }
+
+    @Override
+    public Snapshot snapshot(StripedStatistics statistics) {
+        final Window window = window();
+        return statistics.snapshot(window.values, window.weights);
+    }
+
+    @Override
+    public void dump(File output) throws IOException {
+        final PrintWriter writer = new PrintWriter(output);
+        try {
+            for (long value : snapshotValues()) {
+                writer.printf("%d\n", value);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private long currentEpoch() {
+        return (clock.tick() - origin) / resolution;
+    }
+
+    private boolean isLive(long epoch, long now) {
+        return epoch >= 0 && epoch > now - buckets.length;
+    }
+
+    /**
+     * Returns the period of a bucket's state, or {@code -1} if the bucket is
+     * unused.
+     */
+    private static long epoch(long state) {
+        return (state >>> COUNT_BITS) - 1;
+    }
+
+    private static long count(long state) {
+        return state & MAX_COUNT;
+    }
+
+    /**
+     * Merges the sorted values of every live bucket, weighting each value by
+     * the number of values recorded in its bucket per value kept.
+     */
+    private Window window() {
+        final long now = currentEpoch();
+        final long[][] sorted = new long[buckets.length][];
+        final long[] weight = new long[buckets.length];
+        int total = 0;
+        long count = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            final Bucket bucket = buckets[i];
+            final long state = bucket.state.get();
+            if (isLive(epoch(state), now)) {
+                final long seen = count(state);
+                final long[] kept = bucket.values(state);
+                if (kept.length > 0) {
+                    Arrays.sort(kept);
+                    sorted[i] = kept;
+                    // scaled by the reservoir size to stay integral
+                    weight[i] = Math.max(1, seen * bucket.values.length() / kept.length);
+                    total += kept.length;
+                    count += Math.max(seen, kept.length);
+                }
+            }
+        }
+
+        final long[] values = new long[total];
+        final long[] weights = new long[total];
+        final int[] next = new int[buckets.length];
+        for (int j = 0; j < total; j++) {
+            int min = -1;
+            for (int i = 0; i < sorted.length; i++) {
+                if (sorted[i] != null && next[i] < sorted[i].length
+                        && (min < 0 || sorted[i][next[i]] < sorted[min][next[min]])) {
+                    min = i;
+                }
+            }
+            values[j] = sorted[min][next[min]++];
+            weights[j] = weight[min];
+        }
+        return new Window(values, weights, count);
+    }
+
+    private static class Window {
+        final long[] values;
+        final long[] weights;
+        final long count;
+
+        Window(long[] values, long[] weights, long count) {
+            this.values = values;
+            this.weights = weights;
+            this.count = count;
+        }
+    }
+
+    /**
+     * A period's reservoir. Its state holds the period plus one (zero while
+     * the bucket is unused) above the count of values recorded in it. Each
+     * slot is tagged with the state's period stamp once its value is
+     * written, and a writer claims a slot by swapping its tag for
+     * {@code WRITING}, so readers only ever see values written in the
+     * bucket's current period.
+     */
+    private static class Bucket {
+        final AtomicLong state = new AtomicLong();
+        final AtomicLongArray values;
+        final AtomicLongArray tags;
+
+        Bucket(int size) {
+            this.values = new AtomicLongArray(size);
+            this.tags = new AtomicLongArray(size);
+        }
+
+        void clear() {
+            state.set(0);
+            for (int i = 0; i < tags.length(); i++) {
+                tags.set(i, 0);
+            }
+        }
+
+        void update(long epoch, long value) {
+            final long stamp = epoch + 1;
+            long count;
+            while (true) {
+                final long current = state.get();
+                final long currentStamp = current >>> COUNT_BITS;
+                if (currentStamp == stamp) {
+                    count = count(current);
+                    // past MAX_COUNT the count saturates and values keep
+                    // replacing random slots
+                    if (count == MAX_COUNT || state.compareAndSet(current, current + 1)) {
+                        count = Math.min(count + 1, MAX_COUNT);
+                        break;
+                    }
+                } else if (currentStamp > stamp) {
+                    // this thread stalled for a whole rotation; the value is
+                    // already out of the window
+                    return;
+                } else if (state.compareAndSet(current, (stamp << COUNT_BITS) | 1)) {
+                    count = 1;
+                    break;
+                }
+            }
+            final long index = count <= values.length() ? count - 1 : nextLong(count);
+            if (index < values.length()) {
+                write((int) index, stamp, value);
+            }
+        }
+
+        private void write(int index, long stamp, long value) {
+            final long tag = tags.get(index);
+            // another thread is writing the slot, or it already holds a value
+            // from a later period; either way this value is dropped
+            if (tag != WRITING && tag <= stamp && tags.compareAndSet(index, tag, WRITING)) {
+                values.set(index, value);
+                tags.set(index, stamp);
+            }
+        }
+
+        /**
+         * Returns the values written in the period of the given state.
+         */
+        long[] values(long state) {
+            final long stamp = state >>> COUNT_BITS;
+            final long[] copy = new long[(int) Math.min(count(state), values.length())];
+            int kept = 0;
+            for (int i = 0; i < copy.length; i++) {
+                if (tags.get(i) == stamp) {
+                    final long value = values.get(i);
+                    if (tags.get(i) == stamp) {
+                        copy[kept++] = value;
+                    }
+                }
+            }
+            return kept == copy.length ? copy : Arrays.copyOf(copy, kept);
+        }
+
+        /**
+         * Get a pseudorandom long uniformly between 0 and n-1.
+         * Stolen from {@code Random.nextInt(int n)}
+         * @param n the bound
+         */
+        private static long nextLong(long n) {
+            final Random random = RANDOM.get();
+            long bits, val;
+            do {
+                bits = random.nextLong() & (~(1L << 63));
+                val = bits % n;
+            } while (bits - val + (n - 1) < 0L);
+            return val;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.yammer.metrics.stats;
+
+import java.util.Arrays;
+
+import static java.lang.Math.floor;
+
+/**
+ * An immutable, point-in-time view of a histogram: its sampled values, sorted
+ * once when the snapshot is taken, together with the count, minimum, maximum,
+ * mean, and standard deviation of every value it recorded. Reporters should
+ * take one snapshot per metric and read everything from it.
+ * <p/>
+ * Samples which count values in buckets rather than keeping them supply a
+ * weight for each value, and quantiles are then read off the cumulative
+ * weights.
+ */
+public class Snapshot {
+    private final long[] values;
+    private final long[] weights;
+    private final long totalWeight;
+    private final long count;
+    private final double min, max, mean, stdDev;
+    private final double scale;
+
+    /**
+     * Creates a new {@link Snapshot}.
+     *
+     * @param sortedValues the sampled values, in ascending order; the array
+     *                     is not copied and must not be changed afterwards
+     * @param weights      the number of times each value was seen, or
+     *                     {@code null} if each was seen once
+     * @param count        the number of values recorded
+     * @param min          the smallest value recorded
+     * @param max          the largest value recorded
+     * @param mean         the arithmetic mean of the values recorded
+     * @param stdDev       the standard deviation of the values recorded
+     */
+    public Snapshot(long[] sortedValues, long[] weights, long count,
+                    double min, double max, double mean, double stdDev) {
+        this(sortedValues, weights, sum(weights), count, min, max, mean, stdDev, 1.0);
+    }
+
+    private Snapshot(long[] values, long[] weights, long totalWeight, long count,
+                     double min, double max, double mean, double stdDev, double scale) {
+        this.values = values;
+        this.weights = weights;
+        this.totalWeight = totalWeight;
+        this.count = count;
+        this.min = min;
+        this.max = max;
+        this.mean = mean;
+        this.stdDev = stdDev;
+        this.scale = scale;
+    }
+
+    /**
+     * Returns a view of this snapshot with every value multiplied by the given
+     * factor, e.g. to convert nanoseconds into a timer's duration unit.
+     *
+     * @param factor the factor to scale values by
+     * @return a scaled view of this snapshot
+     */
+    public Snapshot scale(double factor) {
+        return new Snapshot(values, weights, totalWeight, count, min, max, mean, stdDev, scale * factor);
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values recorded
+     */
+    public long count() {
+        return count;
+    }
+
+    /**
+     * Returns the number of distinct sampled values in the snapshot.
+     *
+     * @return the number of sampled values
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the smallest recorded value.
+     *
+     * @return the smallest recorded value
+     */
+    public double min() {
+        return count > 0 ? min * scale : 0.0;
+    }
+
+    /**
+     * Returns the largest recorded value.
+     *
+     * @return the largest recorded value
+     */
+    public double max() {
+        return count > 0 ? max * scale : 0.0;
+    }
+
+    /**
+     * Returns the arithmetic mean of all recorded values.
+     *
+     * @return the arithmetic mean of all recorded values
+     */
+    public double mean() {
+        return count > 0 ? mean * scale : 0.0;
+    }
+
+    /**
+     * Returns the standard deviation of all recorded values.
+     *
+     * @return the standard deviation of all recorded values
+     */
+    public double stdDev() {
+        return count > 0 ? stdDev * scale : 0.0;
+    }
+
+    /**
+     * Returns the median of the sampled values.
+     *
+     * @return the median
+     */
+    public double median() {
+        return quantile(0.5);
+    }
+
+    /**
+     * Returns the value at the given quantile.
+     *
+     * @param quantile a quantile ({@code 0..1})
+     * @return the value at {@code quantile}
+     */
+    public double quantile(double quantile) {
+        if (values.length == 0) {
+            return 0.0;
+        }
+        if (weights != null) {
+            return weightedQuantile(quantile) * scale;
+        }
+
+        final double pos = quantile * (values.length + 1);
+        if (pos < 1) {
+            return values[0] * scale;
+        }
+        if (pos >= values.length) {
+            return values[values.length - 1] * scale;
+        }
+        final double lower = values[(int) pos - 1];
+        final double upper = values[(int) pos];
+        return (lower + (pos - floor(pos)) * (upper - lower)) * scale;
+    }
+
+    /**
+     * Returns an array of values at the given quantiles.
+     *
+     * @param quantiles one or more quantiles ({@code 0..1})
+     * @return an array of values at the given quantiles
+     */
+    public double[] quantiles(double... quantiles) {
+        final double[] scores = new double[quantiles.length];
+        for (int i = 0; i < quantiles.length; i++) {
+            scores[i] = quantile(quantiles[i]);
+        }
+        return scores;
+    }
+
+    /**
+     * Returns a copy of the sampled values, unscaled.
+     *
+     * @return the sampled values, in ascending order
+     */
+    public long[] values() {
+        return Arrays.copyOf(values, values.length);
+    }
+
+    private double weightedQuantile(double quantile) {
+        final long rank = Math.max(1, (long) (quantile * totalWeight + 0.5));
+        long seen = 0;
+        int i = 0;
+        while (i < values.length - 1) {
+            seen += weights[i];
+            if (seen >= rank) {
+                break;
+            }
+            i++;
+        }
+        if (count == 0) {
+            return values[i];
+        }
+        // a bucket's value may lie outside what was actually recorded
+        return Math.min(Math.max(values[i], min), max);
+    }
+
+    private static long sum(long[] weights) {
+        long total = 0;
+        if (weights != null) {
+            for (long weight : weights) {
+                total += weight;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,103 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@code long} sum which is striped across a table of cells to avoid
+ * contention between threads updating it concurrently. While uncontended,
+ * all updates go to a single base value; once threads collide, each thread
+ * updates its own cache-line padded cell instead. Reading the value sums the
+ * base and all of the cells.
+ *
+ * @see <a href="http://gee.cs.oswego.edu/dl/jsr166/dist/jsr166edocs/jsr166e/LongAdder.html">jsr166e's
+ *      LongAdder</a>
+ */
+public class StripedLong {
+    private final AtomicLong base = new AtomicLong();
+    private volatile Cell[] cells;
+
+    /**
+     * Adds the given value.
+     *
+     * @param x the value to add
+     */
+    public void add(long x) {
+        Cell[] as = cells;
+        if (as == null) {
+            final long b = base.get();
+            if (base.compareAndSet(b, b + x)) {
+                return;
+            }
+            as = expand();
+        }
+
+        final int[] probe = Striping.probe();
+        int h = probe[0];
+        while (true) {
+            final Cell cell = as[h & (as.length - 1)];
+            final long v = cell.get();
+            if (cell.compareAndSet(v, v + x)) {
+                return;
+            }
+            h = Striping.advance(probe);
+        }
+    }
+
+    /**
+     * Returns the current sum. This is not an atomic snapshot: updates which
+     * happen while the sum is being calculated may or may not be included.
+     *
+     * @return the current sum
+     */
+    public long sum() {
+        long sum = base.get();
+        final Cell[] as = cells;
+        if (as != null) {
+            for (Cell cell : as) {
+                sum += cell.get();
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Resets the sum to zero. This is only effective if there are no
+     * concurrent updates.
+     */
+    public void reset() {
+        base.set(0);
+        final Cell[] as = cells;
+        if (as != null) {
+            for (Cell cell : as) {
+                cell.set(0);
+            }
+        }
+    }
+
+    private Cell[] expand() {
+        Cell[] as = cells;
+        if (as == null) {
+            synchronized (this) {
+                as = cells;
+                if (as == null) {
+                    as = new Cell[Striping.TABLE_SIZE];
+                    for (int i = 0; i < as.length; i++) {
+                        as[i] = new Cell();
+                    }
+                    cells = as;
+                }
+            }
+        }
+        return as;
+    }
+
+    /**
+     * An {@link AtomicLong} padded out to fill a cache line, so that adjacent
+     * cells don't share one.
+     */
+    @SuppressWarnings("unused")
+    private static final class Cell extends AtomicLong {
+        private static final long serialVersionUID = -5187516733474735342L;
+        volatile long p1, p2, p3, p4, p5, p6, p7;
+    }
+}
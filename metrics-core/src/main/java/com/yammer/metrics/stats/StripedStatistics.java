@@ -0,0 +1,247 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The count, sum, minimum, maximum, and running variance of a stream of
+ * {@code long}s, kept in per-thread stripes which are only merged when read.
+ * <p/>
+ * Each stripe is guarded by its own try-lock: a thread which finds its stripe
+ * busy moves to another one rather than waiting, so updates neither allocate
+ * nor spin on a shared location. Histograms start with a single stripe and
+ * only grow a full table once two threads actually collide.
+ *
+ * @see <a href="http://www.johndcook.com/standard_deviation.html">Accurately
+ * computing running variance</a>
+ * @see <a href="http://en.wikipedia.org/wiki/Algorithms_for_calculating_variance#Parallel_algorithm">Chan
+ * et al.'s parallel algorithm for combining variances</a>
+ */
+public class StripedStatistics {
+    private volatile Stripe[] stripes = new Stripe[]{ new Stripe() };
+
+    /**
+     * Adds a recorded value.
+     *
+     * @param value the value
+     */
+    public void update(long value) {
+        Stripe[] as = stripes;
+        if (as.length == 1) {
+            final Stripe stripe = as[0];
+            if (stripe.tryLock()) {
+                try {
+                    stripe.update(value);
+                } finally {
+                    stripe.unlock();
+                }
+                return;
+            }
+            as = expand(as);
+        }
+
+        final int[] probe = Striping.probe();
+        int h = probe[0];
+        while (true) {
+            final Stripe stripe = as[h & (as.length - 1)];
+            if (stripe.tryLock()) {
+                try {
+                    stripe.update(value);
+                } finally {
+                    stripe.unlock();
+                }
+                return;
+            }
+            h = Striping.advance(probe);
+        }
+    }
+
+    /**
+     * Returns the number of values recorded.
+     *
+     * @return the number of values recorded
+     */
+    public long count() {
+        long count = 0;
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                count += stripe.count;
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the sum of all recorded values.
+     *
+     * @return the sum of all recorded values
+     */
+    public long sum() {
+        return merge().sum;
+    }
+
+    /**
+     * Returns the smallest recorded value, or {@link Long#MAX_VALUE} if no
+     * values have been recorded.
+     *
+     * @return the smallest recorded value
+     */
+    public long min() {
+        return merge().min;
+    }
+
+    /**
+     * Returns the largest recorded value, or {@link Long#MIN_VALUE} if no
+     * values have been recorded.
+     *
+     * @return the largest recorded value
+     */
+    public long max() {
+        return merge().max;
+    }
+
+    /**
+     * Returns the sample variance of all recorded values.
+     *
+     * @return the sample variance of all recorded values
+     */
+    public double variance() {
+        final Stripe merged = merge();
+        if (merged.count <= 1) {
+            return 0.0;
+        }
+        return merged.m2 / (merged.count - 1);
+    }
+
+    /**
+     * Returns a {@link Snapshot} of the given sampled values, along with the
+     * count, minimum, maximum, mean, and standard deviation of every value
+     * recorded here, all read in a single pass over the stripes.
+     *
+     * @param sortedValues the sampled values, in ascending order
+     * @param weights      the number of times each value was seen, or
+     *                     {@code null} if each was seen once
+     * @return a snapshot of the values and statistics
+     */
+    public Snapshot snapshot(long[] sortedValues, long[] weights) {
+        final Stripe merged = merge();
+        final double variance = merged.count <= 1 ? 0.0 : merged.m2 / (merged.count - 1);
+        final double mean = merged.count == 0 ? 0.0 : merged.sum / (double) merged.count;
+        return new Snapshot(sortedValues, weights, merged.count,
+                            merged.min, merged.max, mean, Math.sqrt(variance));
+    }
+
+    /**
+     * Clears all recorded values.
+     */
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                stripe.clear();
+            } finally {
+                stripe.unlock();
+            }
+        }
+    }
+
+    private Stripe merge() {
+        final Stripe merged = new Stripe();
+        for (Stripe stripe : stripes) {
+            stripe.lock();
+            try {
+                merged.merge(stripe);
+            } finally {
+                stripe.unlock();
+            }
+        }
+        return merged;
+    }
+
+    private Stripe[] expand(Stripe[] as) {
+        synchronized (this) {
+            if (stripes == as) {
+                final Stripe[] expanded = new Stripe[Striping.TABLE_SIZE];
+                expanded[0] = as[0];
+                for (int i = 1; i < expanded.length; i++) {
+                    expanded[i] = new Stripe();
+                }
+                stripes = expanded;
+            }
+            return stripes;
+        }
+    }
+
+    /**
+     * One thread's share of the statistics. The {@link AtomicInteger} state
+     * is the stripe's lock; the plain fields are only touched while holding it.
+     * The trailing fields pad the stripe out to a cache line of its own.
+     */
+    @SuppressWarnings("unused")
+    private static final class Stripe extends AtomicInteger {
+        private static final long serialVersionUID = 4338617209341526335L;
+
+        long count;
+        long sum;
+        long min = Long.MAX_VALUE;
+        long max = Long.MIN_VALUE;
+        // These are for the Welford algorithm for calculating running variance
+        // without floating-point doom.
+        double mean;
+        double m2;
+        long p1, p2;
+
+        boolean tryLock() {
+            return get() == 0 && compareAndSet(0, 1);
+        }
+
+        void lock() {
+            while (!tryLock()) {
+                Thread.yield();
+            }
+        }
+
+        void unlock() {
+            set(0);
+        }
+
+        void update(long value) {
+            count++;
+            sum += value;
+            if (value < min) {
+                min = value;
+            }
+            if (value > max) {
+                max = value;
+            }
+            final double delta = value - mean;
+            mean += delta / count;
+            m2 += delta * (value - mean);
+        }
+
+        void merge(Stripe other) {
+            if (other.count == 0) {
+                return;
+            }
+            final long total = count + other.count;
+            final double delta = other.mean - mean;
+            m2 += other.m2 + delta * delta * count * other.count / total;
+            mean += delta * other.count / total;
+            count = total;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+
+        void clear() {
+            count = 0;
+            sum = 0;
+            min = Long.MAX_VALUE;
+            max = Long.MIN_VALUE;
+            mean = 0;
+            m2 = 0;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.yammer.metrics.stats;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-thread probes used to spread concurrent updates across a table of
+ * cells, as in jsr166e's {@code Striped64}.
+ */
+final class Striping {
+    private static final AtomicInteger SEED = new AtomicInteger();
+    private static final ThreadLocal<int[]> PROBE = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            final int seed = SEED.addAndGet(0x61c88647);
+            return new int[]{ (seed == 0) ? 1 : seed };
+        }
+    };
+
+    /**
+     * The number of cells in a fully-expanded table: the smallest power of two
+     * which is greater than or equal to the number of processors.
+     */
+    static final int TABLE_SIZE = tableSize(Runtime.getRuntime().availableProcessors());
+
+    private Striping() { /* unused */ }
+
+    /**
+     * Returns the current thread's probe holder. The probe itself is the
+     * first element of the array.
+     *
+     * @return the current thread's probe holder
+     */
+    static int[] probe() {
+        return PROBE.get();
+    }
+
+    /**
+     * Moves the current thread's probe to a pseudo-random new value, after it
+     * has collided with another thread.
+     *
+     * @param probe the current thread's probe holder
+     * @return the new probe
+     */
+    static int advance(int[] probe) {
+        int h = probe[0];
+        h ^= h << 13;   // xorshift
+        h ^= h >>> 17;
+        h ^= h << 5;
+        probe[0] = h;
+        return h;
+    }
+
+    private static int tableSize(int processors) {
+        int size = 1;
+        while (size < processors) {
+            size <<= 1;
+        }
+        return size;
+    }
+}
@@ -17,7 +17,14 @@ import java.util.concurrent.atomic.AtomicLongArray;
  *      with a Reservoir</a>
  */
 public class UniformSample implements Sample {
-    private static final Random RANDOM = new Random();
+    // Random's seed is a single AtomicLong, so sharing one across threads
+    // would put a CAS retry loop back on the update path.
+    private static final ThreadLocal<Random> RANDOM = new ThreadLocal<Random>() {
+        @Override
+        protected Random initialValue() {
+            return new Random();
+        }
+    };
     private final AtomicLong count = new AtomicLong();
     private final AtomicLongArray values;
 
@@ -68,9 +75,10 @@ public class UniformSample implements Sample {
      * @param n the bound
      */
     private static long nextLong(long n) {
+        final Random random = RANDOM.get();
         long bits,val;
         do {
-            bits = RANDOM.nextLong() & (~(1L<<63));
+            bits = random.nextLong() & (~(1L<<63));
             val = bits % n;
         } while(bits - val + (n-1) < 0L);
         return val;
@@ -79,10 +87,19 @@ public class UniformSample implements Sample {
 
     @Override
     public List<Long> values() {
-        final int s = size();
-        final List<Long> copy = new ArrayList<Long>(s);
-        for (int i = 0; i < s; i++) {
-            copy.add(values.get(i));
+        final long[] snapshot = snapshotValues();
+        final List<Long> copy = new ArrayList<Long>(snapshot.length);
+        for (long value : snapshot) {
+            copy.add(value);
+        }
+        return copy;
+    }
+
+    @Override
+    public long[] snapshotValues() {
+        final long[] copy = new long[size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = values.get(i);
         }
         return copy;
     }
@@ -91,8 +108,7 @@ public class UniformSample implements Sample {
     public void dump(File output) throws IOException {
         final PrintWriter writer = new PrintWriter(output);
         try {
-            final List<Long> values = values();
-            for (Long value : values) {
+            for (long value : snapshotValues()) {
                 writer.printf("%d\n", value);
             }
         } finally {
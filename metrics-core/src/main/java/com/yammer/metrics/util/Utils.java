@@ -9,6 +9,21 @@ import java.util.concurrent.*;
 
 public class Utils {
     private static final ThreadPools THREAD_POOLS = new ThreadPools();
+    /**
+     * The order of metrics within a group, as returned by
+     * {@link #sortAndFilterMetricNames(Map, MetricPredicate)}: by name and
+     * then by tags.
+     */
+    public static final Comparator<MetricName> NAME_ORDER = new Comparator<MetricName>() {
+        @Override
+        public int compare(MetricName a, MetricName b) {
+            final int names = a.getName().compareTo(b.getName());
+            if (names != 0) {
+                return names;
+            }
+            return a.getTags().toString().compareTo(b.getTags().toString());
+        }
+    };
 
     private Utils() { /* unused */ }
 
@@ -19,6 +34,31 @@ public class Utils {
     public static Map<String, Map<String, Metric>> sortAndFilterMetrics(Map<MetricName, Metric> metrics, MetricPredicate predicate) {
         final Map<String, Map<String, Metric>> sortedMetrics =
                 new TreeMap<String, Map<String, Metric>>();
+        for (Entry<String, Map<MetricName, Metric>> entry : sortAndFilterMetricNames(metrics, predicate).entrySet()) {
+            final Map<String, Metric> subMetrics = new TreeMap<String, Metric>();
+            for (Entry<MetricName, Metric> subEntry : entry.getValue().entrySet()) {
+                final MetricName name = subEntry.getKey();
+                subMetrics.put(name.hasTags() ? name.getName() + name.getTags() : name.getName(),
+                               subEntry.getValue());
+            }
+            sortedMetrics.put(entry.getKey(), subMetrics);
+        }
+        return sortedMetrics;
+    }
+
+    /**
+     * Groups metrics by their group, type and scope, like
+     * {@link #sortAndFilterMetrics(Map, MetricPredicate)}, but keeps each
+     * metric's full name so that reporters can render its tags. Within a
+     * group, metrics are sorted by name and then by tags.
+     *
+     * @param metrics   the metrics to group
+     * @param predicate the predicate the metrics must match
+     * @return the matching metrics, grouped and sorted
+     */
+    public static Map<String, Map<MetricName, Metric>> sortAndFilterMetricNames(Map<MetricName, Metric> metrics, MetricPredicate predicate) {
+        final Map<String, Map<MetricName, Metric>> sortedMetrics =
+                new TreeMap<String, Map<MetricName, Metric>>();
         for (Entry<MetricName, Metric> entry : metrics.entrySet()) {
             final String qualifiedTypeName = entry.getKey().getGroup() + "." + entry.getKey().getType();
             if (predicate.matches(entry.getKey(), entry.getValue())) {
@@ -28,18 +68,17 @@ public class Utils {
                 } else {
                     scopedName = qualifiedTypeName;
                 }
-                Map<String, Metric> subMetrics = sortedMetrics.get(scopedName);
+                Map<MetricName, Metric> subMetrics = sortedMetrics.get(scopedName);
                 if (subMetrics == null) {
-                    subMetrics = new TreeMap<String, Metric>();
+                    subMetrics = new TreeMap<MetricName, Metric>(NAME_ORDER);
                     sortedMetrics.put(scopedName, subMetrics);
                 }
-                subMetrics.put(entry.getKey().getName(), entry.getValue());
+                subMetrics.put(entry.getKey(), entry.getValue());
             }
         }
         return sortedMetrics;
     }
 
-
     /**
      * Creates a new scheduled thread pool of a given size with the given name.
      *
@@ -0,0 +1,80 @@
+package com.yammer.metrics.core;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MetricNameIndexTest {
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long tick() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
+    final ManualClock clock = new ManualClock();
+    final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.TickMode.SHARED, clock);
+
+    @After
+    public void tearDown() throws Exception {
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void dropsAScopeOnceItsLastNameIsRemoved() throws Exception {
+        registry.newCounter(MetricNameIndexTest.class, "requests", "a");
+        registry.newCounter(MetricNameIndexTest.class, "errors", "a");
+        registry.newCounter(MetricNameIndexTest.class, "requests", "b");
+
+        assertThat("each name and scope is indexed",
+                   registry.nameIndexSize(),
+                   is(5));
+
+        registry.removeMetric(MetricNameIndexTest.class, "requests", "a");
+        registry.removeMetric(MetricNameIndexTest.class, "requests", "b");
+
+        assertThat("only the scope which still has a name is kept",
+                   registry.nameIndexSize(),
+                   is(2));
+    }
+
+    @Test
+    public void doesntKeepTheScopesOfRejectedNames() throws Exception {
+        registry.setMaxMetricsPerGroup(10);
+        for (int i = 0; i < 1000; i++) {
+            registry.newCounter(MetricNameIndexTest.class, "requests", "user-" + i);
+        }
+
+        assertThat("only the admitted names and their scopes are indexed",
+                   registry.nameIndexSize(),
+                   is(20));
+    }
+
+    @Test
+    public void doesntKeepTheScopesOfExpiredMetrics() throws Exception {
+        registry.setTimeToIdle(1, TimeUnit.MINUTES);
+        final CounterMetric busy = registry.newCounter(MetricNameIndexTest.class, "requests", "server");
+        for (int i = 0; i < 1000; i++) {
+            registry.newCounter(MetricNameIndexTest.class, "requests", "connection-" + i).inc();
+        }
+
+        registry.expireIdleMetrics();
+        clock.advance(1, TimeUnit.MINUTES);
+        busy.inc();
+        registry.expireIdleMetrics();
+
+        assertThat("only the busy counter's name and scope are indexed",
+                   registry.nameIndexSize(),
+                   is(2));
+    }
+}
@@ -0,0 +1,190 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.*;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class AsyncMetricsRegistryListenerTest {
+    private static class RecordingListener implements MetricsRegistryListener {
+        final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+
+        @Override
+        public void onMetricAdded(MetricName name, Metric metric) {
+            threads.add(Thread.currentThread());
+            events.add("added " + name.getName());
+        }
+
+        @Override
+        public void onMetricRemoved(MetricName name) {
+            threads.add(Thread.currentThread());
+            events.add("removed " + name.getName());
+        }
+    }
+
+    final MetricsRegistry registry = new MetricsRegistry();
+    final RecordingListener delegate = new RecordingListener();
+    final AsyncMetricsRegistryListener listener = new AsyncMetricsRegistryListener(delegate, 4);
+
+    @After
+    public void tearDown() throws Exception {
+        listener.shutdown();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void deliversEventsInOrderOnAnotherThread() throws Exception {
+        registry.addListener(listener);
+        for (int i = 0; i < 10; i++) {
+            registry.newCounter(AsyncMetricsRegistryListenerTest.class, "counter" + i);
+        }
+        registry.removeMetric(AsyncMetricsRegistryListenerTest.class, "counter3");
+        listener.flush();
+
+        assertThat("every event was delivered",
+                   delegate.events.size(),
+                   is(11));
+
+        assertThat("the events were delivered in order",
+                   delegate.events.subList(9, 11),
+                   is(Arrays.asList("added counter9", "removed counter3")));
+
+        assertThat("the events weren't delivered on the creating thread",
+                   delegate.threads,
+                   not(hasItem(Thread.currentThread())));
+    }
+
+    @Test
+    public void waitsForRoomWhenTheQueueIsFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AsyncMetricsRegistryListener blocked = new AsyncMetricsRegistryListener(new MetricsRegistryListener() {
+            @Override
+            public void onMetricAdded(MetricName name, Metric metric) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                delegate.onMetricAdded(name, metric);
+            }
+
+            @Override
+            public void onMetricRemoved(MetricName name) {
+            }
+        }, 2);
+        try {
+            final Thread creator = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10; i++) {
+                        blocked.onMetricAdded(new MetricName("group", "type", "counter" + i), new CounterMetric());
+                    }
+                }
+            };
+            creator.start();
+            creator.join(100);
+
+            assertThat("the creator is waiting for room",
+                       creator.isAlive(),
+                       is(true));
+
+            release.countDown();
+            creator.join();
+            blocked.flush();
+
+            assertThat("no event was dropped",
+                       delegate.events.size(),
+                       is(10));
+        } finally {
+            blocked.shutdown();
+        }
+    }
+
+    @Test
+    public void dropsEventsAfterShutdown() throws Exception {
+        listener.shutdown();
+        listener.onMetricAdded(new MetricName("group", "type", "counter"), new CounterMetric());
+        listener.flush();
+
+        assertThat("nothing was delivered",
+                   delegate.events.isEmpty(),
+                   is(true));
+
+        assertThat("the event is counted as dropped",
+                   listener.getEventsDropped(),
+                   is(1L));
+    }
+
+    @Test
+    public void startsItsThreadOnTheFirstEvent() throws Exception {
+        final int before = listenerThreads();
+        final AsyncMetricsRegistryListener unused = new AsyncMetricsRegistryListener(delegate);
+        try {
+            assertThat("no thread is started for a listener without events",
+                       listenerThreads(),
+                       is(before));
+
+            unused.onMetricAdded(new MetricName("group", "type", "counter"), new CounterMetric());
+            unused.flush();
+
+            assertThat("a thread is started for the first event",
+                       listenerThreads(),
+                       is(before + 1));
+        } finally {
+            unused.shutdown();
+        }
+
+        assertThat("the thread is stopped on shutdown",
+                   listenerThreads(),
+                   is(before));
+    }
+
+    @Test
+    public void countsEventsTheDelegateFailsToHandle() throws Exception {
+        final AsyncMetricsRegistryListener failing = new AsyncMetricsRegistryListener(new MetricsRegistryListener() {
+            @Override
+            public void onMetricAdded(MetricName name, Metric metric) {
+                throw new IllegalStateException("boom");
+            }
+
+            @Override
+            public void onMetricRemoved(MetricName name) {
+                delegate.onMetricRemoved(name);
+            }
+        });
+        try {
+            failing.onMetricAdded(new MetricName("group", "type", "counter"), new CounterMetric());
+            failing.onMetricRemoved(new MetricName("group", "type", "counter"));
+            failing.flush();
+
+            assertThat("the failed event is counted",
+                       failing.getEventsFailed(),
+                       is(1L));
+
+            assertThat("later events are still delivered",
+                       delegate.events,
+                       is(Arrays.asList("removed counter")));
+        } finally {
+            failing.shutdown();
+        }
+    }
+
+    private static int listenerThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("metrics-listener-thread-") && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
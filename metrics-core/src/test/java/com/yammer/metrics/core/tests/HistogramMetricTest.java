@@ -98,4 +98,29 @@ public class HistogramMetricTest {
                    is(10000));
     }
 
+    @Test
+    public void aLogLinearHistogramOf100000Elements() throws Exception {
+        final HistogramMetric histogram = new HistogramMetric(HistogramMetric.SampleType.LOG_LINEAR);
+        for (int i = 1; i <= 100000; i++) {
+            histogram.update(i);
+        }
+
+        assertThat("the histogram has a count of 100000",
+                   histogram.count(),
+                   is(100000L));
+
+        final double[] percentiles = histogram.percentiles(0.5, 0.99, 0.999);
+
+        assertThat("the histogram has a median within 1% of 50000",
+                   percentiles[0],
+                   is(closeTo(50000, 500)));
+
+        assertThat("the histogram has a 99th percentile within 1% of 99000",
+                   percentiles[1],
+                   is(closeTo(99000, 990)));
+
+        assertThat("the histogram has a 99.9th percentile within 1% of 99900",
+                   percentiles[2],
+                   is(closeTo(99900, 999)));
+    }
 }
@@ -0,0 +1,144 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.HistogramMetric.SampleType;
+import com.yammer.metrics.core.IntervalHistogramMetric;
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class IntervalHistogramMetricTest {
+    final IntervalHistogramMetric histogram = new IntervalHistogramMetric(SampleType.UNIFORM);
+
+    @Test
+    public void anEmptyInterval() throws Exception {
+        final Snapshot snapshot = histogram.getIntervalSnapshot();
+
+        assertThat("the interval has a count of zero",
+                   snapshot.count(),
+                   is(0L));
+
+        assertThat("the interval has a max of zero",
+                   snapshot.max(),
+                   is(0.0));
+    }
+
+    @Test
+    public void eachIntervalHasOnlyItsOwnValues() throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        final Snapshot first = histogram.getIntervalSnapshot();
+
+        for (int i = 1000; i <= 1009; i++) {
+            histogram.update(i);
+        }
+        final Snapshot second = histogram.getIntervalSnapshot();
+
+        assertThat("the first interval has a count of 100",
+                   first.count(),
+                   is(100L));
+
+        assertThat("the first interval has a max of 100",
+                   first.max(),
+                   is(100.0));
+
+        assertThat("the second interval has a count of 10",
+                   second.count(),
+                   is(10L));
+
+        assertThat("the second interval has a min of 1000",
+                   second.min(),
+                   is(1000.0));
+
+        assertThat("the next interval is empty",
+                   histogram.getIntervalSnapshot().count(),
+                   is(0L));
+    }
+
+    @Test
+    public void clearingDropsTheCurrentInterval() throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        histogram.clear();
+        histogram.update(7);
+
+        final Snapshot interval = histogram.getIntervalSnapshot();
+
+        assertThat("the interval has only the value recorded since the clear",
+                   interval.count(),
+                   is(1L));
+
+        assertThat("the interval has only the value recorded since the clear",
+                   interval.max(),
+                   is(7.0));
+
+        assertThat("the cumulative statistics are cleared too",
+                   histogram.count(),
+                   is(1L));
+    }
+
+    @Test
+    public void keepsCumulativeStatistics() throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            histogram.update(i);
+        }
+        histogram.getIntervalSnapshot();
+        histogram.update(1000);
+
+        assertThat("the histogram has a count of 101",
+                   histogram.count(),
+                   is(101L));
+
+        assertThat("the histogram has a min of 1",
+                   histogram.min(),
+                   is(1.0));
+
+        assertThat("the histogram has a max of 1000",
+                   histogram.max(),
+                   is(1000.0));
+    }
+
+    @Test
+    public void intervalsAddUpUnderConcurrentUpdates() throws Exception {
+        final int threads = 4;
+        final int updates = 100000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicBoolean failed = new AtomicBoolean();
+        for (int t = 0; t < threads; t++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < updates; i++) {
+                            histogram.update(i);
+                        }
+                    } catch (RuntimeException e) {
+                        failed.set(true);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        long total = 0;
+        while (done.getCount() > 0) {
+            total += histogram.getIntervalSnapshot().count();
+        }
+        total += histogram.getIntervalSnapshot().count();
+
+        assertThat("no writer failed",
+                   failed.get(),
+                   is(false));
+
+        assertThat("every value was reported in exactly one interval",
+                   total,
+                   is((long) threads * updates));
+    }
+}
@@ -0,0 +1,43 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.MeterMetric;
+import com.yammer.metrics.core.MeterTicker;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MeterTickerTest {
+    final MeterTicker ticker = new MeterTicker();
+
+    @Test
+    public void tracksItsMeters() throws Exception {
+        MeterMetric.newMeter(ticker, "thangs", TimeUnit.SECONDS);
+        MeterMetric.newMeter(ticker, "thangs", TimeUnit.SECONDS);
+
+        assertThat("the ticker has two meters",
+                   ticker.size(),
+                   is(2));
+    }
+
+    @Test
+    public void ticksEveryMeter() throws Exception {
+        final MeterMetric first = MeterMetric.newMeter(ticker, "thangs", TimeUnit.SECONDS);
+        final MeterMetric second = MeterMetric.newMeter(ticker, "thangs", TimeUnit.SECONDS);
+        first.mark(3);
+        second.mark(6);
+
+        ticker.run();
+
+        assertThat("the first meter's one-minute rate is 0.6 events/sec",
+                   first.oneMinuteRate(),
+                   is(closeTo(0.6, 0.001)));
+
+        assertThat("the second meter's one-minute rate is 1.2 events/sec",
+                   second.oneMinuteRate(),
+                   is(closeTo(1.2, 0.001)));
+    }
+}
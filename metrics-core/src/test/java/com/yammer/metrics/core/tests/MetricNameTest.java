@@ -0,0 +1,111 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricTags;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MetricNameTest {
+    private static class Outer$ {
+    }
+
+    @Test
+    public void takesItsGroupAndTypeFromTheClass() throws Exception {
+        final MetricName name = new MetricName(MetricNameTest.class, "name", "scope");
+
+        assertThat("the group is the class's package",
+                   name.getGroup(),
+                   is("com.yammer.metrics.core.tests"));
+
+        assertThat("the type is the class's simple name",
+                   name.getType(),
+                   is("MetricNameTest"));
+
+        assertThat("the mbean name includes the scope and name",
+                   name.getMBeanName(),
+                   is("com.yammer.metrics.core.tests:type=MetricNameTest,scope=scope,name=name"));
+    }
+
+    @Test
+    public void stripsATrailingDollarFromTheType() throws Exception {
+        final MetricName first = new MetricName(Outer$.class, "name");
+        final MetricName second = new MetricName(Outer$.class, "other");
+
+        assertThat("the type has no trailing dollar",
+                   first.getType(),
+                   is("Outer"));
+
+        assertThat("the type is the same the second time around",
+                   second.getType(),
+                   is("Outer"));
+    }
+
+    @Test
+    public void isEqualToANameWithTheSameMBeanName() throws Exception {
+        final MetricName name = new MetricName(MetricNameTest.class, "name");
+        final MetricName same = new MetricName("com.yammer.metrics.core.tests", "MetricNameTest", "name");
+
+        assertThat("the names are equal",
+                   name,
+                   is(equalTo(same)));
+
+        assertThat("the names have the same hash code",
+                   name.hashCode(),
+                   is(same.hashCode()));
+
+        assertThat("a name with another scope is not equal",
+                   name,
+                   is(not(equalTo(new MetricName(MetricNameTest.class, "name", "scope")))));
+
+        assertThat("a name is not equal to a string",
+                   name.equals("name"),
+                   is(false));
+    }
+
+    @Test
+    public void usesAnExplicitMBeanName() throws Exception {
+        final MetricName name = new MetricName("group", "type", "name", null, "custom:type=thing");
+
+        assertThat("the explicit mbean name is used",
+                   name.getMBeanName(),
+                   is("custom:type=thing"));
+
+        assertThat("the explicit mbean name is used for equality",
+                   name,
+                   is(equalTo(new MetricName("other", "type", "name", null, "custom:type=thing"))));
+    }
+
+    @Test
+    public void includesTagsInTheMBeanName() throws Exception {
+        final MetricName name = new MetricName("group", "type", "requests", null,
+                                               MetricTags.of("endpoint", "/search", "query", "a,b"));
+
+        assertThat("the tags are properties of the mbean name",
+                   name.getMBeanName(),
+                   is("group:type=type,name=requests,endpoint=/search,query=\"a,b\""));
+
+        assertThat("the name has tags",
+                   name.hasTags(),
+                   is(true));
+    }
+
+    @Test
+    public void namesWithDifferentTagsAreDifferent() throws Exception {
+        final MetricName search = new MetricName(MetricNameTest.class, "requests", null, MetricTags.of("endpoint", "/search"));
+        final MetricName browse = new MetricName(MetricNameTest.class, "requests", null, MetricTags.of("endpoint", "/browse"));
+
+        assertThat("the names are not equal",
+                   search,
+                   is(not(equalTo(browse))));
+
+        assertThat("an untagged name is not equal to a tagged one",
+                   new MetricName(MetricNameTest.class, "requests"),
+                   is(not(equalTo(search))));
+
+        assertThat("names with the same tags are equal",
+                   search,
+                   is(equalTo(new MetricName(MetricNameTest.class, "requests", null, MetricTags.of("endpoint", "/search")))));
+    }
+}
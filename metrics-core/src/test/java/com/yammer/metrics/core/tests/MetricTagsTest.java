@@ -0,0 +1,86 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.MetricTags;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MetricTagsTest {
+    @Test
+    public void sortsTagsByKey() throws Exception {
+        final MetricTags tags = MetricTags.of("status", "200", "endpoint", "/search");
+
+        assertThat("the first tag is the endpoint",
+                   tags.key(0),
+                   is("endpoint"));
+
+        assertThat("the second tag is the status",
+                   tags.value(1),
+                   is("200"));
+
+        assertThat("the tags render in key order",
+                   tags.toString(),
+                   is("{endpoint=/search,status=200}"));
+    }
+
+    @Test
+    public void isEqualRegardlessOfOrder() throws Exception {
+        final Map<String, String> map = new HashMap<String, String>();
+        map.put("status", "200");
+        map.put("endpoint", "/search");
+
+        final MetricTags tags = MetricTags.of("endpoint", "/search", "status", "200");
+
+        assertThat("the tag sets are equal",
+                   MetricTags.of(map),
+                   is(equalTo(tags)));
+
+        assertThat("the tag sets have the same hash code",
+                   MetricTags.of(map).hashCode(),
+                   is(tags.hashCode()));
+
+        assertThat("a tag set with another value is not equal",
+                   tags.with("status", "500"),
+                   is(not(equalTo(tags))));
+    }
+
+    @Test
+    public void looksUpTagsByKey() throws Exception {
+        final MetricTags tags = MetricTags.of("endpoint", "/search", "status", "200");
+
+        assertThat("the status is found",
+                   tags.get("status"),
+                   is("200"));
+
+        assertThat("a missing key has no value",
+                   tags.get("tenant"),
+                   is(nullValue()));
+
+        assertThat("the tags include a subset of themselves",
+                   tags.containsAll(MetricTags.of("status", "200")),
+                   is(true));
+
+        assertThat("the tags don't include another value",
+                   tags.containsAll(MetricTags.of("status", "500")),
+                   is(false));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsDuplicateKeys() throws Exception {
+        MetricTags.of("status", "200", "status", "500");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsReservedKeys() throws Exception {
+        MetricTags.of("type", "timer");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeysWhichWouldBreakMBeanNames() throws Exception {
+        MetricTags.of("a,b", "c");
+    }
+}
@@ -0,0 +1,372 @@
+package com.yammer.metrics.core.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.CounterMetric;
+import com.yammer.metrics.core.GaugeMetric;
+import com.yammer.metrics.core.HistogramMetric;
+import com.yammer.metrics.core.MeterMetric;
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricTags;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.core.MetricsRegistryListener;
+import com.yammer.metrics.core.TimerMetric;
+import com.yammer.metrics.stats.SlidingTimeWindowSample;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class MetricsRegistryTest {
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long tick() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
+    final ManualClock clock = new ManualClock();
+    final MetricsRegistry registry = new MetricsRegistry(MetricsRegistry.TickMode.SHARED, clock);
+
+    @After
+    public void tearDown() throws Exception {
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void returnsTheExistingMetric() throws Exception {
+        final CounterMetric counter = registry.newCounter(MetricsRegistryTest.class, "counter", "scope");
+
+        assertThat("the same counter is returned for the same class, name, and scope",
+                   registry.newCounter(MetricsRegistryTest.class, "counter", "scope"),
+                   is(sameInstance(counter)));
+
+        assertThat("the same counter is returned for an equal metric name",
+                   registry.newCounter(new MetricName(MetricsRegistryTest.class, "counter", "scope")),
+                   is(sameInstance(counter)));
+
+        assertThat("another scope gets another counter",
+                   registry.newCounter(MetricsRegistryTest.class, "counter", "other"),
+                   is(not(sameInstance(counter))));
+
+        assertThat("no scope gets another counter",
+                   registry.newCounter(MetricsRegistryTest.class, "counter"),
+                   is(not(sameInstance(counter))));
+    }
+
+    @Test
+    public void createsAHistogramWithTheGivenSample() throws Exception {
+        final SlidingTimeWindowSample sample = new SlidingTimeWindowSample(10, 1, TimeUnit.SECONDS, 16, clock);
+        final HistogramMetric histogram = registry.newHistogram(new MetricName("group", "type", "latency"), sample);
+        histogram.update(5);
+        clock.advance(10, TimeUnit.SECONDS);
+        histogram.update(7);
+
+        assertThat("the histogram keeps values in the given window",
+                   histogram.snapshot().values(),
+                   is(new long[]{7}));
+
+        assertThat("the existing histogram is returned for the same name",
+                   registry.newHistogram(new MetricName("group", "type", "latency"),
+                                         new SlidingTimeWindowSample(60, 5, TimeUnit.SECONDS, 16)),
+                   is(sameInstance(histogram)));
+    }
+
+    @Test
+    public void ticksLazyMetersOnTheRegistrysClock() throws Exception {
+        final MetricsRegistry lazy = new MetricsRegistry(MetricsRegistry.TickMode.LAZY, clock);
+        final MeterMetric meter = lazy.newMeter(new MetricName("group", "type", "meter"), "events", TimeUnit.SECONDS);
+        final TimerMetric timer = lazy.newTimer(new MetricName("group", "type", "timer"),
+                                                TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+        meter.mark(3);
+        timer.update(1, TimeUnit.MILLISECONDS);
+        timer.update(1, TimeUnit.MILLISECONDS);
+        timer.update(1, TimeUnit.MILLISECONDS);
+        clock.advance(5, TimeUnit.SECONDS);
+
+        assertThat("the meter's rate ticks on the registry's clock",
+                   meter.oneMinuteRate(),
+                   is(closeTo(0.6, 0.000001)));
+
+        assertThat("the timer's rate ticks on the same clock",
+                   timer.oneMinuteRate(),
+                   is(meter.oneMinuteRate()));
+    }
+
+    @Test
+    public void createsANewMetricOnceTheOldOneIsRemoved() throws Exception {
+        final CounterMetric counter = registry.newCounter(MetricsRegistryTest.class, "counter");
+        registry.removeMetric(new MetricName(MetricsRegistryTest.class, "counter"));
+
+        final CounterMetric replacement = registry.newCounter(MetricsRegistryTest.class, "counter");
+
+        assertThat("a new counter is created",
+                   replacement,
+                   is(not(sameInstance(counter))));
+
+        assertThat("the new counter is registered",
+                   registry.allMetrics().get(new MetricName(MetricsRegistryTest.class, "counter")),
+                   is(sameInstance((Object) replacement)));
+    }
+
+    @Test
+    public void usesOverriddenNames() throws Exception {
+        final MetricsRegistry custom = new MetricsRegistry() {
+            @Override
+            public MetricName createName(Class<?> klass, String name, String scope) {
+                return new MetricName("custom", "type", name, scope);
+            }
+        };
+
+        custom.newCounter(MetricsRegistryTest.class, "counter");
+
+        assertThat("the counter is registered under the overridden name",
+                   custom.allMetrics().containsKey(new MetricName("custom", "type", "counter")),
+                   is(true));
+    }
+
+    @Test
+    public void findsMetricsByTag() throws Exception {
+        final CounterMetric searchOk = registry.newCounter(tagged("endpoint", "/search", "status", "200"));
+        final CounterMetric searchError = registry.newCounter(tagged("endpoint", "/search", "status", "500"));
+        final CounterMetric browseOk = registry.newCounter(tagged("endpoint", "/browse", "status", "200"));
+        registry.newCounter(MetricsRegistryTest.class, "requests");
+
+        final Map<MetricName, Metric> search = registry.taggedMetrics("endpoint", "/search");
+
+        assertThat("both search counters are found",
+                   search.size(),
+                   is(2));
+
+        assertThat("the successful search counter is found",
+                   search.get(tagged("endpoint", "/search", "status", "200")),
+                   is(sameInstance((Object) searchOk)));
+
+        assertThat("the failed search counter is found",
+                   search.get(tagged("endpoint", "/search", "status", "500")),
+                   is(sameInstance((Object) searchError)));
+
+        final Map<MetricName, Metric> ok = registry.taggedMetrics(MetricTags.of("endpoint", "/browse", "status", "200"));
+
+        assertThat("only the successful browse counter has both tags",
+                   ok.size(),
+                   is(1));
+
+        assertThat("the successful browse counter is found",
+                   ok.get(tagged("endpoint", "/browse", "status", "200")),
+                   is(sameInstance((Object) browseOk)));
+
+        assertThat("nothing has an unknown tag",
+                   registry.taggedMetrics("tenant", "acme").isEmpty(),
+                   is(true));
+    }
+
+    @Test
+    public void forgetsTheTagsOfRemovedMetrics() throws Exception {
+        registry.newCounter(tagged("endpoint", "/search", "status", "200"));
+        registry.removeMetric(tagged("endpoint", "/search", "status", "200"));
+
+        assertThat("the removed counter is not found",
+                   registry.taggedMetrics("endpoint", "/search").isEmpty(),
+                   is(true));
+    }
+
+    @Test
+    public void indexesATagAgainAfterEveryMetricWithItWasRemoved() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            registry.newCounter(tagged("connection", Integer.toString(i)));
+            registry.removeMetric(tagged("connection", Integer.toString(i)));
+        }
+        final CounterMetric counter = registry.newCounter(tagged("connection", "7"));
+
+        assertThat("the re-added counter is found by its tag",
+                   registry.taggedMetrics("connection", "7").values(),
+                   hasItems((Metric) counter));
+
+        assertThat("the removed counters are not found",
+                   registry.taggedMetrics("connection", "8").isEmpty(),
+                   is(true));
+    }
+
+    @Test
+    public void collapsesNewMetricsIntoAnOverflowMetricOnceFull() throws Exception {
+        registry.setMaxMetrics(10);
+        for (int i = 0; i < 10; i++) {
+            registry.newTimer(MetricsRegistryTest.class, "timer" + i);
+        }
+
+        final TimerMetric first = registry.newTimer(MetricsRegistryTest.class, "crawler1");
+        final TimerMetric second = registry.newTimer(new MetricName("com.example.other", "Type", "crawler2"), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+
+        assertThat("new timers share one overflow timer",
+                   second,
+                   is(sameInstance(first)));
+
+        assertThat("existing timers are still found",
+                   registry.allMetrics().get(new MetricName(MetricsRegistryTest.class, "timer3")),
+                   is(sameInstance((Object) registry.newTimer(MetricsRegistryTest.class, "timer3"))));
+
+        assertThat("the rejected registrations are counted",
+                   registry.rejectedRegistrations(),
+                   is(2L));
+
+        assertThat("the registry holds the timers, the overflow timer and the rejection counter",
+                   registry.allMetrics().size(),
+                   is(12));
+    }
+
+    @Test
+    public void staysBoundedWhateverTheNames() throws Exception {
+        registry.setMaxMetrics(100);
+        registry.setMaxMetricsPerGroup(10);
+        for (int i = 0; i < 10000; i++) {
+            registry.newTimer(new MetricName("group" + (i % 50), "Type", "timer" + i), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+            registry.newCounter(new MetricName("group" + i, "Type", "counter" + i));
+        }
+
+        assertThat("the registry stays near its limit",
+                   registry.allMetrics().size(),
+                   is(lessThan(150)));
+    }
+
+    @Test
+    public void collapsesNewMetricsInAFullGroup() throws Exception {
+        registry.setMaxMetricsPerGroup(2);
+        registry.newCounter(new MetricName("com.example", "Type", "a"));
+        registry.newCounter(new MetricName("com.example", "Type", "b"));
+
+        final CounterMetric overflow = registry.newCounter(new MetricName("com.example", "Type", "c"));
+
+        assertThat("the group's overflow counter is registered",
+                   registry.allMetrics().get(new MetricName("com.example", "overflow", "counters")),
+                   is(sameInstance((Object) overflow)));
+
+        assertThat("another group isn't affected",
+                   registry.newCounter(new MetricName("com.example.other", "Type", "c")),
+                   is(not(sameInstance(overflow))));
+    }
+
+    @Test
+    public void doesNotRegisterGaugesOnceFull() throws Exception {
+        registry.setMaxMetrics(0);
+        final GaugeMetric<Integer> gauge = new GaugeMetric<Integer>() {
+            @Override
+            public Integer value() {
+                return 1;
+            }
+        };
+
+        assertThat("the gauge is returned",
+                   registry.newGauge(MetricsRegistryTest.class, "gauge", gauge),
+                   is(sameInstance(gauge)));
+
+        assertThat("the gauge isn't registered",
+                   registry.allMetrics().containsKey(new MetricName(MetricsRegistryTest.class, "gauge")),
+                   is(false));
+    }
+
+    @Test
+    public void makesRoomWhenMetricsAreRemoved() throws Exception {
+        registry.setMaxMetricsPerGroup(1);
+        final CounterMetric a = registry.newCounter(new MetricName("com.example", "Type", "a"));
+        registry.removeMetric(new MetricName("com.example", "Type", "a"));
+        final CounterMetric b = registry.newCounter(new MetricName("com.example", "Type", "b"));
+
+        assertThat("the new counter is registered",
+                   registry.allMetrics().get(new MetricName("com.example", "Type", "b")),
+                   is(sameInstance((Object) b)));
+
+        assertThat("nothing was rejected",
+                   registry.rejectedRegistrations(),
+                   is(0L));
+
+        assertThat("the counters are distinct",
+                   b,
+                   is(not(sameInstance(a))));
+    }
+
+    @Test
+    public void expiresIdleMetrics() throws Exception {
+        final List<MetricName> removed = new ArrayList<MetricName>();
+        registry.addListener(new MetricsRegistryListener() {
+            @Override
+            public void onMetricAdded(MetricName name, Metric metric) {
+            }
+
+            @Override
+            public void onMetricRemoved(MetricName name) {
+                removed.add(name);
+            }
+        });
+        registry.setTimeToIdle(1, TimeUnit.MINUTES);
+        final CounterMetric busy = registry.newCounter(MetricsRegistryTest.class, "busy");
+        final TimerMetric idle = registry.newTimer(MetricsRegistryTest.class, "idle");
+        idle.update(1, TimeUnit.MILLISECONDS);
+
+        registry.expireIdleMetrics();
+        clock.advance(30, TimeUnit.SECONDS);
+        busy.inc();
+        registry.expireIdleMetrics();
+        clock.advance(30, TimeUnit.SECONDS);
+        busy.inc();
+        registry.expireIdleMetrics();
+
+        assertThat("the idle timer was removed",
+                   removed,
+                   is(Arrays.asList(new MetricName(MetricsRegistryTest.class, "idle"))));
+
+        assertThat("the busy counter is still registered",
+                   registry.newCounter(MetricsRegistryTest.class, "busy"),
+                   is(sameInstance(busy)));
+
+        assertThat("asking for the idle timer again creates a new one",
+                   registry.newTimer(MetricsRegistryTest.class, "idle"),
+                   is(not(sameInstance(idle))));
+    }
+
+    @Test
+    public void keepsGaugesAndEverythingElseWhenExpiryIsOff() throws Exception {
+        registry.newCounter(MetricsRegistryTest.class, "counter");
+        registry.newGauge(MetricsRegistryTest.class, "gauge", new GaugeMetric<Integer>() {
+            @Override
+            public Integer value() {
+                return 1;
+            }
+        });
+
+        registry.expireIdleMetrics();
+        clock.advance(1, TimeUnit.DAYS);
+        registry.expireIdleMetrics();
+
+        assertThat("nothing is removed without a time to idle",
+                   registry.allMetrics().size(),
+                   is(2));
+
+        registry.setTimeToIdle(1, TimeUnit.MINUTES);
+        registry.expireIdleMetrics();
+        clock.advance(1, TimeUnit.DAYS);
+        registry.expireIdleMetrics();
+
+        assertThat("only the gauge is left",
+                   registry.allMetrics().keySet(),
+                   is(Collections.singleton(new MetricName(MetricsRegistryTest.class, "gauge"))));
+    }
+
+    private static MetricName tagged(String... tags) {
+        return new MetricName(MetricsRegistryTest.class, "requests", null, MetricTags.of(tags));
+    }
+}
@@ -1,5 +1,7 @@
 package com.yammer.metrics.core.tests;
 
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.core.HistogramMetric;
 import com.yammer.metrics.core.TimerContext;
 import com.yammer.metrics.core.TimerMetric;
 import org.junit.After;
@@ -16,6 +18,19 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
 public class TimerMetricTest {
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long tick() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
     final ScheduledExecutorService pool = Executors.newSingleThreadScheduledExecutor();
     final TimerMetric timer = new TimerMetric(pool, TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
 
@@ -181,4 +196,57 @@ public class TimerMetricTest {
                    timer.max(),
                    is(closeTo(50, 5)));
     }
+
+    @Test
+    public void timingWithStartTicks() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final TimerMetric timer = new TimerMetric(pool, TimeUnit.MILLISECONDS, TimeUnit.SECONDS, clock);
+
+        final long startTick = timer.start();
+        clock.advance(50, TimeUnit.MILLISECONDS);
+        timer.stop(startTick);
+
+        assertThat("records the duration on the timer's clock",
+                   timer.max(),
+                   is(closeTo(50, 0.001)));
+
+        assertThat("records one duration",
+                   timer.count(),
+                   is(1L));
+    }
+
+    @Test
+    public void timingContextsOnTheTimersClock() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final TimerMetric timer = new TimerMetric(pool, TimeUnit.MILLISECONDS, TimeUnit.SECONDS, clock);
+
+        final TimerContext context = timer.time();
+        clock.advance(20, TimeUnit.MILLISECONDS);
+        context.stop();
+
+        assertThat("records the duration on the timer's clock",
+                   timer.max(),
+                   is(closeTo(20, 0.001)));
+    }
+
+    @Test
+    public void aLazyTimerTicksItsRatesOnItsClock() throws Exception {
+        final ManualClock clock = new ManualClock();
+        final TimerMetric lazy = TimerMetric.newLazyTimer(TimeUnit.MILLISECONDS, TimeUnit.SECONDS, clock,
+                                                          HistogramMetric.SampleType.UNIFORM);
+        lazy.update(10, TimeUnit.MILLISECONDS);
+        lazy.update(10, TimeUnit.MILLISECONDS);
+        lazy.update(10, TimeUnit.MILLISECONDS);
+        clock.advance(5, TimeUnit.SECONDS);
+
+        assertThat("the one-minute rate is 0.6 calls/sec after the first tick",
+                   lazy.oneMinuteRate(),
+                   is(closeTo(0.6, 0.000001)));
+
+        clock.advance(1, TimeUnit.MINUTES);
+
+        assertThat("the one-minute rate decays as the timer's clock advances",
+                   lazy.oneMinuteRate(),
+                   is(closeTo(0.22072766, 0.000001)));
+    }
 }
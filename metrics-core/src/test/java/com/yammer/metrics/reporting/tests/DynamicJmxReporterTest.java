@@ -0,0 +1,109 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.reporting.DynamicJmxReporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.management.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class DynamicJmxReporterTest {
+    final MetricsRegistry registry = new MetricsRegistry();
+    final MBeanServer server = MBeanServerFactory.newMBeanServer();
+    final DynamicJmxReporter reporter = new DynamicJmxReporter(registry, server);
+
+    @Before
+    public void setUp() throws Exception {
+        reporter.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void registersOneBeanPerGroup() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            registry.newCounter(new MetricName("com.example", "Requests", "counter" + i));
+        }
+        registry.newTimer(new MetricName("com.example", "Latency", "timer"), TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+
+        assertThat("there is one bean for each group and type",
+                   reporter.size(),
+                   is(2));
+
+        assertThat("the requests bean is registered",
+                   server.isRegistered(new ObjectName("com.example:type=Requests")),
+                   is(true));
+    }
+
+    @Test
+    public void readsAttributesFromTheMetrics() throws Exception {
+        registry.newCounter(new MetricName("com.example", "Requests", "counter")).inc(3);
+        final TimerMetric timer = registry.newTimer(new MetricName("com.example", "Requests", "timer"),
+                                                    TimeUnit.MILLISECONDS, TimeUnit.SECONDS);
+        for (int i = 1; i <= 100; i++) {
+            timer.update(i, TimeUnit.MILLISECONDS);
+        }
+        final ObjectName name = new ObjectName("com.example:type=Requests");
+
+        assertThat("the counter's count is read",
+                   server.getAttribute(name, "counter.Count"),
+                   is((Object) 3L));
+
+        assertThat("the timer's max is read",
+                   server.getAttribute(name, "timer.Max"),
+                   is((Object) 100.0));
+
+        assertThat("the timer's latency unit is read",
+                   server.getAttribute(name, "timer.LatencyUnit"),
+                   is((Object) "MILLISECONDS"));
+
+        final AttributeList attributes = server.getAttributes(name, new String[]{"timer.Count", "timer.Min", "missing.Count"});
+
+        assertThat("the known attributes are read in bulk",
+                   attributes.size(),
+                   is(2));
+    }
+
+    @Test
+    public void describesEveryAttribute() throws Exception {
+        registry.newCounter(new MetricName("com.example", "Requests", "counter"));
+        registry.newCounter(new MetricName("com.example", "Requests", "requests", null, MetricTags.of("endpoint", "/search")));
+
+        final List<String> names = new ArrayList<String>();
+        for (MBeanAttributeInfo info : server.getMBeanInfo(new ObjectName("com.example:type=Requests")).getAttributes()) {
+            names.add(info.getName());
+        }
+
+        assertThat("the bean describes each metric's attributes",
+                   names,
+                   hasItems("counter.Count", "requests{endpoint=/search}.Count"));
+    }
+
+    @Test(expected = AttributeNotFoundException.class)
+    public void rejectsUnknownAttributes() throws Exception {
+        registry.newCounter(new MetricName("com.example", "Requests", "counter"));
+
+        server.getAttribute(new ObjectName("com.example:type=Requests"), "counter.Max");
+    }
+
+    @Test
+    public void unregistersEmptyGroups() throws Exception {
+        registry.newCounter(new MetricName("com.example", "Requests", "counter"));
+        registry.removeMetric(new MetricName("com.example", "Requests", "counter"));
+
+        assertThat("the bean is unregistered",
+                   server.isRegistered(new ObjectName("com.example:type=Requests")),
+                   is(false));
+    }
+}
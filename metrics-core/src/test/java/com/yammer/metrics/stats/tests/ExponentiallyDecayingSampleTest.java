@@ -84,4 +84,50 @@ public class ExponentiallyDecayingSampleTest {
                        )));
         }
     }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void newerValuesDisplaceOlderOnes() throws Exception {
+        final ExponentiallyDecayingSample sample = new ExponentiallyDecayingSample(100, 0.015);
+        final long now = System.currentTimeMillis() / 1000;
+        for (int i = 0; i < 1000; i++) {
+            sample.update(1000 + i, now - 3600);
+        }
+        for (int i = 0; i < 1000; i++) {
+            sample.update(2000 + i, now);
+        }
+
+        assertThat("the sample has a size of 100",
+                   sample.size(),
+                   is(100));
+
+        for (Long i : sample.values()) {
+            assertThat("the sample only contains the newer elements",
+                       i,
+                       is(allOf(
+                               lessThan(3000L),
+                               greaterThanOrEqualTo(2000L)
+                       )));
+        }
+    }
+
+    @Test
+    public void snapshotValuesMatchTheBoxedValues() throws Exception {
+        final ExponentiallyDecayingSample sample = new ExponentiallyDecayingSample(100, 0.99);
+        for (int i = 0; i < 1000; i++) {
+            sample.update(i);
+        }
+
+        final long[] values = sample.snapshotValues();
+
+        assertThat("the snapshot has 100 elements",
+                   values.length,
+                   is(100));
+
+        for (int i = 0; i < values.length; i++) {
+            assertThat("the snapshot matches the boxed values",
+                       values[i],
+                       is(sample.values().get(i)));
+        }
+    }
 }
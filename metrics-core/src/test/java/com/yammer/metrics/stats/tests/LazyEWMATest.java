@@ -0,0 +1,109 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.stats.EWMA;
+import com.yammer.metrics.stats.LazyEWMA;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LazyEWMATest {
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long tick() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
+    final ManualClock clock = new ManualClock();
+
+    @Test
+    public void aOneMinuteEWMAWithAValueOfThree() throws Exception {
+        final EWMA ewma = LazyEWMA.oneMinuteEWMA(clock);
+        ewma.update(3);
+        clock.advance(5, TimeUnit.SECONDS);
+
+        assertThat("the EWMA has a rate of 0.6 events/sec after the first tick",
+                   ewma.rate(TimeUnit.SECONDS),
+                   is(closeTo(0.6, 0.000001)));
+
+        clock.advance(1, TimeUnit.MINUTES);
+
+        assertThat("the EWMA has a rate of 0.22072766 events/sec after 1 minute",
+                   ewma.rate(TimeUnit.SECONDS),
+                   is(closeTo(0.22072766, 0.000001)));
+
+        clock.advance(5, TimeUnit.MINUTES);
+
+        assertThat("the EWMA has a rate of 0.00148725 events/sec after 6 minutes",
+                   ewma.rate(TimeUnit.SECONDS),
+                   is(closeTo(0.00148725, 0.000001)));
+    }
+
+    @Test
+    public void aFifteenMinuteEWMAWithAValueOfThree() throws Exception {
+        final EWMA ewma = LazyEWMA.fifteenMinuteEWMA(clock);
+        ewma.update(3);
+        clock.advance(5, TimeUnit.SECONDS);
+
+        assertThat("the EWMA has a rate of 0.6 events/sec after the first tick",
+                   ewma.rate(TimeUnit.SECONDS),
+                   is(closeTo(0.6, 0.000001)));
+
+        clock.advance(15, TimeUnit.MINUTES);
+
+        assertThat("the EWMA has a rate of 0.22072766 events/sec after 15 minutes",
+                   ewma.rate(TimeUnit.SECONDS),
+                   is(closeTo(0.22072766, 0.000001)));
+    }
+
+    @Test
+    public void tickingSeveralIntervalsAtOnceMatchesTickingEachOne() throws Exception {
+        final EWMA stepped = EWMA.fiveMinuteEWMA();
+        final EWMA jumped = EWMA.fiveMinuteEWMA();
+        stepped.update(100);
+        jumped.update(100);
+
+        for (int i = 0; i < 37; i++) {
+            stepped.tick();
+        }
+        jumped.tick(37);
+
+        assertThat("the rates are the same",
+                   jumped.rate(TimeUnit.SECONDS),
+                   is(closeTo(stepped.rate(TimeUnit.SECONDS), 0.000001)));
+    }
+
+    @Test
+    public void matchesAnEWMATickedOnSchedule() throws Exception {
+        final EWMA scheduled = EWMA.oneMinuteEWMA();
+        final EWMA lazy = LazyEWMA.oneMinuteEWMA(clock);
+
+        // one second at a time for ten minutes, with bursts and idle stretches
+        for (int second = 1; second <= 600; second++) {
+            clock.advance(1, TimeUnit.SECONDS);
+            if (second % 5 == 0) {
+                scheduled.tick();
+            }
+            final long events = (second / 60) % 3 == 0 ? second % 7 : 0;
+            scheduled.update(events);
+            lazy.update(events);
+
+            if (second % 5 == 0) {
+                assertThat("the rates are the same after " + second + " seconds",
+                           lazy.rate(TimeUnit.SECONDS),
+                           is(closeTo(scheduled.rate(TimeUnit.SECONDS), 0.000001)));
+            }
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.LogLinearSample;
+import com.yammer.metrics.stats.StripedStatistics;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class LogLinearSampleTest {
+    @Test
+    public void anEmptySample() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+
+        assertThat("the sample has a size of 0",
+                   sample.size(),
+                   is(0));
+
+        assertThat("the sample has no values",
+                   sample.values().isEmpty(),
+                   is(true));
+
+        final double[] percentiles = sample.percentiles(0.5, 0.99);
+        assertThat("the percentiles are zero",
+                   percentiles[0],
+                   is(0.0));
+
+        assertThat("the percentiles are zero",
+                   percentiles[1],
+                   is(0.0));
+    }
+
+    @Test
+    public void countsEveryRecordedValue() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        for (int i = 1; i <= 100000; i++) {
+            sample.update(i);
+        }
+
+        assertThat("the sample has a size of 100000",
+                   sample.size(),
+                   is(100000));
+    }
+
+    @Test
+    public void smallValuesAreExact() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        for (int i = 1; i <= 100; i++) {
+            sample.update(i);
+        }
+
+        final double[] percentiles = sample.percentiles(0.0, 0.5, 1.0);
+
+        assertThat("the minimum is 1",
+                   percentiles[0],
+                   is(1.0));
+
+        assertThat("the median is 50",
+                   percentiles[1],
+                   is(50.0));
+
+        assertThat("the maximum is 100",
+                   percentiles[2],
+                   is(100.0));
+    }
+
+    @Test
+    public void percentilesAreAccurateToTheSignificantDigits() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        for (int i = 1; i <= 1000000; i++) {
+            sample.update(i * 1000L);
+        }
+
+        final double[] percentiles = sample.percentiles(0.5, 0.99, 0.999);
+
+        assertThat("the median is within 1% of 500ms",
+                   percentiles[0],
+                   is(closeTo(5.0E8, 5.0E6)));
+
+        assertThat("the 99th percentile is within 1% of 990ms",
+                   percentiles[1],
+                   is(closeTo(9.9E8, 9.9E6)));
+
+        assertThat("the 99.9th percentile is within 1% of 999ms",
+                   percentiles[2],
+                   is(closeTo(9.99E8, 9.99E6)));
+    }
+
+    @Test
+    public void clampsValuesOutsideTheTrackableRange() throws Exception {
+        final LogLinearSample sample = new LogLinearSample(1000, 2);
+        sample.update(-10);
+        sample.update(Long.MAX_VALUE);
+
+        final double[] percentiles = sample.percentiles(0.0, 1.0);
+
+        assertThat("negative values are recorded as zero",
+                   percentiles[0],
+                   is(0.0));
+
+        assertThat("huge values are recorded as the highest trackable value",
+                   percentiles[1],
+                   is(closeTo(1000, 10)));
+    }
+
+    @Test
+    public void representsEachBucketTheSameWayEverywhere() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        final StripedStatistics statistics = new StripedStatistics();
+        for (int i = 1; i <= 100000; i++) {
+            sample.update(i * 1000L);
+            statistics.update(i * 1000L);
+        }
+
+        final double[] percentiles = sample.percentiles(0.5, 0.99);
+        final double[] quantiles = sample.snapshot(statistics).quantiles(0.5, 0.99);
+        final long[] values = sample.snapshotValues();
+        for (int i = 0; i < percentiles.length; i++) {
+            assertThat("the percentiles are those of the snapshot",
+                       percentiles[i],
+                       is(quantiles[i]));
+
+            assertThat("the percentiles are bucket values",
+                       Arrays.binarySearch(values, (long) percentiles[i]) >= 0,
+                       is(true));
+        }
+    }
+
+    @Test
+    public void isEmptyAfterBeingCleared() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        sample.update(100);
+        sample.clear();
+
+        assertThat("the sample has a size of 0",
+                   sample.size(),
+                   is(0));
+    }
+
+    @Test
+    public void mergingIsExact() throws Exception {
+        final LogLinearSample all = new LogLinearSample();
+        final LogLinearSample even = new LogLinearSample();
+        final LogLinearSample odd = new LogLinearSample();
+        for (int i = 1; i <= 100000; i++) {
+            all.update(i * 1000L);
+            (i % 2 == 0 ? even : odd).update(i * 1000L);
+        }
+
+        even.merge(odd);
+
+        assertThat("the merged sample has every value",
+                   even.size(),
+                   is(100000));
+
+        final double[] expected = all.percentiles(0.5, 0.99, 0.999);
+        final double[] actual = even.percentiles(0.5, 0.99, 0.999);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat("the merged sample has the percentiles of all the values",
+                       actual[i],
+                       is(expected[i]));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void samplesWithDifferentLayoutsCannotBeMerged() throws Exception {
+        new LogLinearSample(1000, 2).merge(new LogLinearSample(1000, 3));
+    }
+
+    @Test
+    public void roundTripsThroughItsEncoding() throws Exception {
+        final LogLinearSample sample = new LogLinearSample();
+        for (int i = 1; i <= 100000; i++) {
+            sample.update(i * 1000L);
+        }
+
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sample.writeTo(new DataOutputStream(bytes));
+        final LogLinearSample decoded = LogLinearSample.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat("the decoded sample has every value",
+                   decoded.size(),
+                   is(100000));
+
+        assertThat("the decoded sample has the same layout",
+                   decoded.significantDigits(),
+                   is(sample.significantDigits()));
+
+        final double[] expected = sample.percentiles(0.5, 0.99, 0.999);
+        final double[] actual = decoded.percentiles(0.5, 0.99, 0.999);
+        for (int i = 0; i < expected.length; i++) {
+            assertThat("the decoded sample has the same percentiles",
+                       actual[i],
+                       is(expected[i]));
+        }
+
+        assertThat("the encoding is far smaller than 8 bytes per bucket",
+                   bytes.size(),
+                   is(lessThan(4096)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnknownEncodings() throws Exception {
+        LogLinearSample.readFrom(new DataInputStream(new ByteArrayInputStream(new byte[]{ 99, 0, 0 })));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsNegativeCounts() throws Exception {
+        // one bucket whose count is -1, i.e. a varint with bit 63 set
+        readEncoded(1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0x01);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCountsWhichOverflowTheTotal() throws Exception {
+        // two buckets of Long.MAX_VALUE each
+        readEncoded(2,
+                    1, -1, -1, -1, -1, -1, -1, -1, -1, 0x7F,
+                    1, -1, -1, -1, -1, -1, -1, -1, -1, 0x7F);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsVarintsWhichOverflowALong() throws Exception {
+        readEncoded(1, 1, -1, -1, -1, -1, -1, -1, -1, -1, -1, 0x02);
+    }
+
+    /**
+     * Decodes a sample with a highest trackable value of 1000 and two
+     * significant digits, followed by the given bytes.
+     */
+    private static LogLinearSample readEncoded(int... populatedAndBuckets) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bytes.write(1); // version
+        bytes.write(0xE8); // 1000
+        bytes.write(0x07);
+        bytes.write(2); // significant digits
+        for (int b : populatedAndBuckets) {
+            bytes.write(b);
+        }
+        return LogLinearSample.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
@@ -0,0 +1,185 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.core.Clock;
+import com.yammer.metrics.stats.SlidingTimeWindowSample;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.stats.StripedStatistics;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class SlidingTimeWindowSampleTest {
+    private static class ManualClock implements Clock {
+        long now;
+
+        @Override
+        public long tick() {
+            return now;
+        }
+
+        void advance(long duration, TimeUnit unit) {
+            now += unit.toNanos(duration);
+        }
+    }
+
+    final ManualClock clock = new ManualClock();
+    final SlidingTimeWindowSample sample = new SlidingTimeWindowSample(60, 5, TimeUnit.SECONDS, 10, clock);
+
+    @Test
+    public void anEmptySample() throws Exception {
+        assertThat("the sample has a size of 0",
+                   sample.size(),
+                   is(0));
+
+        assertThat("the sample has no values",
+                   sample.snapshotValues().length,
+                   is(0));
+
+        assertThat("the percentiles are zero",
+                   sample.percentiles(0.5)[0],
+                   is(0.0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void keepsTheValuesWithinTheWindow() throws Exception {
+        for (int i = 0; i < 12; i++) {
+            sample.update(i);
+            clock.advance(5, TimeUnit.SECONDS);
+        }
+        clock.advance(-5, TimeUnit.SECONDS);
+
+        assertThat("the sample has a size of 12",
+                   sample.size(),
+                   is(12));
+
+        assertThat("the sample has every value",
+                   sample.values(),
+                   hasItems(0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void dropsValuesOnceTheyLeaveTheWindow() throws Exception {
+        sample.update(1);
+        clock.advance(30, TimeUnit.SECONDS);
+        sample.update(2);
+        clock.advance(30, TimeUnit.SECONDS);
+
+        assertThat("the oldest value has left the window",
+                   sample.values(),
+                   is(Arrays.asList(2L)));
+
+        clock.advance(30, TimeUnit.SECONDS);
+
+        assertThat("every value has left the window",
+                   sample.size(),
+                   is(0));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void reusesABucketOneRotationLater() throws Exception {
+        sample.update(1);
+        clock.advance(60, TimeUnit.SECONDS);
+        sample.update(2);
+
+        assertThat("the old value is not kept in the reused bucket",
+                   sample.values(),
+                   is(Arrays.asList(2L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void keepsNoValuesFromTheLastRotationOfABucket() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            sample.update(1);
+        }
+        clock.advance(60, TimeUnit.SECONDS);
+        sample.update(2);
+        sample.update(3);
+
+        assertThat("only the values recorded in the bucket's new period are kept",
+                   sample.values(),
+                   is(Arrays.asList(2L, 3L)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void keepsNoValuesFromBeforeItWasCleared() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            sample.update(1);
+        }
+        sample.clear();
+        sample.update(2);
+
+        assertThat("only the value recorded since the sample was cleared is kept",
+                   sample.values(),
+                   is(Arrays.asList(2L)));
+    }
+
+    @Test
+    public void boundsTheValuesKeptPerBucket() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            sample.update(i);
+        }
+
+        assertThat("the bucket keeps 10 values",
+                   sample.size(),
+                   is(10));
+
+        for (long value : sample.snapshotValues()) {
+            assertThat("the bucket only contains elements from the population",
+                       value,
+                       is(allOf(lessThan(1000L), greaterThanOrEqualTo(0L))));
+        }
+    }
+
+    @Test
+    public void weightsBucketsByTheValuesTheySaw() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            sample.update(1);
+        }
+        clock.advance(5, TimeUnit.SECONDS);
+        for (int i = 0; i < 10; i++) {
+            sample.update(100);
+        }
+
+        final double[] percentiles = sample.percentiles(0.5, 0.99, 0.999);
+
+        assertThat("the median comes from the busy bucket",
+                   percentiles[0],
+                   is(1.0));
+
+        assertThat("the 99th percentile comes from the busy bucket",
+                   percentiles[1],
+                   is(1.0));
+
+        assertThat("the 99.9th percentile comes from the quiet bucket",
+                   percentiles[2],
+                   is(100.0));
+    }
+
+    @Test
+    public void snapshotsTheWindow() throws Exception {
+        final StripedStatistics statistics = new StripedStatistics();
+        for (int i = 1; i <= 10; i++) {
+            sample.update(i * 10);
+            statistics.update(i * 10);
+        }
+
+        final Snapshot snapshot = sample.snapshot(statistics);
+
+        assertThat("the snapshot has the window's values",
+                   snapshot.size(),
+                   is(10));
+
+        assertThat("the snapshot's median is in the window",
+                   snapshot.median(),
+                   is(50.0));
+    }
+}
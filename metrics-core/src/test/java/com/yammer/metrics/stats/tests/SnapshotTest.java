@@ -0,0 +1,94 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.Snapshot;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SnapshotTest {
+    final Snapshot snapshot = new Snapshot(new long[]{ 1, 2, 3, 4, 5 }, null, 5, 1, 5, 3, 1.5811);
+
+    @Test
+    public void anEmptySnapshot() throws Exception {
+        final Snapshot empty = new Snapshot(new long[0], null, 0, Long.MAX_VALUE, Long.MIN_VALUE, 0, 0);
+
+        assertThat("the snapshot has a min of zero",
+                   empty.min(),
+                   is(0.0));
+
+        assertThat("the snapshot has a max of zero",
+                   empty.max(),
+                   is(0.0));
+
+        assertThat("the snapshot has a median of zero",
+                   empty.median(),
+                   is(0.0));
+    }
+
+    @Test
+    public void interpolatesQuantiles() throws Exception {
+        final double[] quantiles = snapshot.quantiles(0.0, 0.5, 0.75, 1.0);
+
+        assertThat("the lowest quantile is the smallest value",
+                   quantiles[0],
+                   is(closeTo(1, 0.0001)));
+
+        assertThat("the median is 3",
+                   quantiles[1],
+                   is(closeTo(3, 0.0001)));
+
+        assertThat("the 75th percentile is 4.5",
+                   quantiles[2],
+                   is(closeTo(4.5, 0.0001)));
+
+        assertThat("the highest quantile is the largest value",
+                   quantiles[3],
+                   is(closeTo(5, 0.0001)));
+    }
+
+    @Test
+    public void readsWeightedQuantilesFromCumulativeCounts() throws Exception {
+        final Snapshot weighted = new Snapshot(new long[]{ 10, 20, 30 },
+                                               new long[]{ 1, 8, 1 },
+                                               10, 9, 25, 20, 5);
+
+        assertThat("the median is in the heaviest bucket",
+                   weighted.median(),
+                   is(closeTo(20, 0.0001)));
+
+        assertThat("the lowest quantile is the first bucket",
+                   weighted.quantile(0.0),
+                   is(closeTo(10, 0.0001)));
+
+        assertThat("the highest quantile is clamped to the max",
+                   weighted.quantile(1.0),
+                   is(closeTo(25, 0.0001)));
+    }
+
+    @Test
+    public void scalesEveryValue() throws Exception {
+        final Snapshot scaled = snapshot.scale(0.5);
+
+        assertThat("the scaled min is halved",
+                   scaled.min(),
+                   is(closeTo(0.5, 0.0001)));
+
+        assertThat("the scaled max is halved",
+                   scaled.max(),
+                   is(closeTo(2.5, 0.0001)));
+
+        assertThat("the scaled mean is halved",
+                   scaled.mean(),
+                   is(closeTo(1.5, 0.0001)));
+
+        assertThat("the scaled median is halved",
+                   scaled.median(),
+                   is(closeTo(1.5, 0.0001)));
+
+        assertThat("the unscaled values are unchanged",
+                   scaled.values()[4],
+                   is(5L));
+    }
+}
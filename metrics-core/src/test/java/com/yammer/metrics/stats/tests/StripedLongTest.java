@@ -0,0 +1,76 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.StripedLong;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StripedLongTest {
+    final StripedLong value = new StripedLong();
+
+    @Test
+    public void startsAtZero() throws Exception {
+        assertThat("the initial sum is zero",
+                   value.sum(),
+                   is(0L));
+    }
+
+    @Test
+    public void sumsPositiveAndNegativeValues() throws Exception {
+        value.add(12);
+        value.add(-3);
+
+        assertThat("the sum is 9",
+                   value.sum(),
+                   is(9L));
+    }
+
+    @Test
+    public void isZeroAfterBeingReset() throws Exception {
+        value.add(12);
+        value.reset();
+
+        assertThat("the sum after being reset is zero",
+                   value.sum(),
+                   is(0L));
+    }
+
+    @Test
+    public void sumsConcurrentUpdates() throws Exception {
+        final int threadCount = 16;
+        final int iterations = 100000;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < iterations; j++) {
+                        value.add(1);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat("the sum includes every update from every thread",
+                   value.sum(),
+                   is((long) threadCount * iterations));
+    }
+}
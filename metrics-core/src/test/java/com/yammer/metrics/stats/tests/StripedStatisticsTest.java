@@ -0,0 +1,128 @@
+package com.yammer.metrics.stats.tests;
+
+import com.yammer.metrics.stats.StripedStatistics;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class StripedStatisticsTest {
+    final StripedStatistics stats = new StripedStatistics();
+
+    @Test
+    public void isEmptyInitially() throws Exception {
+        assertThat("the count is zero",
+                   stats.count(),
+                   is(0L));
+
+        assertThat("the sum is zero",
+                   stats.sum(),
+                   is(0L));
+
+        assertThat("the variance is zero",
+                   stats.variance(),
+                   is(0.0));
+    }
+
+    @Test
+    public void tracksRecordedValues() throws Exception {
+        for (long i = 1; i <= 10; i++) {
+            stats.update(i);
+        }
+
+        assertThat("the count is 10",
+                   stats.count(),
+                   is(10L));
+
+        assertThat("the sum is 55",
+                   stats.sum(),
+                   is(55L));
+
+        assertThat("the minimum is 1",
+                   stats.min(),
+                   is(1L));
+
+        assertThat("the maximum is 10",
+                   stats.max(),
+                   is(10L));
+
+        assertThat("the variance is 9.1667",
+                   stats.variance(),
+                   is(closeTo(9.1667, 0.0001)));
+    }
+
+    @Test
+    public void isEmptyAfterBeingCleared() throws Exception {
+        stats.update(100);
+        stats.clear();
+
+        assertThat("the count is zero",
+                   stats.count(),
+                   is(0L));
+
+        assertThat("the minimum is reset",
+                   stats.min(),
+                   is(Long.MAX_VALUE));
+
+        assertThat("the maximum is reset",
+                   stats.max(),
+                   is(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void mergesConcurrentUpdates() throws Exception {
+        final int threadCount = 16;
+        final int iterations = 10000;
+        final CountDownLatch latch = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < threadCount; i++) {
+            final long offset = i * iterations;
+            final Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        latch.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (long j = 1; j <= iterations; j++) {
+                        stats.update(offset + j);
+                    }
+                }
+            };
+            thread.start();
+            threads.add(thread);
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        final long n = (long) threadCount * iterations;
+
+        assertThat("the count includes every update",
+                   stats.count(),
+                   is(n));
+
+        assertThat("the sum includes every update",
+                   stats.sum(),
+                   is(n * (n + 1) / 2));
+
+        assertThat("the minimum is 1",
+                   stats.min(),
+                   is(1L));
+
+        assertThat("the maximum is the largest value",
+                   stats.max(),
+                   is(n));
+
+        assertThat("the merged variance is that of 1..n",
+                   stats.variance(),
+                   is(closeTo(n * (n + 1) / 12.0, 0.01)));
+    }
+}
@@ -33,4 +33,23 @@ public class UniformSampleTest {
         }
     }
 
+    @Test
+    public void snapshotValuesMatchTheBoxedValues() throws Exception {
+        final UniformSample sample = new UniformSample(100);
+        for (int i = 0; i < 10; i++) {
+            sample.update(i);
+        }
+
+        final long[] values = sample.snapshotValues();
+
+        assertThat("the snapshot has 10 elements",
+                   values.length,
+                   is(10));
+
+        for (int i = 0; i < values.length; i++) {
+            assertThat("the snapshot matches the boxed values",
+                       values[i],
+                       is(sample.values().get(i)));
+        }
+    }
 }
@@ -342,21 +342,21 @@ public class InstrumentedEhcache implements Ehcache {
 
     @Override
     public Element get(Object key) throws IllegalStateException, CacheException {
-        final long start = System.nanoTime();
+        final long startTick = getTimer.start();
         try {
             return cache.get(key);
         } finally {
-            getTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            getTimer.stop(startTick);
         }
     }
 
     @Override
     public Element get(Serializable key) throws IllegalStateException, CacheException {
-        final long start = System.nanoTime();
+        final long startTick = getTimer.start();
         try {
             return cache.get(key);
         } finally {
-            getTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            getTimer.stop(startTick);
         }
     }
 
@@ -629,31 +629,31 @@ public class InstrumentedEhcache implements Ehcache {
 
     @Override
     public void put(Element element) throws IllegalArgumentException, IllegalStateException, CacheException {
-        final long start = System.nanoTime();
+        final long startTick = putTimer.start();
         try {
             cache.put(element);
         } finally {
-            putTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            putTimer.stop(startTick);
         }
     }
 
     @Override
     public void put(Element element, boolean doNotNotifyCacheReplicators) throws IllegalArgumentException, IllegalStateException, CacheException {
-        final long start = System.nanoTime();
+        final long startTick = putTimer.start();
         try {
             cache.put(element, doNotNotifyCacheReplicators);
         } finally {
-            putTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            putTimer.stop(startTick);
         }
     }
 
     @Override
     public Element putIfAbsent(Element element) throws NullPointerException {
-        final long start = System.nanoTime();
+        final long startTick = putTimer.start();
         try {
             return cache.putIfAbsent(element);
         } finally {
-            putTimer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            putTimer.stop(startTick);
         }
     }
 
@@ -0,0 +1,105 @@
+package com.yammer.metrics.reporting;
+
+/**
+ * Encodes messages in the wire format of Ganglia 3.0, in which every
+ * message (id 0) carries a metric's type, name, units, slope, tmax and dmax
+ * along with its value, formatted as a string. There are no metadata
+ * messages, and no groups.
+ * <p/>
+ * Numbers are formatted straight into the datagram's buffer: integers,
+ * including counts, in decimal and other doubles rounded to two decimal
+ * places.
+ */
+public class Ganglia30Encoder extends GangliaEncoder {
+    private static final int METRIC_USER_DEFINED = 0;
+    private static final int SLOPE_BOTH = 3;
+
+    @Override
+    public byte[] metadata(String host, String name, String type, String units, String group, int tmax, int dmax) {
+        return null;
+    }
+
+    @Override
+    public byte[] valueHeader(String host, String name, String type, String units, int tmax, int dmax) {
+        final byte[] message = newMessage();
+        int offset = xdrInt(message, 0, METRIC_USER_DEFINED);
+        offset = xdrString(message, offset, type); // metric type
+        offset = xdrString(message, offset, name); // metric name
+        return finishMessage(message, offset);
+    }
+
+    @Override
+    public byte[] valueTrailer(String host, String name, String type, String units, int tmax, int dmax) {
+        final byte[] message = newMessage();
+        int offset = xdrString(message, 0, units); // units
+        offset = xdrInt(message, offset, SLOPE_BOTH); // slope
+        offset = xdrInt(message, offset, tmax); // tmax, the maximum time between metrics
+        offset = xdrInt(message, offset, dmax); // dmax, the maximum data value
+        return finishMessage(message, offset);
+    }
+
+    @Override
+    public int putInt(byte[] buffer, int offset, int value) {
+        return endString(buffer, offset, putDecimal(buffer, offset + 4, value));
+    }
+
+    /**
+     * Writes the integer in decimal; the value is a string, so it isn't
+     * rounded to two decimal places, or to a double's precision.
+     */
+    @Override
+    public int putLong(byte[] buffer, int offset, long value) {
+        return endString(buffer, offset, putDecimal(buffer, offset + 4, value));
+    }
+
+    @Override
+    public int putDouble(byte[] buffer, int offset, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+            return xdrString(buffer, offset, Double.toString(value));
+        }
+        int end = offset + 4;
+        if (Double.compare(value, 0.0) < 0) {
+            buffer[end++] = '-';
+        }
+        final long hundredths = Math.round(Math.abs(value) * 100);
+        end = putDecimal(buffer, end, hundredths / 100);
+        final int fraction = (int) (hundredths % 100);
+        buffer[end++] = '.';
+        buffer[end++] = (byte) ('0' + fraction / 10);
+        buffer[end++] = (byte) ('0' + fraction % 10);
+        return endString(buffer, offset, end);
+    }
+
+    /**
+     * Writes the length of the string between {@code offset + 4} and
+     * {@code end} at {@code offset} and pads the string.
+     */
+    private static int endString(byte[] buffer, int offset, int end) {
+        xdrInt(buffer, offset, end - offset - 4);
+        return pad(buffer, end);
+    }
+
+    private static int putDecimal(byte[] buffer, int offset, long value) {
+        if (value < 0) {
+            if (value == Long.MIN_VALUE) {
+                final String digits = Long.toString(value);
+                for (int i = 0; i < digits.length(); i++) {
+                    buffer[offset++] = (byte) digits.charAt(i);
+                }
+                return offset;
+            }
+            buffer[offset++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value; rest >= 10; rest /= 10) {
+            digits++;
+        }
+        final int end = offset + digits;
+        for (int i = end - 1; i >= offset; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,75 @@
+package com.yammer.metrics.reporting;
+
+/**
+ * Encodes messages in the wire format of Ganglia 3.1 and later, in which a
+ * metadata message (id 128) describes a metric and typed value messages
+ * carry its values: {@code gmetric_int} (id 131) with a raw XDR integer,
+ * {@code gmetric_double} (id 135) with a raw XDR double and
+ * {@code gmetric_string} (id 133) with a string.
+ */
+public class Ganglia31Encoder extends GangliaEncoder {
+    private static final int METADATA_FULL = 128;
+    private static final int GMETRIC_INT = 131;
+    private static final int GMETRIC_STRING = 133;
+    private static final int GMETRIC_DOUBLE = 135;
+    private static final int SLOPE_BOTH = 3;
+
+    @Override
+    public byte[] metadata(String host, String name, String type, String units, String group, int tmax, int dmax) {
+        final byte[] message = newMessage();
+        int offset = xdrInt(message, 0, METADATA_FULL);
+        offset = xdrString(message, offset, host); // hostname
+        offset = xdrString(message, offset, name); // metric name
+        offset = xdrInt(message, offset, 0); // spoof = True
+        offset = xdrString(message, offset, type); // metric type
+        offset = xdrString(message, offset, name); // metric name
+        offset = xdrString(message, offset, units); // units
+        offset = xdrInt(message, offset, SLOPE_BOTH); // slope see gmetric.c
+        offset = xdrInt(message, offset, tmax); // tmax, the maximum time between metrics
+        offset = xdrInt(message, offset, dmax); // dmax, the maximum data value
+        offset = xdrInt(message, offset, 1);
+        offset = xdrString(message, offset, "GROUP"); /*Group attribute*/
+        offset = xdrString(message, offset, group); /*Group value*/
+        return finishMessage(message, offset);
+    }
+
+    @Override
+    public byte[] valueHeader(String host, String name, String type, String units, int tmax, int dmax) {
+        final byte[] message = newMessage();
+        int offset;
+        if (INT32.equals(type)) {
+            offset = xdrInt(message, 0, GMETRIC_INT);
+        } else if (DOUBLE.equals(type)) {
+            offset = xdrInt(message, 0, GMETRIC_DOUBLE);
+        } else if (STRING.equals(type)) {
+            offset = xdrInt(message, 0, GMETRIC_STRING);
+        } else {
+            throw new IllegalArgumentException("unsupported metric type: " + type);
+        }
+        offset = xdrString(message, offset, host); // hostname
+        offset = xdrString(message, offset, name); // metric name
+        offset = xdrInt(message, offset, 0); // spoof = True
+        offset = xdrString(message, offset, format(type)); // format field
+        return finishMessage(message, offset);
+    }
+
+    @Override
+    public int putInt(byte[] buffer, int offset, int value) {
+        return xdrInt(buffer, offset, value);
+    }
+
+    @Override
+    public int putDouble(byte[] buffer, int offset, double value) {
+        return xdrDouble(buffer, offset, value);
+    }
+
+    private static String format(String type) {
+        if (INT32.equals(type)) {
+            return "%d";
+        }
+        if (DOUBLE.equals(type)) {
+            return "%f";
+        }
+        return "%s";
+    }
+}
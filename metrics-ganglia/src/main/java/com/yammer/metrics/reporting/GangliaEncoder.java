@@ -0,0 +1,218 @@
+package com.yammer.metrics.reporting;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+/**
+ * Encodes the XDR messages of one version of Ganglia's wire format.
+ * <p/>
+ * A metric's messages are encoded as far as possible ahead of its values:
+ * its metadata message, if the format has one, and the parts of its value
+ * message before and after the value. Reporting a value then only means
+ * copying those parts around the value, which is written straight into the
+ * datagram's buffer.
+ */
+public abstract class GangliaEncoder {
+    /**
+     * The type of a signed 32-bit integer metric.
+     */
+    public static final String INT32 = "int32";
+
+    /**
+     * The type of a double-precision metric.
+     */
+    public static final String DOUBLE = "double";
+
+    /**
+     * The type of a string metric.
+     */
+    public static final String STRING = "string";
+
+    /**
+     * The largest message which can be encoded.
+     */
+    protected static final int MAX_MESSAGE_SIZE = 1500;
+
+    /**
+     * Returns the message which describes a metric, or {@code null} if the
+     * format's value messages describe the metric themselves.
+     *
+     * @param host  the host the metric is from
+     * @param name  the metric's name
+     * @param type  the metric's type (e.g., {@link #INT32})
+     * @param units the metric's units
+     * @param group the metric's group
+     * @param tmax  the most seconds expected between values
+     * @param dmax  the seconds after which the metric is dropped, or zero
+     * @return the metric's metadata message, or {@code null}
+     */
+    public abstract byte[] metadata(String host, String name, String type, String units, String group,
+                                    int tmax, int dmax);
+
+    /**
+     * Returns the start of a metric's value messages, up to the value.
+     *
+     * @param host  the host the metric is from
+     * @param name  the metric's name
+     * @param type  the metric's type (e.g., {@link #INT32})
+     * @param units the metric's units
+     * @param tmax  the most seconds expected between values
+     * @param dmax  the seconds after which the metric is dropped, or zero
+     * @return the start of the metric's value messages
+     */
+    public abstract byte[] valueHeader(String host, String name, String type, String units, int tmax, int dmax);
+
+    /**
+     * Returns the end of a metric's value messages, after the value. Empty
+     * by default.
+     *
+     * @param host  the host the metric is from
+     * @param name  the metric's name
+     * @param type  the metric's type (e.g., {@link #INT32})
+     * @param units the metric's units
+     * @param tmax  the most seconds expected between values
+     * @param dmax  the seconds after which the metric is dropped, or zero
+     * @return the end of the metric's value messages
+     */
+    public byte[] valueTrailer(String host, String name, String type, String units, int tmax, int dmax) {
+        return new byte[0];
+    }
+
+    /**
+     * Writes the value of an {@link #INT32} metric.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param value  the value
+     * @return the offset after the value
+     */
+    public abstract int putInt(byte[] buffer, int offset, int value);
+
+    /**
+     * Writes the value of a {@link #DOUBLE} metric.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param value  the value
+     * @return the offset after the value
+     */
+    public abstract int putDouble(byte[] buffer, int offset, double value);
+
+    /**
+     * Writes a 64-bit integer as the value of a {@link #DOUBLE} metric,
+     * since Ganglia has no 64-bit integer type. By default it is written as
+     * {@link #putDouble(byte[], int, double)} would, which is exact up to
+     * 2<sup>53</sup>.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param value  the value
+     * @return the offset after the value
+     */
+    public int putLong(byte[] buffer, int offset, long value) {
+        return putDouble(buffer, offset, value);
+    }
+
+    /**
+     * Writes the value of a {@link #STRING} metric.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param value  the value
+     * @return the offset after the value
+     */
+    public int putString(byte[] buffer, int offset, String value) {
+        return xdrString(buffer, offset, value);
+    }
+
+    /**
+     * Puts an integer into the buffer as 4 bytes, big-endian.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param i      the integer to write to the buffer
+     * @return the offset after the integer
+     */
+    protected static int xdrInt(byte[] buffer, int offset, int i) {
+        buffer[offset++] = (byte) ((i >> 24) & 0xff);
+        buffer[offset++] = (byte) ((i >> 16) & 0xff);
+        buffer[offset++] = (byte) ((i >> 8) & 0xff);
+        buffer[offset++] = (byte) (i & 0xff);
+        return offset;
+    }
+
+    /**
+     * Puts a double into the buffer as 8 bytes, big-endian.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to write at
+     * @param d      the double to write to the buffer
+     * @return the offset after the double
+     */
+    protected static int xdrDouble(byte[] buffer, int offset, double d) {
+        final long bits = Double.doubleToLongBits(d);
+        offset = xdrInt(buffer, offset, (int) (bits >>> 32));
+        return xdrInt(buffer, offset, (int) bits);
+    }
+
+    /**
+     * Puts a string into the buffer by first writing the size of the string
+     * as an int, followed by the bytes of the string, padded if necessary to
+     * a multiple of 4.
+     *
+     * @param buffer  the buffer to write to
+     * @param offset  the offset to write at
+     * @param message the message to write to the buffer
+     * @return the offset after the string
+     */
+    protected static int xdrString(byte[] buffer, int offset, String message) {
+        final byte[] bytes = utf8(message);
+        offset = xdrInt(buffer, offset, bytes.length);
+        System.arraycopy(bytes, 0, buffer, offset, bytes.length);
+        return pad(buffer, offset + bytes.length);
+    }
+
+    /**
+     * Pads the buffer with zero bytes up to the nearest multiple of 4.
+     *
+     * @param buffer the buffer to write to
+     * @param offset the offset to pad from
+     * @return the padded offset
+     */
+    protected static int pad(byte[] buffer, int offset) {
+        final int newOffset = ((offset + 3) / 4) * 4;
+        while (offset < newOffset) {
+            buffer[offset++] = 0;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns a new buffer for encoding a message ahead of time.
+     *
+     * @return a new buffer
+     */
+    protected static byte[] newMessage() {
+        return new byte[MAX_MESSAGE_SIZE];
+    }
+
+    /**
+     * Returns the first {@code length} bytes of a message encoded ahead of
+     * time.
+     *
+     * @param message the buffer holding the message
+     * @param length  the length of the message
+     * @return the message
+     */
+    protected static byte[] finishMessage(byte[] message, int length) {
+        return Arrays.copyOf(message, length);
+    }
+
+    private static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
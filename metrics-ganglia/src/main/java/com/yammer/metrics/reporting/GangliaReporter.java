@@ -3,15 +3,16 @@ package com.yammer.metrics.reporting;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
 import com.yammer.metrics.core.VirtualMachineMetrics.*;
+import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.util.MetricPredicate;
-import com.yammer.metrics.util.Utils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.*;
-import java.util.Locale;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.concurrent.TimeUnit;
 
 import static com.yammer.metrics.core.VirtualMachineMetrics.daemonThreadCount;
@@ -28,8 +29,21 @@ import static com.yammer.metrics.core.VirtualMachineMetrics.uptime;
  * A simple reporter which sends out application metrics to a
  * <a href="hhttp://ganglia.sourceforge.net/">Ganglia</a> server periodically.
  * <p/>
- * NOTE: this reporter only works with Ganglia 3.1 and greater.  The message protool
- * for earlier versions of Ganglia is different.
+ * Messages are sent in the wire format of Ganglia 3.1 and greater by
+ * default, with integers and doubles sent as raw XDR numbers rather than
+ * formatted as strings. Ganglia has no 64-bit integer type, so counts are
+ * sent as doubles, which are exact up to 2<sup>53</sup>. To report to an earlier version of Ganglia, whose
+ * message protocol is different, pass a {@link Ganglia30Encoder}.
+ * <p/>
+ * Ganglia 3.1 describes a metric (its type, units and group) in a metadata
+ * message which is separate from the messages carrying its values. Each
+ * field's metadata message and the fixed start of its value message are
+ * encoded once and kept; the metadata message is sent the first time the
+ * field is reported, whenever its type, units or group change, and then
+ * every {@link #DEFAULT_METADATA_INTERVAL} polls (by default), so that a
+ * restarted gmond, which has forgotten every metric's metadata, learns them
+ * again. Call {@link #resendMetadata()} to have it sent on the next poll
+ * instead, e.g. when gmond is known to have restarted.
  * <p/>
  * This code heavily borrows from GangliaWriter in
  * <a href="http://code.google.com/p/jmxtrans/source/browse/trunk/src/com/googlecode/jmxtrans/model/output/GangliaWriter.java">JMXTrans</a>
@@ -37,21 +51,34 @@ import static com.yammer.metrics.core.VirtualMachineMetrics.uptime;
  * from Hadoop.
  */
 public class GangliaReporter extends AbstractPollingReporter {
+    /**
+     * The default number of polls between sending each field's metadata.
+     */
+    public static final int DEFAULT_METADATA_INTERVAL = 20;
+
     private static final Logger LOG = LoggerFactory.getLogger(GangliaReporter.class);
     private static final int BUFFER_SIZE = 1500;
     private static final int GANGLIA_TMAX = 60;
     private static final int GANGLIA_DMAX = 0;
-    private static final String GANGLIA_INT_TYPE = "int32";
-    private static final String GANGLIA_DOUBLE_TYPE = "double";
+    private static final int FIELDS_PER_METRIC = 15;
+    private static final String[] PERCENTILE_SUFFIXES = {
+            ".median", ".75percentile", ".95percentile", ".98percentile", ".99percentile", ".999percentile"
+    };
     private final String gangliaHost;
     private final int port;
     private final MetricPredicate predicate;
-    private final Locale locale = Locale.US;
+    private final GangliaEncoder encoder;
+    private final Map<MetricName, Field[]> fields = new WeakHashMap<MetricName, Field[]>();
+    private final Map<String, Field> vmFields = new HashMap<String, Field>();
     private byte[] buffer = new byte[BUFFER_SIZE];
-    private int offset;
+    private final DatagramPacket packet = new DatagramPacket(buffer, 0);
     private DatagramSocket socket;
+    private InetSocketAddress address;
     private String hostLabel;
     private String groupPrefix = "";
+    private volatile int metadataInterval = DEFAULT_METADATA_INTERVAL;
+    private volatile boolean resendMetadata;
+    private long poll;
 
 
     /**
@@ -153,220 +180,268 @@ public class GangliaReporter extends AbstractPollingReporter {
      * @throws java.io.IOException if there is an error connecting to the ganglia server
      */
     public GangliaReporter(MetricsRegistry metricsRegistry, String gangliaHost, int port, String groupPrefix, MetricPredicate predicate) throws IOException {
+        this(metricsRegistry, gangliaHost, port, groupPrefix, predicate, new Ganglia31Encoder());
+    }
+
+    /**
+     * Creates a new {@link GangliaReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param gangliaHost     is ganglia server
+     * @param port            is port on which ganglia server is running
+     * @param groupPrefix prefix to the ganglia group name (such as myapp_counter)
+     * @param predicate       filters metrics to be reported
+     * @param encoder         encodes messages in the wire format of the
+     *                        server's version of Ganglia
+     * @throws java.io.IOException if there is an error connecting to the ganglia server
+     */
+    public GangliaReporter(MetricsRegistry metricsRegistry, String gangliaHost, int port, String groupPrefix, MetricPredicate predicate, GangliaEncoder encoder) throws IOException {
         super(metricsRegistry, "ganglia-reporter");
         this.gangliaHost = gangliaHost;
         this.port = port;
         this.groupPrefix = groupPrefix + "_";
         this.hostLabel = getHostLabel();
         this.predicate = predicate;
+        this.encoder = encoder;
         socket = new DatagramSocket();
     }
 
+    /**
+     * Sets the number of polls between sending each field's metadata.
+     *
+     * @param polls the number of polls between sending metadata
+     */
+    public void setMetadataInterval(int polls) {
+        this.metadataInterval = Math.max(1, polls);
+    }
+
+    /**
+     * Has every field's metadata sent again on the next poll.
+     */
+    public void resendMetadata() {
+        this.resendMetadata = true;
+    }
+
     @Override
-    public void run() {
+    public synchronized void run() {
+        if (resendMetadata) {
+            resendMetadata = false;
+            for (Field[] metricFields : fields.values()) {
+                for (Field field : metricFields) {
+                    if (field != null) {
+                        field.metadataSent = -1;
+                    }
+                }
+            }
+            for (Field field : vmFields.values()) {
+                field.metadataSent = -1;
+            }
+        }
+        if (address == null || address.isUnresolved()) {
+            address = new InetSocketAddress(gangliaHost, port);
+            if (address.isUnresolved()) {
+                LOG.error("Unable to resolve gangliaHost: {}", gangliaHost);
+                return;
+            }
+            packet.setSocketAddress(address);
+        }
         printVmMetrics();
         printRegularMetrics();
+        poll++;
     }
 
     private void printRegularMetrics() {
-        for (Map.Entry<String, Map<String, Metric>> entry : Utils.sortAndFilterMetrics(metricsRegistry.allMetrics(), this.predicate).entrySet()) {
-            for (Map.Entry<String, Metric> subEntry : entry.getValue().entrySet()) {
-                final String simpleName = sanitizeName(entry.getKey() + "." + subEntry.getKey());
-                final Metric metric = subEntry.getValue();
-                if (metric != null) {
-                    try {
-                        if (metric instanceof GaugeMetric<?>) {
-                            printGauge((GaugeMetric<?>) metric, simpleName);
-                        } else if (metric instanceof CounterMetric) {
-                            printCounter((CounterMetric) metric, simpleName);
-                        } else if (metric instanceof HistogramMetric) {
-                            printHistogram((HistogramMetric) metric, simpleName);
-                        } else if (metric instanceof MeterMetric) {
-                            printMetered((MeterMetric) metric, simpleName);
-                        } else if (metric instanceof TimerMetric) {
-                            printTimer((TimerMetric) metric, simpleName);
-                        }
-                    } catch (Exception ignored) {
-                        LOG.error("Error printing regular metrics:", ignored);
+        for (Map.Entry<MetricName, Metric> entry : metricsRegistry.allMetrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            final Metric metric = entry.getValue();
+            if (metric != null && predicate.matches(name, metric)) {
+                try {
+                    if (metric instanceof GaugeMetric<?>) {
+                        printGauge((GaugeMetric<?>) metric, name);
+                    } else if (metric instanceof CounterMetric) {
+                        printCounter((CounterMetric) metric, name);
+                    } else if (metric instanceof HistogramMetric) {
+                        printHistogram((HistogramMetric) metric, name);
+                    } else if (metric instanceof MeterMetric) {
+                        printMetered((MeterMetric) metric, name);
+                    } else if (metric instanceof TimerMetric) {
+                        printTimer((TimerMetric) metric, name);
                     }
+                } catch (Exception ignored) {
+                    LOG.error("Error printing regular metrics:", ignored);
                 }
             }
         }
-
     }
 
-    private void sendToGanglia(String metricName, String metricType, String metricValue, String groupName, String units) {
-        try {
-            sendMetricData(metricType, metricName, metricValue, groupPrefix + groupName, units);
-            if (LOG.isTraceEnabled()) {
-                LOG.trace("Emitting metric " + metricName + ", type " + metricType + ", value " + metricValue + " for gangliaHost: " + gangliaHost + ":" + port);
-            }
-        } catch (IOException e) {
-            LOG.error("Error sending to ganglia:", e);
+    /**
+     * Returns the field of the given metric with the given suffix, type,
+     * units and group, encoding its messages if it is new or has changed.
+     */
+    private Field field(MetricName name, int index, String suffix, String type, String units, String group) {
+        Field[] metricFields = fields.get(name);
+        if (metricFields == null) {
+            metricFields = new Field[FIELDS_PER_METRIC];
+            fields.put(name, metricFields);
+        }
+        Field field = metricFields[index];
+        if (field == null || !field.describes(type, units, group)) {
+            field = new Field(metricName(name) + suffix, type, units, group);
+            metricFields[index] = field;
         }
+        return field;
     }
 
-    private void sendToGanglia(String metricName, String metricType, String metricValue, String groupName) {
-        sendToGanglia(metricName, metricType, metricValue, groupName, "");
-    }
-
-    private void sendMetricData(String metricType, String metricName, String metricValue, String groupName, String units) throws IOException {
-        offset = 0;
-        xdrInt(128); // metric_id = metadata_msg
-        xdrString(hostLabel); // hostname
-        xdrString(metricName); // metric name
-        xdrInt(0); // spoof = True
-        xdrString(metricType); // metric type
-        xdrString(metricName); // metric name
-        xdrString(units); // units
-        xdrInt(3); // slope see gmetric.c
-        xdrInt(GANGLIA_TMAX); // tmax, the maximum time between metrics
-        xdrInt(GANGLIA_DMAX); // dmax, the maximum data value
-        xdrInt(1);
-        xdrString("GROUP");    /*Group attribute*/
-        xdrString(groupName);  /*Group value*/
-        socket.send(new DatagramPacket(buffer, offset, new InetSocketAddress(gangliaHost, port)));
-
-        offset = 0;
-        xdrInt(133); // we are sending a string value
-        xdrString(hostLabel); // hostLabel
-        xdrString(metricName); // metric name
-        xdrInt(0); // spoof = True
-        xdrString("%s"); // format field
-        xdrString(metricValue); // metric value
-        socket.send(new DatagramPacket(buffer, offset, new InetSocketAddress(gangliaHost, port)));
+    private Field vmField(String name, String type) {
+        Field field = vmFields.get(name);
+        if (field == null) {
+            field = new Field(sanitizeName(name), type, "", "jvm");
+            vmFields.put(name, field);
+        }
+        return field;
     }
 
-    /**
-     * Puts an integer into the buffer as 4 bytes, big-endian.
-     *
-     * @param i -  the integer to write to the buffer
-     */
-    private void xdrInt(int i) {
-        buffer[offset++] = (byte) ((i >> 24) & 0xff);
-        buffer[offset++] = (byte) ((i >> 16) & 0xff);
-        buffer[offset++] = (byte) ((i >> 8) & 0xff);
-        buffer[offset++] = (byte) (i & 0xff);
+    private String metricName(MetricName name) {
+        final StringBuilder builder = new StringBuilder();
+        builder.append(name.getGroup()).append('.').append(name.getType()).append('.');
+        if (name.hasScope()) {
+            builder.append(name.getScope()).append('.');
+        }
+        builder.append(name.getName());
+        if (name.hasTags()) {
+            builder.append(name.getTags());
+        }
+        return sanitizeName(builder.toString());
     }
 
     /**
-     * Puts a string into the buffer by first writing the size of the string
-     * as an int, followed by the bytes of the string, padded if necessary to
-     * a multiple of 4.
-     *
-     * @param message - the message to write to the buffer
+     * Copies the start of a field's value messages into the buffer and
+     * returns the offset at which its value goes.
      */
-    private void xdrString(String message) {
-        byte[] bytes = message.getBytes();
-        int len = bytes.length;
-        xdrInt(len);
-        System.arraycopy(bytes, 0, buffer, offset, len);
-        offset += len;
-        pad();
+    private int startValue(Field field) {
+        System.arraycopy(field.valueHeader, 0, buffer, 0, field.valueHeader.length);
+        return field.valueHeader.length;
     }
 
     /**
-     * Pads the buffer with zero bytes up to the nearest multiple of 4.
+     * Finishes the value message whose value ends at {@code offset} and
+     * sends it, after the field's metadata if that is due.
      */
-    private void pad() {
-        int newOffset = ((offset + 3) / 4) * 4;
-        while (offset < newOffset) {
-            buffer[offset++] = 0;
+    private void sendToGanglia(Field field, int offset) {
+        try {
+            System.arraycopy(field.valueTrailer, 0, buffer, offset, field.valueTrailer.length);
+            if (field.metadata != null && (field.metadataSent < 0 || poll - field.metadataSent >= metadataInterval)) {
+                send(field.metadata, field.metadata.length);
+                field.metadataSent = poll;
+            }
+            send(buffer, offset + field.valueTrailer.length);
+            if (LOG.isTraceEnabled()) {
+                LOG.trace("Emitting metric " + field.name + ", type " + field.type + " for gangliaHost: " + gangliaHost + ":" + port);
+            }
+        } catch (IOException e) {
+            LOG.error("Error sending to ganglia:", e);
         }
     }
 
+    private void send(byte[] data, int length) throws IOException {
+        packet.setData(data, 0, length);
+        socket.send(packet);
+    }
+
     private String sanitizeName(String name) {
         return name.replace(' ', '-');
     }
 
-    private void printGauge(GaugeMetric<?> gauge, String name) {
-        sendToGanglia(sanitizeName(name), GANGLIA_INT_TYPE, String.format(locale, "%s", gauge.value()), "gauge");
+    private void printGauge(GaugeMetric<?> gauge, MetricName name) {
+        final Object value = gauge.value();
+        if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            final Field field = field(name, 0, "", GangliaEncoder.INT32, "", "gauge");
+            sendToGanglia(field, encoder.putInt(buffer, startValue(field), ((Number) value).intValue()));
+        } else if (value instanceof Long) {
+            printLongField(field(name, 0, "", GangliaEncoder.DOUBLE, "", "gauge"), (Long) value);
+        } else if (value instanceof Number) {
+            printDoubleField(field(name, 0, "", GangliaEncoder.DOUBLE, "", "gauge"), ((Number) value).doubleValue());
+        } else {
+            final Field field = field(name, 0, "", GangliaEncoder.STRING, "", "gauge");
+            sendToGanglia(field, encoder.putString(buffer, startValue(field), String.valueOf(value)));
+        }
     }
 
-    private void printCounter(CounterMetric counter, String name) {
-        sendToGanglia(sanitizeName(name), GANGLIA_INT_TYPE, String.format(locale, "%d", counter.count()), "counter");
+    private void printCounter(CounterMetric counter, MetricName name) {
+        printLongField(field(name, 0, "", GangliaEncoder.DOUBLE, "", "counter"), counter.count());
     }
 
-    private void printMetered(Metered meter, String name) {
-        final String sanitizedName = sanitizeName(name);
+    private void printMetered(Metered meter, MetricName name) {
         final String units = meter.rateUnit().name();
-        printLongField(sanitizedName + ".count", meter.count(), "metered", units);
-        printDoubleField(sanitizedName + ".meanRate", meter.meanRate(), "metered", units);
-        printDoubleField(sanitizedName + ".1MinuteRate", meter.oneMinuteRate(), "metered", units);
-        printDoubleField(sanitizedName + ".5MinuteRate", meter.fiveMinuteRate(), "metered", units);
-        printDoubleField(sanitizedName + ".15MinuteRate", meter.fifteenMinuteRate(), "metered", units);
+        printLongField(field(name, 0, ".count", GangliaEncoder.DOUBLE, units, "metered"), meter.count());
+        printDoubleField(field(name, 1, ".meanRate", GangliaEncoder.DOUBLE, units, "metered"), meter.meanRate());
+        printDoubleField(field(name, 2, ".1MinuteRate", GangliaEncoder.DOUBLE, units, "metered"), meter.oneMinuteRate());
+        printDoubleField(field(name, 3, ".5MinuteRate", GangliaEncoder.DOUBLE, units, "metered"), meter.fiveMinuteRate());
+        printDoubleField(field(name, 4, ".15MinuteRate", GangliaEncoder.DOUBLE, units, "metered"), meter.fifteenMinuteRate());
     }
 
-    private void printHistogram(HistogramMetric histogram, String name) {
-        final String sanitizedName = sanitizeName(name);
-        final double[] percentiles = histogram.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
-
+    private void printHistogram(HistogramMetric histogram, MetricName name) {
         // TODO:  what units make sense for histograms?  should we add event type to the Histogram metric?
-        printDoubleField(sanitizedName + ".min", histogram.min(), "histo");
-        printDoubleField(sanitizedName + ".max", histogram.max(), "histo");
-        printDoubleField(sanitizedName + ".mean", histogram.mean(), "histo");
-        printDoubleField(sanitizedName + ".stddev", histogram.stdDev(), "histo");
-        printDoubleField(sanitizedName + ".median", percentiles[0], "histo");
-        printDoubleField(sanitizedName + ".75percentile", percentiles[1], "histo");
-        printDoubleField(sanitizedName + ".95percentile", percentiles[2], "histo");
-        printDoubleField(sanitizedName + ".98percentile", percentiles[3], "histo");
-        printDoubleField(sanitizedName + ".99percentile", percentiles[4], "histo");
-        printDoubleField(sanitizedName + ".999percentile", percentiles[5], "histo");
-    }
-
-    private void printTimer(TimerMetric timer, String name) {
+        printSnapshot(snapshot(histogram), name, "", "histo");
+    }
+
+    private void printTimer(TimerMetric timer, MetricName name) {
         printMetered(timer, name);
-        final String sanitizedName = sanitizeName(name);
-        final double[] percentiles = timer.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
-        final String durationUnit = timer.durationUnit().name();
-        printDoubleField(sanitizedName + ".min", timer.min(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".max", timer.max(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".mean", timer.mean(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".stddev", timer.stdDev(), "timer", durationUnit);
-        printDoubleField(sanitizedName + ".median", percentiles[0], "timer", durationUnit);
-        printDoubleField(sanitizedName + ".75percentile", percentiles[1], "timer", durationUnit);
-        printDoubleField(sanitizedName + ".95percentile", percentiles[2], "timer", durationUnit);
-        printDoubleField(sanitizedName + ".98percentile", percentiles[3], "timer", durationUnit);
-        printDoubleField(sanitizedName + ".99percentile", percentiles[4], "timer", durationUnit);
-        printDoubleField(sanitizedName + ".999percentile", percentiles[5], "timer", durationUnit);
+        printSnapshot(timer.snapshot(), name, timer.durationUnit().name(), "timer");
+    }
+
+    private void printSnapshot(Snapshot snapshot, MetricName name, String units, String groupName) {
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        printDoubleField(field(name, 5, ".min", GangliaEncoder.DOUBLE, units, groupName), snapshot.min());
+        printDoubleField(field(name, 6, ".max", GangliaEncoder.DOUBLE, units, groupName), snapshot.max());
+        printDoubleField(field(name, 7, ".mean", GangliaEncoder.DOUBLE, units, groupName), snapshot.mean());
+        printDoubleField(field(name, 8, ".stddev", GangliaEncoder.DOUBLE, units, groupName), snapshot.stdDev());
+        for (int i = 0; i < percentiles.length; i++) {
+            printDoubleField(field(name, 9 + i, PERCENTILE_SUFFIXES[i], GangliaEncoder.DOUBLE, units, groupName),
+                             percentiles[i]);
+        }
     }
 
-    private void printDoubleField(String name, double value, String groupName, String units) {
-        sendToGanglia(sanitizeName(name), GANGLIA_DOUBLE_TYPE, String.format(locale, "%2.2f", value), groupName, units);
+    private void printDoubleField(Field field, double value) {
+        sendToGanglia(field, encoder.putDouble(buffer, startValue(field), value));
     }
 
-    private void printDoubleField(String name, double value, String groupName) {
-        printDoubleField(name, value, groupName, "");
+    /**
+     * Sends a 64-bit value. Ganglia has no int64 type, so the field must be
+     * a {@link GangliaEncoder#DOUBLE}, which holds it exactly up to
+     * 2<sup>53</sup>.
+     */
+    private void printLongField(Field field, long value) {
+        sendToGanglia(field, encoder.putLong(buffer, startValue(field), value));
     }
 
-    private void printLongField(String name, long value, String groupName) {
-        printLongField(name, value, groupName, "");
+    private void printDoubleField(String name, double value) {
+        printDoubleField(vmField(name, GangliaEncoder.DOUBLE), value);
     }
 
-    private void printLongField(String name, long value, String groupName, String units) {
-        // TODO:  ganglia does not support int64, what should we do here?
-        sendToGanglia(sanitizeName(name), GANGLIA_INT_TYPE, String.format(locale, "%d", value), groupName, units);
+    private void printLongField(String name, long value) {
+        printLongField(vmField(name, GangliaEncoder.DOUBLE), value);
     }
 
     private void printVmMetrics() {
-        printDoubleField("jvm.memory.heap_usage", heapUsage(), "jvm");
-        printDoubleField("jvm.memory.non_heap_usage", nonHeapUsage(), "jvm");
+        printDoubleField("jvm.memory.heap_usage", heapUsage());
+        printDoubleField("jvm.memory.non_heap_usage", nonHeapUsage());
         for (Map.Entry<String, Double> pool : memoryPoolUsage().entrySet()) {
-            printDoubleField("jvm.memory.memory_pool_usages." + pool.getKey(), pool.getValue(), "jvm");
+            printDoubleField("jvm.memory.memory_pool_usages." + pool.getKey(), pool.getValue());
         }
 
-        printDoubleField("jvm.daemon_thread_count", daemonThreadCount(), "jvm");
-        printDoubleField("jvm.thread_count", threadCount(), "jvm");
-        printDoubleField("jvm.uptime", uptime(), "jvm");
-        printDoubleField("jvm.fd_usage", fileDescriptorUsage(), "jvm");
+        printDoubleField("jvm.daemon_thread_count", daemonThreadCount());
+        printDoubleField("jvm.thread_count", threadCount());
+        printDoubleField("jvm.uptime", uptime());
+        printDoubleField("jvm.fd_usage", fileDescriptorUsage());
 
         for (Map.Entry<Thread.State, Double> entry : threadStatePercentages().entrySet()) {
-            printDoubleField("jvm.thread-states." + entry.getKey().toString().toLowerCase(), entry.getValue(), "jvm");
+            printDoubleField("jvm.thread-states." + entry.getKey().toString().toLowerCase(), entry.getValue());
         }
 
         for (Map.Entry<String, GarbageCollector> entry : garbageCollectors().entrySet()) {
-            printLongField("jvm.gc." + entry.getKey() + ".time", entry.getValue().getTime(TimeUnit.MILLISECONDS), "jvm");
-            printLongField("jvm.gc." + entry.getKey() + ".runs", entry.getValue().getRuns(), "jvm");
+            printLongField("jvm.gc." + entry.getKey() + ".time", entry.getValue().getTime(TimeUnit.MILLISECONDS));
+            printLongField("jvm.gc." + entry.getKey() + ".runs", entry.getValue().getRuns());
         }
     }
 
@@ -379,4 +454,34 @@ public class GangliaReporter extends AbstractPollingReporter {
             return "unknown";
         }
     }
+
+    /**
+     * A field of a metric, with its messages encoded as far as they can be
+     * ahead of its value.
+     */
+    private final class Field {
+        final String name;
+        final String type;
+        final String units;
+        final String group;
+        final byte[] metadata;
+        final byte[] valueHeader;
+        final byte[] valueTrailer;
+        long metadataSent = -1;
+
+        Field(String name, String type, String units, String group) {
+            this.name = name;
+            this.type = type;
+            this.units = units;
+            this.group = group;
+            this.metadata = encoder.metadata(hostLabel, name, type, units, groupPrefix + group,
+                                             GANGLIA_TMAX, GANGLIA_DMAX);
+            this.valueHeader = encoder.valueHeader(hostLabel, name, type, units, GANGLIA_TMAX, GANGLIA_DMAX);
+            this.valueTrailer = encoder.valueTrailer(hostLabel, name, type, units, GANGLIA_TMAX, GANGLIA_DMAX);
+        }
+
+        boolean describes(String type, String units, String group) {
+            return this.type.equals(type) && this.units.equals(units) && this.group.equals(group);
+        }
+    }
 }
@@ -0,0 +1,279 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.GaugeMetric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.Ganglia30Encoder;
+import com.yammer.metrics.reporting.GangliaReporter;
+import com.yammer.metrics.util.MetricPredicate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GangliaReporterTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private DatagramSocket gmond;
+    private GangliaReporter reporter;
+
+    @Before
+    public void setUp() throws Exception {
+        gmond = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        gmond.setSoTimeout(200);
+        gmond.setReceiveBufferSize(1024 * 1024);
+        reporter = new GangliaReporter(registry, "127.0.0.1", gmond.getLocalPort(), "test");
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(5000000003L);
+        registry.newGauge(new MetricName("app", "web", "threads"), new GaugeMetric<Integer>() {
+            @Override
+            public Integer value() {
+                return 42;
+            }
+        });
+        registry.newGauge(new MetricName("app", "web", "load"), new GaugeMetric<Double>() {
+            @Override
+            public Double value() {
+                return -0.125;
+            }
+        });
+        registry.newGauge(new MetricName("app", "web", "state"), new GaugeMetric<String>() {
+            @Override
+            public String value() {
+                return "ok";
+            }
+        });
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        gmond.close();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void sendsMetadataOnlyOnTheFirstPoll() throws Exception {
+        reporter.run();
+        final List<Message> first = receive();
+        reporter.run();
+        final List<Message> second = receive();
+
+        assertThat("every field's metadata is sent on the first poll",
+                   count(first, 128),
+                   is(values(first)));
+
+        assertThat("no metadata is sent on the second poll",
+                   count(second, 128),
+                   is(0));
+
+        assertThat("every field's value is sent on the second poll",
+                   values(second),
+                   is(values(first)));
+    }
+
+    @Test
+    public void sendsTypedValues() throws Exception {
+        reporter.run();
+        final List<Message> messages = receive();
+
+        final Message threads = find(messages, "app.web.threads");
+        assertThat("an integer gauge's value is sent as an integer",
+                   threads.id,
+                   is(131));
+        assertThat("an integer gauge's value is sent as an integer",
+                   threads.value,
+                   is("42"));
+        assertThat("an integer gauge's value is sent as an integer",
+                   threads.format,
+                   is("%d"));
+
+        final Message counter = find(messages, "app.web.requests");
+        assertThat("a count is sent as a double",
+                   counter.id,
+                   is(135));
+        assertThat("a count beyond the range of an int32 is sent exactly",
+                   counter.value,
+                   is("5.000000003E9"));
+
+        final Message load = find(messages, "app.web.load");
+        assertThat("a double gauge's value is sent as a double",
+                   load.id,
+                   is(135));
+        assertThat("a double gauge's value is sent as a double",
+                   load.value,
+                   is("-0.125"));
+
+        final Message state = find(messages, "app.web.state");
+        assertThat("any other gauge's value is sent as a string",
+                   state.id,
+                   is(133));
+        assertThat("any other gauge's value is sent as a string",
+                   state.value,
+                   is("ok"));
+    }
+
+    @Test
+    public void sendsGanglia30Messages() throws Exception {
+        final GangliaReporter legacy = new GangliaReporter(registry, "127.0.0.1", gmond.getLocalPort(), "test",
+                                                           MetricPredicate.ALL, new Ganglia30Encoder());
+        try {
+            legacy.run();
+        } finally {
+            legacy.shutdown();
+        }
+        final List<Message> messages = receive();
+
+        assertThat("no metadata is sent",
+                   count(messages, 128),
+                   is(0));
+
+        assertThat("every message is a Ganglia 3.0 message",
+                   count(messages, 0),
+                   is(messages.size()));
+
+        final Message counter = find(messages, "app.web.requests");
+        assertThat("a count is formatted in decimal",
+                   counter.value,
+                   is("5000000003"));
+        assertThat("the message describes the field",
+                   counter.type,
+                   is("double"));
+        assertThat("the message describes the field",
+                   counter.tmax,
+                   is(60));
+
+        assertThat("a double is rounded to two decimal places",
+                   find(messages, "app.web.load").value,
+                   is("-0.13"));
+
+        assertThat("an integer is formatted in decimal",
+                   find(messages, "app.web.threads").value,
+                   is("42"));
+
+        assertThat("a string is sent as it is",
+                   find(messages, "app.web.state").value,
+                   is("ok"));
+    }
+
+    @Test
+    public void resendsMetadataPeriodically() throws Exception {
+        reporter.setMetadataInterval(2);
+
+        reporter.run();
+        final int fields = values(receive());
+        reporter.run();
+        final List<Message> second = receive();
+        reporter.run();
+        final List<Message> third = receive();
+
+        assertThat("metadata isn't sent between refreshes",
+                   count(second, 128),
+                   is(0));
+
+        assertThat("metadata is sent again every two polls",
+                   count(third, 128),
+                   is(fields));
+    }
+
+    @Test
+    public void resendsMetadataWhenAsked() throws Exception {
+        reporter.run();
+        final int fields = values(receive());
+
+        reporter.resendMetadata();
+        reporter.run();
+
+        assertThat("every field's metadata is sent again",
+                   count(receive(), 128),
+                   is(fields));
+    }
+
+    private static int count(List<Message> messages, int id) {
+        int count = 0;
+        for (Message message : messages) {
+            if (message.id == id) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int values(List<Message> messages) {
+        return count(messages, 131) + count(messages, 133) + count(messages, 135);
+    }
+
+    private static Message find(List<Message> messages, String name) {
+        for (Message message : messages) {
+            if (message.id != 128 && message.name.equals(name)) {
+                return message;
+            }
+        }
+        throw new AssertionError("no value for " + name);
+    }
+
+    private List<Message> receive() throws Exception {
+        final List<Message> messages = new ArrayList<Message>();
+        final byte[] buffer = new byte[1500];
+        while (true) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                gmond.receive(packet);
+            } catch (SocketTimeoutException e) {
+                return messages;
+            }
+            final DataInputStream in = new DataInputStream(
+                    new ByteArrayInputStream(packet.getData(), 0, packet.getLength()));
+            final Message message = new Message();
+            message.id = in.readInt();
+            if (message.id == 0) {
+                message.type = readString(in);
+                message.name = readString(in);
+                message.value = readString(in);
+                readString(in); // units
+                in.readInt(); // slope
+                message.tmax = in.readInt();
+            } else {
+                readString(in); // host
+                message.name = readString(in);
+                if (message.id != 128) {
+                    in.readInt(); // spoof
+                    message.format = readString(in);
+                    if (message.id == 131) {
+                        message.value = Integer.toString(in.readInt());
+                    } else if (message.id == 135) {
+                        message.value = Double.toString(in.readDouble());
+                    } else {
+                        message.value = readString(in);
+                    }
+                }
+            }
+            messages.add(message);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws Exception {
+        final byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        in.skipBytes((4 - bytes.length % 4) % 4);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static class Message {
+        int id;
+        String type;
+        String name;
+        String format;
+        String value;
+        int tmax;
+    }
+}
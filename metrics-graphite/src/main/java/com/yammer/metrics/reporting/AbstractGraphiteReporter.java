@@ -0,0 +1,276 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.*;
+import com.yammer.metrics.core.VirtualMachineMetrics.GarbageCollector;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.util.MetricPredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.Thread.State;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static com.yammer.metrics.core.VirtualMachineMetrics.daemonThreadCount;
+import static com.yammer.metrics.core.VirtualMachineMetrics.fileDescriptorUsage;
+import static com.yammer.metrics.core.VirtualMachineMetrics.garbageCollectors;
+import static com.yammer.metrics.core.VirtualMachineMetrics.heapUsage;
+import static com.yammer.metrics.core.VirtualMachineMetrics.memoryPoolUsage;
+import static com.yammer.metrics.core.VirtualMachineMetrics.nonHeapUsage;
+import static com.yammer.metrics.core.VirtualMachineMetrics.threadCount;
+import static com.yammer.metrics.core.VirtualMachineMetrics.threadStatePercentages;
+import static com.yammer.metrics.core.VirtualMachineMetrics.uptime;
+
+/**
+ * The base of reporters which encode metrics with a {@link GraphiteEncoder}
+ * into a reusable buffer and hand the buffer to {@link #send(ByteBuffer)}
+ * whenever it is full, and once more at the end of each poll.
+ * <p/>
+ * Metrics are reported with the same paths and fields as
+ * {@link GraphiteReporter}. Each metric's path is encoded the first time it
+ * is reported and kept for as long as the metric's name is in use.
+ */
+public abstract class AbstractGraphiteReporter extends AbstractPollingReporter {
+    private static final Logger LOG = LoggerFactory.getLogger(AbstractGraphiteReporter.class);
+
+    private static final byte[] NO_FIELD = new byte[0];
+    private static final byte[] VALUE = GraphiteEncoder.ascii(".value");
+    private static final byte[] COUNT = GraphiteEncoder.ascii(".count");
+    private static final byte[] MEAN_RATE = GraphiteEncoder.ascii(".meanRate");
+    private static final byte[] ONE_MINUTE_RATE = GraphiteEncoder.ascii(".1MinuteRate");
+    private static final byte[] FIVE_MINUTE_RATE = GraphiteEncoder.ascii(".5MinuteRate");
+    private static final byte[] FIFTEEN_MINUTE_RATE = GraphiteEncoder.ascii(".15MinuteRate");
+    private static final byte[] MIN = GraphiteEncoder.ascii(".min");
+    private static final byte[] MAX = GraphiteEncoder.ascii(".max");
+    private static final byte[] MEAN = GraphiteEncoder.ascii(".mean");
+    private static final byte[] STDDEV = GraphiteEncoder.ascii(".stddev");
+    private static final byte[][] PERCENTILES = {
+            GraphiteEncoder.ascii(".median"), GraphiteEncoder.ascii(".75percentile"),
+            GraphiteEncoder.ascii(".95percentile"), GraphiteEncoder.ascii(".98percentile"),
+            GraphiteEncoder.ascii(".99percentile"), GraphiteEncoder.ascii(".999percentile")
+    };
+
+    private final String prefix;
+    private final MetricPredicate predicate;
+    private final GraphiteEncoder encoder;
+    private final ByteBuffer buffer;
+    private final Map<MetricName, byte[][]> paths = new WeakHashMap<MetricName, byte[][]>();
+    private int oversized;
+    private String firstOversized;
+
+    /**
+     * Creates a new {@link AbstractGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param name            the name of the reporter's thread
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     * @param encoder         encodes datapoints
+     * @param bufferSize      the most bytes handed to {@link #send(ByteBuffer)}
+     *                        at once
+     */
+    protected AbstractGraphiteReporter(MetricsRegistry metricsRegistry, String name, String prefix,
+                                       MetricPredicate predicate, GraphiteEncoder encoder, int bufferSize) {
+        super(metricsRegistry, name);
+        this.prefix = prefix == null ? "" : prefix + ".";
+        this.predicate = predicate;
+        this.encoder = encoder;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    @Override
+    public synchronized void run() {
+        try {
+            final long epoch = System.currentTimeMillis() / 1000;
+            printVmMetrics(epoch);
+            printRegularMetrics(epoch);
+        } catch (Exception e) {
+            LOG.error("Error writing to Graphite:", e);
+        } finally {
+            flush();
+            if (oversized > 0) {
+                LOG.warn("Dropped {} datapoint(s) too large for a {}-byte buffer, starting with {}",
+                         new Object[]{oversized, buffer.capacity(), firstOversized});
+                oversized = 0;
+                firstOversized = null;
+            }
+        }
+    }
+
+    /**
+     * Sends encoded datapoints. Called from the reporting thread whenever the
+     * buffer is full and at the end of each poll, and never with an empty
+     * buffer. Whatever is left in {@code data} when this returns is
+     * discarded.
+     *
+     * @param data the encoded datapoints
+     */
+    protected abstract void send(ByteBuffer data);
+
+    /**
+     * Called whenever a datapoint is dropped because it doesn't fit in an
+     * empty buffer. Does nothing by default; the drops are logged once per
+     * poll either way.
+     */
+    protected void datapointDropped() {
+    }
+
+    private void printRegularMetrics(long epoch) {
+        for (Entry<MetricName, Metric> entry : metricsRegistry.allMetrics().entrySet()) {
+            final MetricName name = entry.getKey();
+            final Metric metric = entry.getValue();
+            if (metric != null && predicate.matches(name, metric)) {
+                final byte[][] path = path(name);
+                try {
+                    if (metric instanceof GaugeMetric<?>) {
+                        printGauge((GaugeMetric<?>) metric, path[0], path[1], epoch);
+                    } else if (metric instanceof CounterMetric) {
+                        print(path[0], COUNT, path[1], ((CounterMetric) metric).count(), epoch);
+                    } else if (metric instanceof HistogramMetric) {
+                        printSnapshot(snapshot((HistogramMetric) metric), path[0], path[1], epoch);
+                    } else if (metric instanceof MeterMetric) {
+                        printMetered((MeterMetric) metric, path[0], path[1], epoch);
+                    } else if (metric instanceof TimerMetric) {
+                        printMetered((TimerMetric) metric, path[0], path[1], epoch);
+                        printSnapshot(((TimerMetric) metric).snapshot(), path[0], path[1], epoch);
+                    }
+                } catch (Exception e) {
+                    LOG.error("Error printing regular metrics:", e);
+                }
+            }
+        }
+    }
+
+    private byte[][] path(MetricName name) {
+        byte[][] path = paths.get(name);
+        if (path == null) {
+            final StringBuilder builder = new StringBuilder(prefix);
+            builder.append(name.getGroup()).append('.').append(name.getType()).append('.');
+            if (name.hasScope()) {
+                builder.append(name.getScope()).append('.');
+            }
+            builder.append(name.getName());
+            path = new byte[][]{
+                    GraphiteEncoder.utf8(GraphiteReporter.sanitizeName(builder.toString())),
+                    GraphiteEncoder.utf8(GraphiteReporter.formatTags(name.getTags()))
+            };
+            paths.put(name, path);
+        }
+        return path;
+    }
+
+    private void printGauge(GaugeMetric<?> gauge, byte[] name, byte[] tags, long epoch) {
+        final Object value = gauge.value();
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            print(name, VALUE, tags, ((Number) value).longValue(), epoch);
+        } else {
+            print(name, VALUE, tags, String.valueOf(value), epoch);
+        }
+    }
+
+    private void printMetered(Metered meter, byte[] name, byte[] tags, long epoch) {
+        print(name, COUNT, tags, meter.count(), epoch);
+        print(name, MEAN_RATE, tags, meter.meanRate(), epoch);
+        print(name, ONE_MINUTE_RATE, tags, meter.oneMinuteRate(), epoch);
+        print(name, FIVE_MINUTE_RATE, tags, meter.fiveMinuteRate(), epoch);
+        print(name, FIFTEEN_MINUTE_RATE, tags, meter.fifteenMinuteRate(), epoch);
+    }
+
+    private void printSnapshot(Snapshot snapshot, byte[] name, byte[] tags, long epoch) {
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        print(name, MIN, tags, snapshot.min(), epoch);
+        print(name, MAX, tags, snapshot.max(), epoch);
+        print(name, MEAN, tags, snapshot.mean(), epoch);
+        print(name, STDDEV, tags, snapshot.stdDev(), epoch);
+        for (int i = 0; i < percentiles.length; i++) {
+            print(name, PERCENTILES[i], tags, percentiles[i], epoch);
+        }
+    }
+
+    private void printVmMetrics(long epoch) {
+        printVmField("jvm.memory.heap_usage", heapUsage(), epoch);
+        printVmField("jvm.memory.non_heap_usage", nonHeapUsage(), epoch);
+        for (Entry<String, Double> pool : memoryPoolUsage().entrySet()) {
+            printVmField("jvm.memory.memory_pool_usages." + pool.getKey(), pool.getValue(), epoch);
+        }
+
+        printVmField("jvm.daemon_thread_count", daemonThreadCount(), epoch);
+        printVmField("jvm.thread_count", threadCount(), epoch);
+        printVmField("jvm.uptime", uptime(), epoch);
+        printVmField("jvm.fd_usage", fileDescriptorUsage(), epoch);
+
+        for (Entry<State, Double> entry : threadStatePercentages().entrySet()) {
+            printVmField("jvm.thread-states." + entry.getKey().toString().toLowerCase(), entry.getValue(), epoch);
+        }
+
+        for (Entry<String, GarbageCollector> entry : garbageCollectors().entrySet()) {
+            print(vmName("jvm.gc." + entry.getKey() + ".time"), NO_FIELD, NO_FIELD,
+                  entry.getValue().getTime(TimeUnit.MILLISECONDS), epoch);
+            print(vmName("jvm.gc." + entry.getKey() + ".runs"), NO_FIELD, NO_FIELD,
+                  entry.getValue().getRuns(), epoch);
+        }
+    }
+
+    private void printVmField(String name, double value, long epoch) {
+        print(vmName(name), NO_FIELD, NO_FIELD, value, epoch);
+    }
+
+    private byte[] vmName(String name) {
+        return GraphiteEncoder.utf8(GraphiteReporter.sanitizeName(prefix + name));
+    }
+
+    private void print(byte[] name, byte[] field, byte[] tags, long value, long epoch) {
+        if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+            flush();
+            if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+                oversized(name, field);
+            }
+        }
+    }
+
+    private void print(byte[] name, byte[] field, byte[] tags, double value, long epoch) {
+        if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+            flush();
+            if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+                oversized(name, field);
+            }
+        }
+    }
+
+    private void print(byte[] name, byte[] field, byte[] tags, String value, long epoch) {
+        if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+            flush();
+            if (!encoder.encode(buffer, name, field, tags, value, epoch)) {
+                oversized(name, field);
+            }
+        }
+    }
+
+    private void oversized(byte[] name, byte[] field) {
+        if (oversized++ == 0) {
+            firstOversized = utf8(name) + utf8(field);
+        }
+        datapointDropped();
+    }
+
+    private static String utf8(byte[] bytes) {
+        try {
+            return new String(bytes, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void flush() {
+        encoder.finish(buffer);
+        buffer.flip();
+        if (buffer.hasRemaining()) {
+            send(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,165 @@
+package com.yammer.metrics.reporting;
+
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * Encodes datapoints in one of Graphite's wire formats into a
+ * {@link ByteBuffer}, without building a string per datapoint.
+ * <p/>
+ * A datapoint's path is given as three parts which are written one after
+ * another: the metric's name (e.g., {@code app.requests}), the field (e.g.,
+ * {@code .count}, which may be empty) and the metric's tags (e.g.,
+ * {@code ;status=200}, which may also be empty). Every method which writes a
+ * datapoint returns {@code false}, leaving the buffer as it was, if the
+ * datapoint doesn't fit in the buffer's remaining space; the caller is then
+ * expected to {@link #finish(ByteBuffer) finish} the buffer, send its
+ * contents and try again with an empty buffer.
+ */
+public abstract class GraphiteEncoder {
+    private static final byte[] MIN_LONG = ascii(Long.toString(Long.MIN_VALUE));
+
+    /**
+     * The most bytes {@link #putLong(ByteBuffer, long)} or
+     * {@link #putDouble(ByteBuffer, double)} can write.
+     */
+    protected static final int MAX_NUMBER_LENGTH = 24;
+
+    /**
+     * Writes a datapoint with an integral value.
+     *
+     * @param buffer    the buffer to write to
+     * @param name      the metric's name
+     * @param field     the field's suffix
+     * @param tags      the metric's tags
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @return {@code false} if the datapoint didn't fit in the buffer
+     */
+    public abstract boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags,
+                                   long value, long timestamp);
+
+    /**
+     * Writes a datapoint with a fractional value, rounded to two decimal
+     * places.
+     *
+     * @param buffer    the buffer to write to
+     * @param name      the metric's name
+     * @param field     the field's suffix
+     * @param tags      the metric's tags
+     * @param value     the value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @return {@code false} if the datapoint didn't fit in the buffer
+     */
+    public abstract boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags,
+                                   double value, long timestamp);
+
+    /**
+     * Writes a datapoint whose value is already formatted (e.g., a gauge's
+     * value).
+     *
+     * @param buffer    the buffer to write to
+     * @param name      the metric's name
+     * @param field     the field's suffix
+     * @param tags      the metric's tags
+     * @param value     the formatted value
+     * @param timestamp the time of the datapoint, in seconds since the epoch
+     * @return {@code false} if the datapoint didn't fit in the buffer
+     */
+    public abstract boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags,
+                                   String value, long timestamp);
+
+    /**
+     * Completes whatever has been written to the buffer so that it can be
+     * sent. Does nothing by default.
+     *
+     * @param buffer the buffer which is about to be sent
+     */
+    public void finish(ByteBuffer buffer) {
+    }
+
+    /**
+     * Writes the decimal digits of {@code value}.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value
+     */
+    protected static void putLong(ByteBuffer buffer, long value) {
+        if (value == Long.MIN_VALUE) {
+            buffer.put(MIN_LONG);
+            return;
+        }
+        if (value < 0) {
+            buffer.put((byte) '-');
+            value = -value;
+        }
+        final int start = buffer.position();
+        final int end = start + digits(value);
+        for (int i = end - 1; i >= start; i--) {
+            buffer.put(i, (byte) ('0' + value % 10));
+            value /= 10;
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * Writes {@code value} rounded to two decimal places, as
+     * {@code String.format("%2.2f", value)} would.
+     *
+     * @param buffer the buffer to write to
+     * @param value  the value
+     */
+    protected static void putDouble(ByteBuffer buffer, double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value) || Math.abs(value) >= 1e15) {
+            buffer.put(ascii(String.format(Locale.US, "%2.2f", value)));
+            return;
+        }
+        if (Double.compare(value, 0.0) < 0) {
+            buffer.put((byte) '-');
+        }
+        final long hundredths = Math.round(Math.abs(value) * 100);
+        putLong(buffer, hundredths / 100);
+        final int fraction = (int) (hundredths % 100);
+        buffer.put((byte) '.');
+        buffer.put((byte) ('0' + fraction / 10));
+        buffer.put((byte) ('0' + fraction % 10));
+    }
+
+    /**
+     * Returns the bytes of a string of ASCII characters.
+     *
+     * @param s a string of ASCII characters
+     * @return {@code s}'s bytes
+     */
+    protected static byte[] ascii(String s) {
+        final byte[] bytes = new byte[s.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) s.charAt(i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the UTF-8 bytes of a string.
+     *
+     * @param s a string
+     * @return {@code s}'s UTF-8 bytes
+     */
+    protected static byte[] utf8(String s) {
+        try {
+            return s.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static int digits(long value) {
+        int digits = 1;
+        while (value >= 10) {
+            value /= 10;
+            digits++;
+        }
+        return digits;
+    }
+}
@@ -3,6 +3,7 @@ package com.yammer.metrics.reporting;
 import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.*;
 import com.yammer.metrics.core.VirtualMachineMetrics.*;
+import com.yammer.metrics.stats.Snapshot;
 import com.yammer.metrics.util.MetricPredicate;
 import com.yammer.metrics.util.Utils;
 import org.slf4j.Logger;
@@ -203,22 +204,23 @@ public class GraphiteReporter extends AbstractPollingReporter {
     }
 
     private void printRegularMetrics(long epoch) {
-        for (Entry<String, Map<String, Metric>> entry : Utils.sortAndFilterMetrics(metricsRegistry.allMetrics(), this.predicate).entrySet()) {
-            for (Entry<String, Metric> subEntry : entry.getValue().entrySet()) {
-                final String simpleName = sanitizeName(entry.getKey() + "." + subEntry.getKey());
+        for (Entry<String, Map<MetricName, Metric>> entry : Utils.sortAndFilterMetricNames(metricsRegistry.allMetrics(), this.predicate).entrySet()) {
+            for (Entry<MetricName, Metric> subEntry : entry.getValue().entrySet()) {
+                final String simpleName = sanitizeName(entry.getKey() + "." + subEntry.getKey().getName());
+                final String tags = formatTags(subEntry.getKey().getTags());
                 final Metric metric = subEntry.getValue();
                 if (metric != null) {
                     try {
                         if (metric instanceof GaugeMetric<?>) {
-                            printGauge((GaugeMetric<?>) metric, simpleName, epoch);
+                            printGauge((GaugeMetric<?>) metric, simpleName, tags, epoch);
                         } else if (metric instanceof CounterMetric) {
-                            printCounter((CounterMetric) metric, simpleName, epoch);
+                            printCounter((CounterMetric) metric, simpleName, tags, epoch);
                         } else if (metric instanceof HistogramMetric) {
-                            printHistogram((HistogramMetric) metric, simpleName, epoch);
+                            printHistogram((HistogramMetric) metric, simpleName, tags, epoch);
                         } else if (metric instanceof MeterMetric) {
-                            printMetered((MeterMetric) metric, simpleName, epoch);
+                            printMetered((MeterMetric) metric, simpleName, tags, epoch);
                         } else if (metric instanceof TimerMetric) {
-                            printTimer((TimerMetric) metric, simpleName, epoch);
+                            printTimer((TimerMetric) metric, simpleName, tags, epoch);
                         }
                     } catch (Exception ignored) {
                         LOG.error("Error printing regular metrics:", ignored);
@@ -236,64 +238,86 @@ public class GraphiteReporter extends AbstractPollingReporter {
         }
     }
 
-    private String sanitizeName(String name) {
+    static String sanitizeName(String name) {
       return name.replace(' ', '-');
     }
 
-    private void printGauge(GaugeMetric<?> gauge, String name, long epoch) {
-        sendToGraphite(String.format(locale, "%s%s.%s %s %d\n", prefix, sanitizeName(name), "value", gauge.value(), epoch));
+    /**
+     * Formats tags as Graphite's tagged series suffix (e.g.,
+     * {@code ;endpoint=/search;status=200}), which Graphite 1.1 and later
+     * index as tags rather than as part of the metric's path.
+     */
+    static String formatTags(MetricTags tags) {
+        if (tags.isEmpty()) {
+            return "";
+        }
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tags.size(); i++) {
+            builder.append(';').append(sanitizeTag(tags.key(i))).append('=').append(sanitizeTag(tags.value(i)));
+        }
+        return builder.toString();
+    }
+
+    private static String sanitizeTag(String tag) {
+        return tag.replace(' ', '-').replace(';', '_').replace('~', '_');
+    }
+
+    private void printGauge(GaugeMetric<?> gauge, String name, String tags, long epoch) {
+        sendToGraphite(String.format(locale, "%s%s.%s%s %s %d\n", prefix, sanitizeName(name), "value", tags, gauge.value(), epoch));
     }
 
-    private void printCounter(CounterMetric counter, String name, long epoch) {
-        sendToGraphite(String.format(locale, "%s%s.%s %d %d\n", prefix, sanitizeName(name), "count", counter.count(), epoch));
+    private void printCounter(CounterMetric counter, String name, String tags, long epoch) {
+        sendToGraphite(String.format(locale, "%s%s.%s%s %d %d\n", prefix, sanitizeName(name), "count", tags, counter.count(), epoch));
     }
 
-    private void printMetered(Metered meter, String name, long epoch) {
+    private void printMetered(Metered meter, String name, String tags, long epoch) {
         final String sanitizedName = sanitizeName(name);
         final StringBuilder lines = new StringBuilder();
-        lines.append(String.format(locale, "%s%s.%s %d %d\n",    prefix, sanitizedName, "count",        meter.count(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "meanRate",     meter.meanRate(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "1MinuteRate",  meter.oneMinuteRate(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "5MinuteRate",  meter.fiveMinuteRate(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "15MinuteRate", meter.fifteenMinuteRate(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %d %d\n",    prefix, sanitizedName, "count",        tags, meter.count(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "meanRate",     tags, meter.meanRate(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "1MinuteRate",  tags, meter.oneMinuteRate(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "5MinuteRate",  tags, meter.fiveMinuteRate(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "15MinuteRate", tags, meter.fifteenMinuteRate(), epoch));
         sendToGraphite(lines.toString());
     }
 
-    private void printHistogram(HistogramMetric histogram, String name, long epoch) {
+    private void printHistogram(HistogramMetric histogram, String name, String tags, long epoch) {
         final String sanitizedName = sanitizeName(name);
-        final double[] percentiles = histogram.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        final Snapshot snapshot = snapshot(histogram);
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
         final StringBuilder lines = new StringBuilder();
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "min",           histogram.min(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "max",           histogram.max(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "mean",          histogram.mean(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "stddev",        histogram.stdDev(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "median",        percentiles[0], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "75percentile",  percentiles[1], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "95percentile",  percentiles[2], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "98percentile",  percentiles[3], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "99percentile",  percentiles[4], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "999percentile", percentiles[5], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "min",           tags, snapshot.min(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "max",           tags, snapshot.max(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "mean",          tags, snapshot.mean(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "stddev",        tags, snapshot.stdDev(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "median",        tags, percentiles[0], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "75percentile",  tags, percentiles[1], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "95percentile",  tags, percentiles[2], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "98percentile",  tags, percentiles[3], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "99percentile",  tags, percentiles[4], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "999percentile", tags, percentiles[5], epoch));
 
         sendToGraphite(lines.toString());
     }
 
-    private void printTimer(TimerMetric timer, String name, long epoch) {
-        printMetered(timer, name, epoch);
+    private void printTimer(TimerMetric timer, String name, String tags, long epoch) {
+        printMetered(timer, name, tags, epoch);
 
         final String sanitizedName = sanitizeName(name);
-        final double[] percentiles = timer.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+        final Snapshot snapshot = timer.snapshot();
+        final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
 
         final StringBuilder lines = new StringBuilder();
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "min",           timer.min(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "max",           timer.max(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "mean",          timer.mean(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "stddev",        timer.stdDev(), epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "median",        percentiles[0], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "75percentile",  percentiles[1], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "95percentile",  percentiles[2], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "98percentile",  percentiles[3], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "99percentile",  percentiles[4], epoch));
-        lines.append(String.format(locale, "%s%s.%s %2.2f %d\n", prefix, sanitizedName, "999percentile", percentiles[5], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "min",           tags, snapshot.min(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "max",           tags, snapshot.max(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "mean",          tags, snapshot.mean(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "stddev",        tags, snapshot.stdDev(), epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "median",        tags, percentiles[0], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "75percentile",  tags, percentiles[1], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "95percentile",  tags, percentiles[2], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "98percentile",  tags, percentiles[3], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "99percentile",  tags, percentiles[4], epoch));
+        lines.append(String.format(locale, "%s%s.%s%s %2.2f %d\n", prefix, sanitizedName, "999percentile", tags, percentiles[5], epoch));
         sendToGraphite(lines.toString());
     }
 
@@ -0,0 +1,337 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.util.MetricPredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A reporter which sends application metrics to a
+ * <a href="http://graphite.wikidot.com/faq">Graphite</a> server periodically
+ * over a connection which it keeps open between polls.
+ * <p/>
+ * Unlike {@link GraphiteReporter}, which connects for every poll and formats
+ * every line with {@link String#format(String, Object...)}, this reporter
+ * encodes datapoints straight into a reusable direct buffer and writes the
+ * buffer to a non-blocking {@link SocketChannel} whenever it fills up.
+ * Connecting and writing both time out, so a slow or unresponsive Graphite
+ * server can't stall the reporting thread for longer than the timeouts.
+ * <p/>
+ * While the server can't be reached, encoded data is kept in a backlog of up
+ * to {@link #DEFAULT_MAX_BACKLOG} bytes (by default), dropping the oldest
+ * data first, and is sent ahead of new data once the connection is back.
+ * Reconnection attempts back off exponentially, from one second up to a
+ * minute, so an outage doesn't cost a connection timeout on every poll.
+ * <p/>
+ * Datapoints are sent in the plaintext protocol by default. To send them
+ * in batches in the pickle protocol, which carbon parses much more cheaply,
+ * pass a {@link PickleGraphiteEncoder} and carbon's pickle port (usually
+ * 2004).
+ */
+public class NioGraphiteReporter extends AbstractGraphiteReporter {
+    /**
+     * The default connect timeout, in milliseconds.
+     */
+    public static final long DEFAULT_CONNECT_TIMEOUT = 5000;
+
+    /**
+     * The default write timeout, in milliseconds.
+     */
+    public static final long DEFAULT_WRITE_TIMEOUT = 5000;
+
+    /**
+     * The default number of bytes kept while the server can't be reached.
+     */
+    public static final int DEFAULT_MAX_BACKLOG = 8 * 1024 * 1024;
+
+    private static final Logger LOG = LoggerFactory.getLogger(NioGraphiteReporter.class);
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final long MIN_BACKOFF = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_BACKOFF = TimeUnit.MINUTES.toNanos(1);
+
+    private final String host;
+    private final int port;
+    private final Deque<ByteBuffer> backlog = new ArrayDeque<ByteBuffer>();
+    private volatile long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile long writeTimeout = DEFAULT_WRITE_TIMEOUT;
+    private volatile int maxBacklog = DEFAULT_MAX_BACKLOG;
+    private volatile int backlogBytes;
+    private SocketChannel channel;
+    private Selector selector;
+    private SelectionKey key;
+    private long backoff;
+    private long nextConnect;
+
+    /**
+     * Enables the reporter to send data for the default metrics registry to
+     * graphite server with the specified period.
+     *
+     * @param period the period between successive outputs
+     * @param unit   the time unit of {@code period}
+     * @param host   the host name of graphite server (carbon-cache agent)
+     * @param port   the port number on which the graphite server is listening
+     * @param prefix the string which is prepended to all metric names
+     */
+    public static void enable(long period, TimeUnit unit, String host, int port, String prefix) {
+        enable(Metrics.defaultRegistry(), period, unit, host, port, prefix);
+    }
+
+    /**
+     * Enables the reporter to send data for the given metrics registry to
+     * graphite server with the specified period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param period          the period between successive outputs
+     * @param unit            the time unit of {@code period}
+     * @param host            the host name of graphite server (carbon-cache agent)
+     * @param port            the port number on which the graphite server is listening
+     * @param prefix          the string which is prepended to all metric names
+     */
+    public static void enable(MetricsRegistry metricsRegistry, long period, TimeUnit unit, String host, int port, String prefix) {
+        final NioGraphiteReporter reporter = new NioGraphiteReporter(metricsRegistry, host, port, prefix);
+        reporter.start(period, unit);
+    }
+
+    /**
+     * Creates a new {@link NioGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is running
+     * @param prefix          is prepended to all names reported to graphite
+     */
+    public NioGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix) {
+        this(metricsRegistry, host, port, prefix, MetricPredicate.ALL);
+    }
+
+    /**
+     * Creates a new {@link NioGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is running
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     */
+    public NioGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix, MetricPredicate predicate) {
+        this(metricsRegistry, host, port, prefix, predicate, new PlaintextGraphiteEncoder());
+    }
+
+    /**
+     * Creates a new {@link NioGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is running
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     * @param encoder         encodes datapoints in the protocol the server
+     *                        expects on {@code port}
+     */
+    public NioGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix, MetricPredicate predicate, GraphiteEncoder encoder) {
+        super(metricsRegistry, "graphite-reporter", prefix, predicate, encoder, BUFFER_SIZE);
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Sets how long to wait for a connection to the server.
+     *
+     * @param timeout the connect timeout
+     * @param unit    the time unit of {@code timeout}
+     */
+    public void setConnectTimeout(long timeout, TimeUnit unit) {
+        this.connectTimeout = Math.max(1, unit.toMillis(timeout));
+    }
+
+    /**
+     * Sets how long to wait for the server to accept more data before
+     * giving up on the connection.
+     *
+     * @param timeout the write timeout
+     * @param unit    the time unit of {@code timeout}
+     */
+    public void setWriteTimeout(long timeout, TimeUnit unit) {
+        this.writeTimeout = Math.max(1, unit.toMillis(timeout));
+    }
+
+    /**
+     * Sets the most bytes kept while the server can't be reached. Once the
+     * backlog is full, the oldest data is dropped.
+     *
+     * @param maxBacklog the most bytes to keep
+     */
+    public void setMaxBacklog(int maxBacklog) {
+        this.maxBacklog = maxBacklog;
+    }
+
+    /**
+     * Returns the number of bytes waiting to be sent.
+     *
+     * @return the number of bytes waiting to be sent
+     */
+    public int getBacklogBytes() {
+        return backlogBytes;
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (this) {
+            disconnect();
+        }
+    }
+
+    /**
+     * Sends {@code data} after the backlog, or adds it to the backlog if the
+     * server can't be reached.
+     */
+    @Override
+    protected void send(ByteBuffer data) {
+        if (connect()) {
+            try {
+                while (!backlog.isEmpty()) {
+                    write(backlog.peekFirst());
+                    backlogBytes -= backlog.removeFirst().capacity();
+                }
+                write(data);
+            } catch (IOException e) {
+                LOG.warn("Error writing to Graphite: {}", e.getMessage());
+                disconnect();
+                retryLater();
+            }
+        }
+        if (data.hasRemaining()) {
+            queue(data);
+        }
+    }
+
+    /**
+     * Writes all of {@code data}, or rewinds it and throws if the server
+     * doesn't accept it in time, so that it can be sent again in full over
+     * a new connection.
+     */
+    private void write(ByteBuffer data) throws IOException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(writeTimeout);
+        try {
+            while (data.hasRemaining()) {
+                if (channel.write(data) == 0) {
+                    final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException("write timed out");
+                    }
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    selector.select(remaining);
+                    selector.selectedKeys().clear();
+                }
+            }
+        } catch (IOException e) {
+            data.rewind();
+            throw e;
+        }
+    }
+
+    private void queue(ByteBuffer data) {
+        final ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+        copy.put(data).flip();
+        backlog.addLast(copy);
+        backlogBytes += copy.capacity();
+        if (backlogBytes > maxBacklog) {
+            LOG.warn("Graphite backlog is full, dropping the oldest data");
+            while (backlogBytes > maxBacklog && !backlog.isEmpty()) {
+                backlogBytes -= backlog.removeFirst().capacity();
+            }
+        }
+    }
+
+    /**
+     * Returns {@code true} if there is a connection to the server, trying to
+     * connect if there isn't one and the last attempt was long enough ago.
+     */
+    private boolean connect() {
+        if (channel != null) {
+            return true;
+        }
+        if (backoff > 0 && System.nanoTime() - nextConnect < 0) {
+            return false;
+        }
+        SocketChannel newChannel = null;
+        Selector newSelector = null;
+        try {
+            final InetSocketAddress address = new InetSocketAddress(host, port);
+            if (address.isUnresolved()) {
+                throw new UnknownHostException(host);
+            }
+            newChannel = SocketChannel.open();
+            newChannel.configureBlocking(false);
+            newSelector = Selector.open();
+            final SelectionKey newKey = newChannel.register(newSelector, SelectionKey.OP_CONNECT);
+            final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(connectTimeout);
+            if (!newChannel.connect(address)) {
+                while (!newChannel.finishConnect()) {
+                    final long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                    if (remaining <= 0) {
+                        throw new SocketTimeoutException("connect timed out");
+                    }
+                    newSelector.select(remaining);
+                    newSelector.selectedKeys().clear();
+                }
+            }
+            channel = newChannel;
+            selector = newSelector;
+            key = newKey;
+            backoff = 0;
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Error connecting to Graphite: {}", e.getMessage());
+        } catch (UnresolvedAddressException e) {
+            LOG.warn("Unable to resolve {}", host);
+        }
+        close(newSelector, newChannel);
+        retryLater();
+        return false;
+    }
+
+    private void retryLater() {
+        backoff = backoff == 0 ? MIN_BACKOFF : Math.min(backoff * 2, MAX_BACKOFF);
+        nextConnect = System.nanoTime() + backoff;
+    }
+
+    private void disconnect() {
+        close(selector, channel);
+        selector = null;
+        channel = null;
+        key = null;
+    }
+
+    private static void close(Selector selector, SocketChannel channel) {
+        if (selector != null) {
+            try {
+                selector.close();
+            } catch (IOException e) {
+                LOG.error("Error while closing selector:", e);
+            }
+        }
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.error("Error while closing channel:", e);
+            }
+        }
+    }
+}
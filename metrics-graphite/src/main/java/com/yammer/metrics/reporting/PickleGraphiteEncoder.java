@@ -0,0 +1,150 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints in Graphite's pickle protocol, as carbon accepts on
+ * port 2004: frames of a four-byte length followed by a pickled list of
+ * {@code (path, (timestamp, value))} tuples.
+ * <p/>
+ * Carbon parses a frame of many datapoints with a single call into its
+ * unpickler, which takes far less of its time than parsing as many lines of
+ * the plaintext protocol. Each frame holds at most a configurable number of
+ * datapoints, and never more than fits in the buffer it is written to.
+ * Values are sent as floats, which is how carbon stores them anyway.
+ */
+public class PickleGraphiteEncoder extends GraphiteEncoder {
+    /**
+     * The default number of datapoints in a frame.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private static final byte PROTO = (byte) 0x80;
+    private static final byte EMPTY_LIST = ']';
+    private static final byte MARK = '(';
+    private static final byte BINUNICODE = 'X';
+    private static final byte BININT = 'J';
+    private static final byte LONG1 = (byte) 0x8a;
+    private static final byte BINFLOAT = 'G';
+    private static final byte TUPLE2 = (byte) 0x86;
+    private static final byte APPENDS = 'e';
+    private static final byte STOP = '.';
+
+    // the length, the protocol, the list and the mark
+    private static final int HEADER_LENGTH = 4 + 2 + 1 + 1;
+    // APPENDS and STOP
+    private static final int TRAILER_LENGTH = 2;
+    // the path's opcode and length, the timestamp as a LONG1, the value's
+    // opcode and the two tuples
+    private static final int DATAPOINT_OVERHEAD = 5 + 10 + 1 + 2;
+
+    private final int maxBatchSize;
+    private int frameStart = -1;
+    private int batchSize;
+
+    /**
+     * Creates a new {@link PickleGraphiteEncoder} which sends up to
+     * {@link #DEFAULT_BATCH_SIZE} datapoints in a frame.
+     */
+    public PickleGraphiteEncoder() {
+        this(DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Creates a new {@link PickleGraphiteEncoder}.
+     *
+     * @param maxBatchSize the most datapoints to send in a frame
+     */
+    public PickleGraphiteEncoder(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize must be positive");
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, long value, long timestamp) {
+        return encode(buffer, name, field, tags, (double) value, timestamp);
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, double value, long timestamp) {
+        if (!putPath(buffer, name, field, tags, 8)) {
+            return false;
+        }
+        putTimestamp(buffer, timestamp);
+        buffer.put(BINFLOAT).putDouble(value);
+        endDatapoint(buffer);
+        return true;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, String value, long timestamp) {
+        final byte[] bytes = utf8(value);
+        if (!putPath(buffer, name, field, tags, 4 + bytes.length)) {
+            return false;
+        }
+        putTimestamp(buffer, timestamp);
+        buffer.put(BINUNICODE);
+        putLittleEndianInt(buffer, bytes.length);
+        buffer.put(bytes);
+        endDatapoint(buffer);
+        return true;
+    }
+
+    @Override
+    public void finish(ByteBuffer buffer) {
+        if (frameStart >= 0) {
+            buffer.put(APPENDS).put(STOP);
+            buffer.putInt(frameStart, buffer.position() - frameStart - 4);
+            frameStart = -1;
+            batchSize = 0;
+        }
+    }
+
+    /**
+     * Starts a frame if there isn't one open and writes a datapoint's path,
+     * if there is room for the whole datapoint.
+     */
+    private boolean putPath(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, int valueLength) {
+        final int pathLength = name.length + field.length + tags.length;
+        final int header = frameStart < 0 ? HEADER_LENGTH : 0;
+        if (buffer.remaining() < header + pathLength + valueLength + DATAPOINT_OVERHEAD + TRAILER_LENGTH) {
+            return false;
+        }
+        if (frameStart < 0) {
+            frameStart = buffer.position();
+            buffer.putInt(0).put(PROTO).put((byte) 2).put(EMPTY_LIST).put(MARK);
+        }
+        buffer.put(BINUNICODE);
+        putLittleEndianInt(buffer, pathLength);
+        buffer.put(name).put(field).put(tags);
+        return true;
+    }
+
+    private void endDatapoint(ByteBuffer buffer) {
+        buffer.put(TUPLE2).put(TUPLE2);
+        if (++batchSize >= maxBatchSize) {
+            finish(buffer);
+        }
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, long timestamp) {
+        if (timestamp == (int) timestamp) {
+            buffer.put(BININT);
+            putLittleEndianInt(buffer, (int) timestamp);
+        } else {
+            buffer.put(LONG1).put((byte) 8);
+            for (int i = 0; i < 8; i++) {
+                buffer.put((byte) (timestamp >>> (8 * i)));
+            }
+        }
+    }
+
+    private static void putLittleEndianInt(ByteBuffer buffer, int value) {
+        buffer.put((byte) value)
+              .put((byte) (value >>> 8))
+              .put((byte) (value >>> 16))
+              .put((byte) (value >>> 24));
+    }
+}
@@ -0,0 +1,58 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints in Graphite's plaintext protocol, one
+ * {@code path value timestamp} line per datapoint, as carbon accepts on
+ * port 2003.
+ */
+public class PlaintextGraphiteEncoder extends GraphiteEncoder {
+    // a space, a space and a newline, plus the timestamp
+    private static final int OVERHEAD = 3 + MAX_NUMBER_LENGTH;
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, long value, long timestamp) {
+        if (!putPath(buffer, name, field, tags, MAX_NUMBER_LENGTH)) {
+            return false;
+        }
+        putLong(buffer, value);
+        putTimestamp(buffer, timestamp);
+        return true;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, double value, long timestamp) {
+        if (!putPath(buffer, name, field, tags, MAX_NUMBER_LENGTH)) {
+            return false;
+        }
+        putDouble(buffer, value);
+        putTimestamp(buffer, timestamp);
+        return true;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, String value, long timestamp) {
+        final byte[] bytes = utf8(value);
+        if (!putPath(buffer, name, field, tags, bytes.length)) {
+            return false;
+        }
+        buffer.put(bytes);
+        putTimestamp(buffer, timestamp);
+        return true;
+    }
+
+    private static boolean putPath(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, int valueLength) {
+        if (buffer.remaining() < name.length + field.length + tags.length + valueLength + OVERHEAD) {
+            return false;
+        }
+        buffer.put(name).put(field).put(tags).put((byte) ' ');
+        return true;
+    }
+
+    private static void putTimestamp(ByteBuffer buffer, long timestamp) {
+        buffer.put((byte) ' ');
+        putLong(buffer, timestamp);
+        buffer.put((byte) '\n');
+    }
+}
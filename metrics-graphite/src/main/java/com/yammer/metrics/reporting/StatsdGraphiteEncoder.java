@@ -0,0 +1,100 @@
+package com.yammer.metrics.reporting;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes datapoints as <a href="https://github.com/etsy/statsd">statsd</a>
+ * gauges, one {@code path:value|g} line per datapoint.
+ * <p/>
+ * Every field is sent as a gauge, since the values have already been
+ * aggregated; timestamps are left out, as statsd stamps datapoints itself
+ * when it flushes. Statsd reads a gauge with a leading sign as a change to
+ * the current value, so a negative value is sent as a gauge of zero followed
+ * by the value. Values which aren't finite are left out. Statsd splits lines
+ * on colons, pipes and newlines, so any of those in a path (e.g., in a
+ * {@code host:8080} scope or a tag value) is replaced with an underscore.
+ */
+public class StatsdGraphiteEncoder extends GraphiteEncoder {
+    private static final byte[] GAUGE = ascii("|g\n");
+    private static final byte[] ZERO = ascii("0");
+    // the colon and the gauge suffix
+    private static final int OVERHEAD = 1 + 3;
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, long value, long timestamp) {
+        if (!hasRoom(buffer, name, field, tags, MAX_NUMBER_LENGTH, value < 0)) {
+            return false;
+        }
+        if (value < 0) {
+            putGauge(buffer, name, field, tags, ZERO);
+        }
+        putPath(buffer, name, field, tags);
+        putLong(buffer, value);
+        buffer.put(GAUGE);
+        return true;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, double value, long timestamp) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return true;
+        }
+        final boolean negative = Double.compare(value, 0.0) < 0;
+        if (!hasRoom(buffer, name, field, tags, MAX_NUMBER_LENGTH, negative)) {
+            return false;
+        }
+        if (negative) {
+            putGauge(buffer, name, field, tags, ZERO);
+        }
+        putPath(buffer, name, field, tags);
+        putDouble(buffer, value);
+        buffer.put(GAUGE);
+        return true;
+    }
+
+    @Override
+    public boolean encode(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, String value, long timestamp) {
+        final byte[] bytes = utf8(value);
+        final boolean negative = value.startsWith("-");
+        if (!hasRoom(buffer, name, field, tags, bytes.length, negative)) {
+            return false;
+        }
+        if (negative) {
+            putGauge(buffer, name, field, tags, ZERO);
+        }
+        putGauge(buffer, name, field, tags, bytes);
+        return true;
+    }
+
+    private static boolean hasRoom(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags,
+                                   int valueLength, boolean negative) {
+        final int pathLength = name.length + field.length + tags.length;
+        int length = pathLength + valueLength + OVERHEAD;
+        if (negative) {
+            length += pathLength + ZERO.length + OVERHEAD;
+        }
+        return buffer.remaining() >= length;
+    }
+
+    private static void putGauge(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags, byte[] value) {
+        putPath(buffer, name, field, tags);
+        buffer.put(value).put(GAUGE);
+    }
+
+    private static void putPath(ByteBuffer buffer, byte[] name, byte[] field, byte[] tags) {
+        putEscaped(buffer, name);
+        putEscaped(buffer, field);
+        putEscaped(buffer, tags);
+        buffer.put((byte) ':');
+    }
+
+    private static void putEscaped(ByteBuffer buffer, byte[] path) {
+        for (byte b : path) {
+            if (b == ':' || b == '|' || b == '\n') {
+                buffer.put((byte) '_');
+            } else {
+                buffer.put(b);
+            }
+        }
+    }
+}
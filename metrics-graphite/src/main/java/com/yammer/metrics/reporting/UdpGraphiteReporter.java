@@ -0,0 +1,203 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.Metrics;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.util.MetricPredicate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.UnresolvedAddressException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A reporter which sends application metrics periodically as UDP datagrams,
+ * either to a <a href="http://graphite.wikidot.com/faq">Graphite</a> server
+ * with its UDP listener enabled or, with a {@link StatsdGraphiteEncoder}, to
+ * a <a href="https://github.com/etsy/statsd">statsd</a> daemon.
+ * <p/>
+ * Sending never waits for the server: datagrams are sent from a single
+ * non-blocking {@link DatagramChannel}, and a datagram which can't be sent
+ * straight away is dropped. As many datapoints as fit are packed into each
+ * datagram, which is {@link #DEFAULT_PACKET_SIZE} bytes at most by default
+ * so that it fits in one Ethernet frame, and datagrams are encoded in a
+ * single reusable direct buffer. The number of datagrams and bytes sent and
+ * of datagrams dropped are counted, so the reporter's own cost can be
+ * watched.
+ */
+public class UdpGraphiteReporter extends AbstractGraphiteReporter {
+    /**
+     * The default largest datagram, the 1500-byte Ethernet MTU less the IP
+     * and UDP headers.
+     */
+    public static final int DEFAULT_PACKET_SIZE = 1500 - 20 - 8;
+
+    private static final Logger LOG = LoggerFactory.getLogger(UdpGraphiteReporter.class);
+
+    private final String host;
+    private final int port;
+    private final AtomicLong packetsSent = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong packetsDropped = new AtomicLong();
+    private InetSocketAddress address;
+    private DatagramChannel channel;
+
+    /**
+     * Enables the reporter to send data for the given metrics registry to
+     * graphite server with the specified period.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param period          the period between successive outputs
+     * @param unit            the time unit of {@code period}
+     * @param host            the host name of graphite server
+     * @param port            the port number on which the graphite server is listening
+     * @param prefix          the string which is prepended to all metric names
+     */
+    public static void enable(MetricsRegistry metricsRegistry, long period, TimeUnit unit, String host, int port, String prefix) {
+        final UdpGraphiteReporter reporter = new UdpGraphiteReporter(metricsRegistry, host, port, prefix);
+        reporter.start(period, unit);
+    }
+
+    /**
+     * Enables the reporter to send data for the default metrics registry to
+     * graphite server with the specified period.
+     *
+     * @param period the period between successive outputs
+     * @param unit   the time unit of {@code period}
+     * @param host   the host name of graphite server
+     * @param port   the port number on which the graphite server is listening
+     * @param prefix the string which is prepended to all metric names
+     */
+    public static void enable(long period, TimeUnit unit, String host, int port, String prefix) {
+        enable(Metrics.defaultRegistry(), period, unit, host, port, prefix);
+    }
+
+    /**
+     * Creates a new {@link UdpGraphiteReporter} which sends Graphite's
+     * plaintext protocol.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is listening
+     * @param prefix          is prepended to all names reported to graphite
+     */
+    public UdpGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix) {
+        this(metricsRegistry, host, port, prefix, MetricPredicate.ALL, new PlaintextGraphiteEncoder());
+    }
+
+    /**
+     * Creates a new {@link UdpGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is listening
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     * @param encoder         encodes datapoints in the protocol the server
+     *                        expects on {@code port}
+     */
+    public UdpGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix, MetricPredicate predicate, GraphiteEncoder encoder) {
+        this(metricsRegistry, host, port, prefix, predicate, encoder, DEFAULT_PACKET_SIZE);
+    }
+
+    /**
+     * Creates a new {@link UdpGraphiteReporter}.
+     *
+     * @param metricsRegistry the metrics registry
+     * @param host            is graphite server
+     * @param port            is port on which graphite server is listening
+     * @param prefix          is prepended to all names reported to graphite
+     * @param predicate       filters metrics to be reported
+     * @param encoder         encodes datapoints in the protocol the server
+     *                        expects on {@code port}
+     * @param packetSize      the largest datagram to send, in bytes
+     */
+    public UdpGraphiteReporter(MetricsRegistry metricsRegistry, String host, int port, String prefix, MetricPredicate predicate, GraphiteEncoder encoder, int packetSize) {
+        super(metricsRegistry, "udp-graphite-reporter", prefix, predicate, encoder, packetSize);
+        this.host = host;
+        this.port = port;
+    }
+
+    /**
+     * Returns the number of datagrams sent.
+     *
+     * @return the number of datagrams sent
+     */
+    public long getPacketsSent() {
+        return packetsSent.get();
+    }
+
+    /**
+     * Returns the number of bytes sent, not counting IP and UDP headers.
+     *
+     * @return the number of bytes sent
+     */
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    /**
+     * Returns the number of datagrams which couldn't be sent, counting each
+     * datapoint too large to fit in a datagram on its own as one.
+     *
+     * @return the number of datagrams dropped
+     */
+    public long getPacketsDropped() {
+        return packetsDropped.get();
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (this) {
+            close();
+        }
+    }
+
+    @Override
+    protected void datapointDropped() {
+        packetsDropped.incrementAndGet();
+    }
+
+    @Override
+    protected void send(ByteBuffer data) {
+        final int size = data.remaining();
+        try {
+            if (channel == null) {
+                channel = DatagramChannel.open();
+                channel.configureBlocking(false);
+            }
+            if (address == null || address.isUnresolved()) {
+                address = new InetSocketAddress(host, port);
+            }
+            if (channel.send(data, address) == size) {
+                packetsSent.incrementAndGet();
+                bytesSent.addAndGet(size);
+            } else {
+                packetsDropped.incrementAndGet();
+            }
+        } catch (UnresolvedAddressException e) {
+            LOG.warn("Unable to resolve {}", host);
+            packetsDropped.incrementAndGet();
+        } catch (IOException e) {
+            LOG.warn("Error sending to Graphite: {}", e.getMessage());
+            packetsDropped.incrementAndGet();
+            close();
+        }
+    }
+
+    private void close() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.error("Error while closing channel:", e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricTags;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.NioGraphiteReporter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+
+public class NioGraphiteReporterTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private ServerSocket server;
+    private NioGraphiteReporter reporter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout(5000);
+        reporter = new NioGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(), "test");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        server.close();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void sendsEveryMetricOverOneConnection() throws Exception {
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(3);
+        registry.newCounter(new MetricName("app", "web", "errors", null, MetricTags.of("status", "500"))).inc();
+
+        reporter.run();
+        reporter.run();
+        final Socket socket = server.accept();
+        reporter.shutdown();
+        final List<String> lines = appLines(socket);
+
+        assertThat("both polls were sent over the same connection",
+                   lines.size(),
+                   is(4));
+
+        assertThat("each metric is written as a line",
+                   lines.get(0),
+                   anyOf(startsWith("test.app.web.requests.count 3 "),
+                         startsWith("test.app.web.errors.count;status=500 1 ")));
+    }
+
+    @Test
+    public void writesTheSameFieldsAsGraphiteReporter() throws Exception {
+        registry.newTimer(new MetricName("app", "web", "latency"), TimeUnit.MILLISECONDS, TimeUnit.SECONDS)
+                .update(10, TimeUnit.MILLISECONDS);
+
+        reporter.run();
+        final Socket socket = server.accept();
+        reporter.shutdown();
+        final List<String> fields = new ArrayList<String>();
+        for (String line : appLines(socket)) {
+            fields.add(line.substring("test.app.web.latency.".length(), line.indexOf(' ')));
+        }
+
+        assertThat("a timer is written as its rates and its snapshot",
+                   fields,
+                   is(Arrays.asList(
+                           "count", "meanRate", "1MinuteRate", "5MinuteRate", "15MinuteRate",
+                           "min", "max", "mean", "stddev", "median", "75percentile", "95percentile",
+                           "98percentile", "99percentile", "999percentile")));
+    }
+
+    @Test
+    public void keepsDataWhileTheServerIsDown() throws Exception {
+        final int port = server.getLocalPort();
+        server.close();
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(3);
+
+        reporter.run();
+
+        assertThat("the poll is kept in the backlog",
+                   reporter.getBacklogBytes(),
+                   is(greaterThan(0)));
+
+        reporter.setMaxBacklog(10);
+        reporter.run();
+
+        assertThat("the backlog doesn't grow past its limit",
+                   reporter.getBacklogBytes(),
+                   is(0));
+
+        server = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout(5000);
+        reporter.setMaxBacklog(NioGraphiteReporter.DEFAULT_MAX_BACKLOG);
+        reporter.run();
+        final int backlog = reporter.getBacklogBytes();
+        Thread.sleep(1100);
+        reporter.run();
+        final Socket socket = server.accept();
+        reporter.shutdown();
+
+        assertThat("the backlog was sent once the server was back",
+                   appLines(socket).size(),
+                   is(2));
+
+        assertThat("the poll before reconnecting was kept too",
+                   backlog,
+                   is(greaterThan(0)));
+    }
+
+    @Test
+    public void keepsDataWhileTheHostCantBeResolved() throws Exception {
+        reporter.shutdown();
+        reporter = new NioGraphiteReporter(registry, "no-such-host.invalid", server.getLocalPort(), "test");
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(3);
+
+        reporter.run();
+        final int firstPoll = reporter.getBacklogBytes();
+
+        assertThat("the poll is kept in the backlog",
+                   firstPoll,
+                   is(greaterThan(0)));
+
+        reporter.run();
+
+        assertThat("the next poll is kept too, rather than written to a half-open connection",
+                   reporter.getBacklogBytes(),
+                   is(greaterThan(firstPoll)));
+    }
+
+    private static List<String> appLines(Socket socket) throws Exception {
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+        final List<String> lines = new ArrayList<String>();
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("test.app.")) {
+                    lines.add(line);
+                }
+            }
+        } finally {
+            socket.close();
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,251 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricTags;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.NioGraphiteReporter;
+import com.yammer.metrics.reporting.PickleGraphiteEncoder;
+import com.yammer.metrics.util.MetricPredicate;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PickleGraphiteEncoderTest {
+    private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+    @Test
+    public void writesAFrameOfDatapoints() throws Exception {
+        final PickleGraphiteEncoder encoder = new PickleGraphiteEncoder();
+        encoder.encode(buffer, bytes("app.requests"), bytes(".count"), bytes(";status=200"), 12345L, 1300000000L);
+        encoder.encode(buffer, bytes("app.latency"), bytes(".mean"), bytes(""), 1.5, 1300000000L);
+        encoder.encode(buffer, bytes("app.version"), bytes(".value"), bytes(""), "3", 1300000000L);
+        encoder.finish(buffer);
+
+        final List<List<Object[]>> frames = Receiver.read(contents());
+
+        assertThat("the datapoints are sent in one frame",
+                   frames.size(),
+                   is(1));
+
+        assertThat("each datapoint is a (path, (timestamp, value)) tuple",
+                   toStrings(frames.get(0)),
+                   is(Arrays.asList("app.requests.count;status=200 1300000000 12345.0",
+                                    "app.latency.mean 1300000000 1.5",
+                                    "app.version.value 1300000000 3")));
+    }
+
+    @Test
+    public void startsANewFrameWhenABatchIsFull() throws Exception {
+        final PickleGraphiteEncoder encoder = new PickleGraphiteEncoder(2);
+        for (int i = 0; i < 5; i++) {
+            encoder.encode(buffer, bytes("app.a"), bytes(""), bytes(""), (long) i, 1L);
+        }
+        encoder.finish(buffer);
+
+        final List<List<Object[]>> frames = Receiver.read(contents());
+
+        assertThat("the datapoints are split into frames of at most two",
+                   frames.size(),
+                   is(3));
+
+        assertThat("the last frame holds the rest",
+                   toStrings(frames.get(2)),
+                   is(Arrays.asList("app.a 1 4.0")));
+    }
+
+    @Test
+    public void leavesRoomToFinishTheFrame() throws Exception {
+        final ByteBuffer small = ByteBuffer.allocate(64);
+        final PickleGraphiteEncoder encoder = new PickleGraphiteEncoder();
+        int written = 0;
+        while (encoder.encode(small, bytes("app.a"), bytes(".count"), bytes(""), 1L, 1L)) {
+            written++;
+        }
+        encoder.finish(small);
+        small.flip();
+        final byte[] frame = new byte[small.remaining()];
+        small.get(frame);
+
+        assertThat("every datapoint which fit is in a complete frame",
+                   Receiver.read(frame).get(0).size(),
+                   is(written));
+    }
+
+    @Test
+    public void writesLargeTimestampsAsLongs() throws Exception {
+        final PickleGraphiteEncoder encoder = new PickleGraphiteEncoder();
+        encoder.encode(buffer, bytes("app.a"), bytes(""), bytes(""), 1.0, 1L << 40);
+        encoder.finish(buffer);
+
+        assertThat("the timestamp is decoded intact",
+                   toStrings(Receiver.read(contents()).get(0)),
+                   is(Arrays.asList("app.a " + (1L << 40) + " 1.0")));
+    }
+
+    @Test
+    public void aReporterSendsFramesToAPickleReceiver() throws Exception {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final ServerSocket server = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout(5000);
+        final NioGraphiteReporter reporter = new NioGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(),
+                                                                     "test", MetricPredicate.ALL,
+                                                                     new PickleGraphiteEncoder(10));
+        try {
+            for (int i = 0; i < 100; i++) {
+                registry.newCounter(new MetricName("app", "web", "requests" + i, null,
+                                                   MetricTags.of("node", "a"))).inc(i);
+            }
+
+            reporter.run();
+            final Socket socket = server.accept();
+            reporter.shutdown();
+            final List<String> datapoints = new ArrayList<String>();
+            for (List<Object[]> frame : Receiver.read(socket.getInputStream())) {
+                assertThat("no frame is larger than the batch size",
+                           frame.size() <= 10,
+                           is(true));
+                for (String datapoint : toStrings(frame)) {
+                    if (datapoint.startsWith("test.app.")) {
+                        datapoints.add(datapoint);
+                    }
+                }
+            }
+            socket.close();
+
+            assertThat("every counter was received",
+                       datapoints.size(),
+                       is(100));
+
+            assertThat("the paths are the same as in the plaintext protocol",
+                       datapoints.contains("test.app.web.requests7.count;node=a " +
+                                           datapoints.get(0).split(" ")[1] + " 7.0"),
+                       is(true));
+        } finally {
+            reporter.shutdown();
+            server.close();
+            registry.threadPools().shutdownThreadPools();
+        }
+    }
+
+    private byte[] contents() {
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static byte[] bytes(String s) throws Exception {
+        return s.getBytes("UTF-8");
+    }
+
+    private static List<String> toStrings(List<Object[]> datapoints) {
+        final List<String> strings = new ArrayList<String>();
+        for (Object[] datapoint : datapoints) {
+            strings.add(datapoint[0] + " " + datapoint[1] + " " + datapoint[2]);
+        }
+        return strings;
+    }
+
+    /**
+     * Reads frames as carbon's pickle receiver does, understanding just the
+     * opcodes a list of (path, (timestamp, value)) tuples needs.
+     */
+    private static class Receiver {
+        static List<List<Object[]>> read(byte[] bytes) throws IOException {
+            return read(new ByteArrayInputStream(bytes));
+        }
+
+        static List<List<Object[]>> read(InputStream stream) throws IOException {
+            final DataInputStream in = new DataInputStream(stream);
+            final List<List<Object[]>> frames = new ArrayList<List<Object[]>>();
+            while (true) {
+                final int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    return frames;
+                }
+                final byte[] frame = new byte[length];
+                in.readFully(frame);
+                frames.add(unpickle(ByteBuffer.wrap(frame)));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static List<Object[]> unpickle(ByteBuffer frame) throws IOException {
+            final LinkedList<Object> stack = new LinkedList<Object>();
+            final Object mark = new Object();
+            while (true) {
+                final byte opcode = frame.get();
+                switch (opcode) {
+                    case (byte) 0x80:
+                        frame.get();
+                        break;
+                    case ']':
+                        stack.push(new ArrayList<Object[]>());
+                        break;
+                    case '(':
+                        stack.push(mark);
+                        break;
+                    case 'X':
+                        final byte[] string = new byte[frame.order(ByteOrder.LITTLE_ENDIAN).getInt()];
+                        frame.order(ByteOrder.BIG_ENDIAN).get(string);
+                        stack.push(new String(string, "UTF-8"));
+                        break;
+                    case 'J':
+                        stack.push((long) frame.order(ByteOrder.LITTLE_ENDIAN).getInt());
+                        frame.order(ByteOrder.BIG_ENDIAN);
+                        break;
+                    case (byte) 0x8a:
+                        final int size = frame.get();
+                        long value = 0;
+                        for (int i = 0; i < size; i++) {
+                            value |= (frame.get() & 0xffL) << (8 * i);
+                        }
+                        stack.push(value);
+                        break;
+                    case 'G':
+                        stack.push(frame.getDouble());
+                        break;
+                    case (byte) 0x86:
+                        final Object second = stack.pop();
+                        final Object first = stack.pop();
+                        stack.push(new Object[]{first, second});
+                        break;
+                    case 'e':
+                        final LinkedList<Object[]> items = new LinkedList<Object[]>();
+                        while (stack.peek() != mark) {
+                            items.addFirst((Object[]) stack.pop());
+                        }
+                        stack.pop();
+                        final List<Object[]> list = (List<Object[]>) stack.peek();
+                        for (Object[] item : items) {
+                            final Object[] datapoint = (Object[]) item[1];
+                            list.add(new Object[]{item[0], datapoint[0], datapoint[1]});
+                        }
+                        break;
+                    case '.':
+                        if (frame.hasRemaining()) {
+                            throw new IOException("data after STOP");
+                        }
+                        return (List<Object[]>) stack.pop();
+                    default:
+                        throw new IOException("unexpected opcode " + opcode);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.reporting.PlaintextGraphiteEncoder;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PlaintextGraphiteEncoderTest {
+    private final PlaintextGraphiteEncoder encoder = new PlaintextGraphiteEncoder();
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    @Test
+    public void writesALineForAnIntegralValue() throws Exception {
+        encoder.encode(buffer, bytes("app.requests"), bytes(".count"), bytes(";status=200"), 12345L, 1300000000L);
+
+        assertThat("the line is in graphite's plaintext format",
+                   contents(),
+                   is("app.requests.count;status=200 12345 1300000000\n"));
+    }
+
+    @Test
+    public void writesIntegralValuesLikeToString() throws Exception {
+        final long[] values = {0, 1, -1, 9, 10, 99, 100, 123456789012L, Long.MAX_VALUE, Long.MIN_VALUE};
+        for (long value : values) {
+            buffer.clear();
+            encoder.encode(buffer, bytes("a"), bytes(""), bytes(""), value, 1L);
+
+            assertThat("the value is written in decimal",
+                       contents(),
+                       is("a " + value + " 1\n"));
+        }
+    }
+
+    @Test
+    public void writesFractionalValuesLikeStringFormat() throws Exception {
+        final double[] values = {0.0, 1.0, -1.0, 0.5, 0.004, 0.006, 1.23456, -99.999, 1234567.891,
+                                 Double.NaN, Double.POSITIVE_INFINITY, 1e20};
+        for (double value : values) {
+            buffer.clear();
+            encoder.encode(buffer, bytes("a"), bytes(""), bytes(""), value, 1L);
+
+            assertThat("the value is rounded to two decimal places",
+                       contents(),
+                       is("a " + String.format(Locale.US, "%2.2f", value) + " 1\n"));
+        }
+    }
+
+    @Test
+    public void writesPreformattedValues() throws Exception {
+        encoder.encode(buffer, bytes("a"), bytes(".value"), bytes(""), "0.000123", 1L);
+
+        assertThat("the value is written as it is",
+                   contents(),
+                   is("a.value 0.000123 1\n"));
+    }
+
+    @Test
+    public void leavesTheBufferAloneIfTheLineDoesNotFit() throws Exception {
+        final ByteBuffer small = ByteBuffer.allocate(32);
+
+        assertThat("the line doesn't fit",
+                   encoder.encode(small, bytes("app.a.long.metric.name"), bytes(".count"), bytes(""), 1L, 1L),
+                   is(false));
+
+        assertThat("nothing was written",
+                   small.position(),
+                   is(0));
+    }
+
+    private String contents() throws Exception {
+        return new String(buffer.array(), 0, buffer.position(), "UTF-8");
+    }
+
+    private static byte[] bytes(String s) throws Exception {
+        return s.getBytes("UTF-8");
+    }
+}
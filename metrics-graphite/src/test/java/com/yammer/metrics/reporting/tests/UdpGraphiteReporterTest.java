@@ -0,0 +1,180 @@
+package com.yammer.metrics.reporting.tests;
+
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistry;
+import com.yammer.metrics.reporting.StatsdGraphiteEncoder;
+import com.yammer.metrics.reporting.UdpGraphiteReporter;
+import com.yammer.metrics.util.MetricPredicate;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class UdpGraphiteReporterTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private DatagramSocket server;
+    private UdpGraphiteReporter reporter;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new DatagramSocket(0, InetAddress.getByName("127.0.0.1"));
+        server.setSoTimeout(200);
+        server.setReceiveBufferSize(1024 * 1024);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        reporter.shutdown();
+        server.close();
+        registry.threadPools().shutdownThreadPools();
+    }
+
+    @Test
+    public void packsLinesIntoDatagramsNoLargerThanThePacketSize() throws Exception {
+        reporter = new UdpGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(), "test");
+        for (int i = 0; i < 200; i++) {
+            registry.newCounter(new MetricName("app", "web", "requests" + i)).inc(i);
+        }
+
+        reporter.run();
+        final List<String> packets = receive();
+        int lines = 0;
+        for (String packet : packets) {
+            assertThat("no datagram is larger than the packet size",
+                       packet.getBytes("UTF-8").length <= UdpGraphiteReporter.DEFAULT_PACKET_SIZE,
+                       is(true));
+
+            assertThat("every datagram holds whole lines",
+                       packet.endsWith("\n"),
+                       is(true));
+
+            for (String line : packet.split("\n")) {
+                if (line.startsWith("test.app.")) {
+                    lines++;
+                }
+            }
+        }
+
+        assertThat("every counter was sent",
+                   lines,
+                   is(200));
+
+        assertThat("many lines were sent in each datagram",
+                   packets.size() < 20,
+                   is(true));
+
+        assertThat("the datagrams sent are counted",
+                   reporter.getPacketsSent(),
+                   is((long) packets.size()));
+
+        long bytes = 0;
+        for (String packet : packets) {
+            bytes += packet.getBytes("UTF-8").length;
+        }
+
+        assertThat("the bytes sent are counted",
+                   reporter.getBytesSent(),
+                   is(bytes));
+    }
+
+    @Test
+    public void sendsStatsdGauges() throws Exception {
+        reporter = new UdpGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(), "test", MetricPredicate.ALL,
+                                           new StatsdGraphiteEncoder());
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(3);
+        registry.newCounter(new MetricName("app", "web", "balance")).dec(2);
+
+        reporter.run();
+        final List<String> lines = new ArrayList<String>();
+        for (String packet : receive()) {
+            for (String line : packet.split("\n")) {
+                if (line.startsWith("test.app.")) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        assertThat("each field is sent as a gauge, with negative values reset to zero first",
+                   lines.containsAll(Arrays.asList("test.app.web.requests.count:3|g",
+                                                   "test.app.web.balance.count:0|g",
+                                                   "test.app.web.balance.count:-2|g")),
+                   is(true));
+
+        assertThat("nothing else was sent",
+                   lines.size(),
+                   is(3));
+    }
+
+    @Test
+    public void replacesStatsdSeparatorsInPaths() throws Exception {
+        reporter = new UdpGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(), "test", MetricPredicate.ALL,
+                                           new StatsdGraphiteEncoder());
+        registry.newCounter(new MetricName("app", "web", "requests", "host:8080|a\nb")).inc(3);
+
+        reporter.run();
+        final List<String> lines = new ArrayList<String>();
+        for (String packet : receive()) {
+            for (String line : packet.split("\n")) {
+                if (line.startsWith("test.app.")) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        assertThat("colons, pipes and newlines in the path are replaced",
+                   lines,
+                   is(Arrays.asList("test.app.web.host_8080_a_b.requests.count:3|g")));
+    }
+
+    @Test
+    public void countsDatapointsTooLargeForADatagramAsDropped() throws Exception {
+        reporter = new UdpGraphiteReporter(registry, "127.0.0.1", server.getLocalPort(), "test", MetricPredicate.ALL,
+                                           new StatsdGraphiteEncoder(), 256);
+        final char[] name = new char[300];
+        Arrays.fill(name, 'x');
+        registry.newCounter(new MetricName("app", "web", new String(name))).inc(3);
+        registry.newCounter(new MetricName("app", "web", "requests")).inc(3);
+
+        reporter.run();
+        final List<String> lines = new ArrayList<String>();
+        for (String packet : receive()) {
+            for (String line : packet.split("\n")) {
+                if (line.startsWith("test.app.")) {
+                    lines.add(line);
+                }
+            }
+        }
+
+        assertThat("the other datapoints are still sent",
+                   lines,
+                   is(Arrays.asList("test.app.web.requests.count:3|g")));
+
+        assertThat("the datapoint which doesn't fit is counted as dropped",
+                   reporter.getPacketsDropped(),
+                   is(1L));
+    }
+
+    private List<String> receive() throws Exception {
+        final List<String> packets = new ArrayList<String>();
+        final byte[] buffer = new byte[64 * 1024];
+        while (true) {
+            final DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+            try {
+                server.receive(packet);
+            } catch (SocketTimeoutException e) {
+                return packets;
+            }
+            packets.add(new String(packet.getData(), 0, packet.getLength(), "UTF-8"));
+        }
+    }
+}
@@ -4,8 +4,6 @@ import com.yammer.metrics.core.TimerMetric;
 import org.aopalliance.intercept.MethodInterceptor;
 import org.aopalliance.intercept.MethodInvocation;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * A method interceptor which creates a timer for the declaring class with the
  * given name (or the method's name, if none was provided), and which times
@@ -20,11 +18,11 @@ public class TimedInterceptor implements MethodInterceptor {
 
     @Override
     public Object invoke(MethodInvocation invocation) throws Throwable {
-        final long startTime = System.nanoTime();
+        final long startTick = timer.start();
         try {
             return invocation.proceed();
         } finally {
-            timer.update(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            timer.stop(startTick);
         }
     }
 }
@@ -1,7 +1,6 @@
 package com.yammer.metrics.httpclient;
 
 import com.yammer.metrics.Metrics;
-import com.yammer.metrics.core.TimerContext;
 import com.yammer.metrics.core.TimerMetric;
 import org.apache.http.HttpHost;
 import org.apache.http.HttpRequest;
@@ -42,11 +41,12 @@ public class InstrumentedHttpClient extends DefaultHttpClient {
     @Override
     public <T> T execute(HttpUriRequest request,
                          ResponseHandler<? extends T> responseHandler) throws IOException {
-        final TimerContext context = timer(request).time();
+        final TimerMetric timer = timer(request);
+        final long startTick = timer.start();
         try {
             return super.execute(request, responseHandler);
         } finally {
-            context.stop();
+            timer.stop(startTick);
         }
     }
 
@@ -54,11 +54,12 @@ public class InstrumentedHttpClient extends DefaultHttpClient {
     public <T> T execute(HttpUriRequest request,
                          ResponseHandler<? extends T> responseHandler,
                          HttpContext ctxt) throws IOException {
-        final TimerContext context = timer(request).time();
+        final TimerMetric timer = timer(request);
+        final long startTick = timer.start();
         try {
             return super.execute(request, responseHandler, ctxt);
         } finally {
-            context.stop();
+            timer.stop(startTick);
         }
     }
 
@@ -66,11 +67,12 @@ public class InstrumentedHttpClient extends DefaultHttpClient {
     public <T> T execute(HttpHost target,
                          HttpRequest request,
                          ResponseHandler<? extends T> responseHandler) throws IOException {
-        final TimerContext context = timer(request).time();
+        final TimerMetric timer = timer(request);
+        final long startTick = timer.start();
         try {
             return super.execute(target, request, responseHandler);
         } finally {
-            context.stop();
+            timer.stop(startTick);
         }
     }
 
@@ -79,11 +81,12 @@ public class InstrumentedHttpClient extends DefaultHttpClient {
                          HttpRequest request,
                          ResponseHandler<? extends T> responseHandler,
                          HttpContext ctxt) throws IOException {
-        final TimerContext context = timer(request).time();
+        final TimerMetric timer = timer(request);
+        final long startTick = timer.start();
         try {
             return super.execute(target, request, responseHandler, ctxt);
         } finally {
-            context.stop();
+            timer.stop(startTick);
         }
 
     }
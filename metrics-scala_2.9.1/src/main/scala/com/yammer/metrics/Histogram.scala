@@ -65,6 +65,11 @@ class Histogram(metric: HistogramMetric) {
    */
   def percentiles(percentiles: Double*) = metric.percentiles(percentiles:_*)
 
+  /**
+   * Returns a snapshot of the histogram's sample and statistics.
+   */
+  def snapshot = metric.snapshot
+
   /**
    * Dumps the recoded values in the timer's sample to the given file.
    */
@@ -15,11 +15,11 @@ class Timer(metric: TimerMetric) {
    * Runs f, recording its duration, and returns the result of f.
    */
   def time[A](f: => A): A = {
-    val startTime = System.nanoTime
+    val startTick = metric.start()
     try {
       f
     } finally {
-      metric.update(System.nanoTime - startTime, TimeUnit.NANOSECONDS)
+      metric.stop(startTick)
     }
   }
 
@@ -70,6 +70,11 @@ class Timer(metric: TimerMetric) {
    */
   def percentiles(percentiles: Double*) = metric.percentiles(percentiles: _*)
 
+  /**
+   * Returns a snapshot of the timer's durations.
+   */
+  def snapshot = metric.snapshot
+
   /**
    * Returns the timer's rate unit.
    */
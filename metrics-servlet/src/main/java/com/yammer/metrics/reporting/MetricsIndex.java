@@ -0,0 +1,69 @@
+package com.yammer.metrics.reporting;
+
+import com.yammer.metrics.core.Metric;
+import com.yammer.metrics.core.MetricName;
+import com.yammer.metrics.core.MetricsRegistryListener;
+import com.yammer.metrics.util.MetricPredicate;
+import com.yammer.metrics.util.Utils;
+
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A registry's metrics grouped by group, type and scope and sorted as by
+ * {@link Utils#sortAndFilterMetricNames(Map, MetricPredicate)}, kept up to
+ * date by listening to the registry, so that rendering them doesn't mean
+ * sorting every metric again.
+ */
+class MetricsIndex implements MetricsRegistryListener {
+    private final ConcurrentNavigableMap<String, ConcurrentNavigableMap<MetricName, Metric>> groups =
+            new ConcurrentSkipListMap<String, ConcurrentNavigableMap<MetricName, Metric>>();
+
+    @Override
+    public void onMetricAdded(MetricName name, Metric metric) {
+        if (metric == null) {
+            return;
+        }
+        final String group = groupName(name);
+        synchronized (this) {
+            ConcurrentNavigableMap<MetricName, Metric> metrics = groups.get(group);
+            if (metrics == null) {
+                metrics = new ConcurrentSkipListMap<MetricName, Metric>(Utils.NAME_ORDER);
+                groups.put(group, metrics);
+            }
+            metrics.put(name, metric);
+        }
+    }
+
+    @Override
+    public void onMetricRemoved(MetricName name) {
+        final String group = groupName(name);
+        synchronized (this) {
+            final Map<MetricName, Metric> metrics = groups.get(group);
+            if (metrics != null) {
+                metrics.remove(name);
+                if (metrics.isEmpty()) {
+                    groups.remove(group);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the groups whose names start with the given prefix, or every
+     * group if it is {@code null}, in order. The returned map is a live view.
+     */
+    SortedMap<String, ? extends Map<MetricName, Metric>> groups(String prefix) {
+        if (prefix == null) {
+            return groups;
+        }
+        return groups.subMap(prefix, prefix + Character.MAX_VALUE);
+    }
+
+    private static String groupName(MetricName name) {
+        final String qualifiedTypeName = name.getGroup() + "." + name.getType();
+        return name.hasScope() ? qualifiedTypeName + "." + name.getScope() : qualifiedTypeName;
+    }
+}
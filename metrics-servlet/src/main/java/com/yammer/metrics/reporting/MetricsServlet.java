@@ -6,6 +6,9 @@ import com.yammer.metrics.Metrics;
 import com.yammer.metrics.core.MetricsRegistry;
 import com.yammer.metrics.core.*;
 import com.yammer.metrics.core.HealthCheck.Result;
+import com.yammer.metrics.stats.LogLinearSample;
+import com.yammer.metrics.stats.Snapshot;
+import com.yammer.metrics.util.MetricPredicate;
 import com.yammer.metrics.util.Utils;
 import org.codehaus.jackson.JsonEncoding;
 import org.codehaus.jackson.JsonFactory;
@@ -18,6 +21,8 @@ import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintWriter;
@@ -25,10 +30,28 @@ import java.lang.Thread.State;
 import java.text.MessageFormat;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
 
 import static com.yammer.metrics.core.VirtualMachineMetrics.*;
 
+/**
+ * A servlet which exposes a registry's metrics as JSON, along with a ping,
+ * a thread dump and the results of health checks.
+ * <p/>
+ * By default {@code /metrics} is rendered from scratch for every request.
+ * With a cache TTL set (see {@link #setCacheTtl(long, TimeUnit)} or the
+ * {@code metrics-cache-ttl} init parameter, in milliseconds), metrics are
+ * rendered from an index of the registry's metrics which is kept sorted as
+ * metrics are added and removed, and each distinct response is kept as
+ * UTF-8 bytes for the TTL. Concurrent requests for an expired response wait
+ * for a single render rather than each rendering it. Cached responses carry
+ * an {@code ETag}, and a request whose {@code If-None-Match} header matches
+ * it gets a {@code 304 Not Modified} without a body.
+ */
 public class MetricsServlet extends HttpServlet {
     public static final String ATTR_NAME_METRICS_REGISTRY = MetricsServlet.class.getSimpleName() + ":" + MetricsRegistry.class.getSimpleName();
     public static final String ATTR_NAME_HEALTHCHECK_REGISTRY = MetricsServlet.class.getSimpleName() + ":" + HealthCheckRegistry.class.getSimpleName();
@@ -53,11 +76,16 @@ public class MetricsServlet extends HttpServlet {
     public static final String METRICS_URI = "/metrics";
     public static final String PING_URI = "/ping";
     public static final String THREADS_URI = "/threads";
+    public static final String HISTOGRAMS_URI = "/histograms";
+    private static final int MAX_CACHED_RESPONSES = 64;
     private MetricsRegistry metricsRegistry;
     private HealthCheckRegistry healthCheckRegistry;
     private JsonFactory factory;
-    private String metricsUri, pingUri, threadsUri, healthcheckUri, contextPath;
+    private String metricsUri, pingUri, threadsUri, healthcheckUri, histogramsUri = HISTOGRAMS_URI, contextPath;
     private boolean showJvmMetrics;
+    private volatile long cacheTtl;
+    private MetricsIndex index;
+    private final ConcurrentMap<String, CachedResponse> responses = new ConcurrentHashMap<String, CachedResponse>();
 
     public MetricsServlet() {
         this(new JsonFactory(new ObjectMapper()), HEALTHCHECK_URI, METRICS_URI, PING_URI, THREADS_URI, true);
@@ -115,17 +143,47 @@ public class MetricsServlet extends HttpServlet {
         this.pingUri = getParam(config.getInitParameter("ping-uri"), this.pingUri);
         this.threadsUri = getParam(config.getInitParameter("threads-uri"), this.threadsUri);
         this.healthcheckUri = getParam(config.getInitParameter("healthcheck-uri"), this.healthcheckUri);
+        this.histogramsUri = getParam(config.getInitParameter("histograms-uri"), this.histogramsUri);
         final String showJvmMetricsParam = config.getInitParameter("show-jvm-metrics");
         if (showJvmMetricsParam != null) {
             this.showJvmMetrics = Boolean.parseBoolean(showJvmMetricsParam);
         }
 
+        final String cacheTtlParam = config.getInitParameter("metrics-cache-ttl");
+        if (cacheTtlParam != null) {
+            setCacheTtl(Long.parseLong(cacheTtlParam), TimeUnit.MILLISECONDS);
+        }
+
         final Object factory = config.getServletContext().getAttribute(JsonFactory.class.getCanonicalName());
         if (factory != null && factory instanceof JsonFactory) {
             this.factory = (JsonFactory) factory;
         }
     }
 
+    /**
+     * Sets how long a rendered {@code /metrics} response is reused for. A
+     * TTL of zero, the default, renders every response from scratch.
+     *
+     * @param ttl  how long a response is reused for
+     * @param unit the time unit of {@code ttl}
+     */
+    public void setCacheTtl(long ttl, TimeUnit unit) {
+        this.cacheTtl = unit.toNanos(Math.max(0, ttl));
+        responses.clear();
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (this) {
+            if (index != null) {
+                metricsRegistry.removeListener(index);
+                index = null;
+            }
+        }
+        responses.clear();
+        super.destroy();
+    }
+
     private String getParam(String initParam, String defaultValue) {
         return initParam == null ? defaultValue : initParam;
     }
@@ -148,14 +206,23 @@ public class MetricsServlet extends HttpServlet {
         if (uri == null || uri.equals("/")) {
             handleHome(path, resp);
         } else if (uri.startsWith(metricsUri)) {
-            handleMetrics(req.getParameter("class"), Boolean.parseBoolean(req.getParameter("full-samples")), 
-                          Boolean.parseBoolean(req.getParameter("pretty")), resp);
+            final MetricTags tags;
+            try {
+                tags = parseTags(req.getParameterValues("tag"));
+            } catch (IllegalArgumentException e) {
+                resp.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+                return;
+            }
+            handleMetrics(req.getParameter("class"), tags, Boolean.parseBoolean(req.getParameter("full-samples")),
+                          Boolean.parseBoolean(req.getParameter("pretty")), req.getHeader("If-None-Match"), resp);
         } else if (uri.equals(pingUri)) {
             handlePing(resp);
         } else if (uri.equals(threadsUri)) {
             handleThreadDump(resp);
         } else if (uri.equals(healthcheckUri)) {
             handleHealthCheck(resp);
+        } else if (uri.equals(histogramsUri)) {
+            handleHistograms(req.getParameter("class"), resp);
         } else {
             resp.sendError(HttpServletResponse.SC_NOT_FOUND);
         }
@@ -229,34 +296,189 @@ public class MetricsServlet extends HttpServlet {
         writer.close();
     }
 
-    private void handleMetrics(String classPrefix, boolean showFullSamples, boolean pretty, HttpServletResponse resp)
-        throws IOException {
-        resp.setStatus(HttpServletResponse.SC_OK);
+    /**
+     * Parses {@code tag} parameters of the form {@code key:value} (e.g.,
+     * {@code ?tag=endpoint:/search&tag=status:200}), returning {@code null} if
+     * there are none.
+     */
+    private MetricTags parseTags(String[] params) {
+        if (params == null || params.length == 0) {
+            return null;
+        }
+        final Map<String, String> tags = new TreeMap<String, String>();
+        for (String param : params) {
+            final int separator = param.indexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("tags must be given as key:value");
+            }
+            tags.put(param.substring(0, separator), param.substring(separator + 1));
+        }
+        return MetricTags.of(tags);
+    }
+
+    private void handleMetrics(String classPrefix, MetricTags tags, boolean showFullSamples, boolean pretty,
+                               String ifNoneMatch, HttpServletResponse resp) throws IOException {
         resp.setContentType("application/json");
-        final OutputStream output = resp.getOutputStream();
+        if (cacheTtl > 0) {
+            final Rendering rendering = cachedResponse(classPrefix, tags, showFullSamples, pretty);
+            resp.setHeader("Cache-Control", "must-revalidate,no-cache");
+            resp.setHeader("ETag", rendering.etag);
+            if (matches(ifNoneMatch, rendering.etag)) {
+                resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                return;
+            }
+            resp.setStatus(HttpServletResponse.SC_OK);
+            resp.setContentLength(rendering.body.length);
+            final OutputStream output = resp.getOutputStream();
+            output.write(rendering.body);
+            output.close();
+            return;
+        }
+        resp.setStatus(HttpServletResponse.SC_OK);
+        writeMetrics(resp.getOutputStream(), classPrefix, tags, showFullSamples, pretty);
+    }
+
+    /**
+     * Returns the cached response for the given request, rendering it if it
+     * has expired.
+     */
+    private Rendering cachedResponse(String classPrefix, MetricTags tags, boolean showFullSamples, boolean pretty)
+        throws IOException {
+        final String key = classPrefix + '\n' + tags + '\n' + showFullSamples + '\n' + pretty;
+        CachedResponse response = responses.get(key);
+        if (response == null) {
+            if (responses.size() >= MAX_CACHED_RESPONSES) {
+                responses.clear();
+            }
+            final CachedResponse newResponse = new CachedResponse();
+            response = responses.putIfAbsent(key, newResponse);
+            if (response == null) {
+                response = newResponse;
+            }
+        }
+        Rendering rendering = response.rendering;
+        if (rendering == null || System.nanoTime() - rendering.expires >= 0) {
+            synchronized (response) {
+                rendering = response.rendering;
+                if (rendering == null || System.nanoTime() - rendering.expires >= 0) {
+                    final ByteArrayOutputStream bytes =
+                            new ByteArrayOutputStream(rendering == null ? 8192 : rendering.body.length);
+                    writeMetrics(bytes, classPrefix, tags, showFullSamples, pretty);
+                    rendering = new Rendering(bytes.toByteArray(), System.nanoTime() + cacheTtl);
+                    response.rendering = rendering;
+                }
+            }
+        }
+        return rendering;
+    }
+
+    /**
+     * Returns {@code true} if an {@code If-None-Match} header lists the
+     * given entity tag.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized MetricsIndex index() {
+        if (index == null) {
+            index = new MetricsIndex();
+            metricsRegistry.addListener(index);
+        }
+        return index;
+    }
+
+    private void writeMetrics(OutputStream output, String classPrefix, MetricTags tags, boolean showFullSamples, boolean pretty)
+        throws IOException {
         final JsonGenerator json = factory.createJsonGenerator(output, JsonEncoding.UTF8);
         if (pretty) {
             json.useDefaultPrettyPrinter();
         }
         json.writeStartObject();
         {
-            if (showJvmMetrics && ("jvm".equals(classPrefix) || classPrefix == null)) {
+            if (showJvmMetrics && tags == null && ("jvm".equals(classPrefix) || classPrefix == null)) {
                 writeVmMetrics(json, showFullSamples);
             }
 
-            writeRegularMetrics(json, classPrefix, showFullSamples);
+            writeRegularMetrics(json, classPrefix, tags, showFullSamples);
         }
         json.writeEndObject();
         json.close();
     }
 
-    private void writeRegularMetrics(JsonGenerator json, String classPrefix, boolean showFullSamples) throws IOException {
+    /**
+     * Writes the {@link LogLinearSample} of every histogram and timer which
+     * keeps one, so that a collector can merge them exactly across
+     * processes. The response is a stream of:
+     * <pre>
+     * int     the number of entries
+     * entries:
+     *   UTF   the metric's group and type, as in the JSON output
+     *   UTF   the metric's name, as in the JSON output
+     *   byte  0 for a histogram, 1 for a timer (whose values are in nanoseconds)
+     *   the sample, as written by {@link LogLinearSample#writeTo(java.io.DataOutput)}
+     * </pre>
+     */
+    private void handleHistograms(String classPrefix, HttpServletResponse resp) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream entries = new DataOutputStream(bytes);
+        int count = 0;
         for (Entry<String, Map<String, Metric>> entry : Utils.sortMetrics(metricsRegistry.allMetrics()).entrySet()) {
+            if (classPrefix == null || entry.getKey().startsWith(classPrefix)) {
+                for (Entry<String, Metric> subEntry : entry.getValue().entrySet()) {
+                    final Metric metric = subEntry.getValue();
+                    LogLinearSample sample = null;
+                    int kind = 0;
+                    if (metric instanceof HistogramMetric) {
+                        sample = ((HistogramMetric) metric).logLinearSample();
+                    } else if (metric instanceof TimerMetric) {
+                        sample = ((TimerMetric) metric).logLinearSample();
+                        kind = 1;
+                    }
+                    if (sample != null) {
+                        entries.writeUTF(entry.getKey());
+                        entries.writeUTF(subEntry.getKey());
+                        entries.writeByte(kind);
+                        sample.writeTo(entries);
+                        count++;
+                    }
+                }
+            }
+        }
+        entries.flush();
+
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("application/octet-stream");
+        resp.setContentLength(4 + bytes.size());
+        final DataOutputStream output = new DataOutputStream(resp.getOutputStream());
+        output.writeInt(count);
+        bytes.writeTo(output);
+        output.close();
+    }
+
+    private void writeRegularMetrics(JsonGenerator json, String classPrefix, MetricTags tags, boolean showFullSamples) throws IOException {
+        final Map<String, ? extends Map<MetricName, Metric>> groups;
+        if (tags == null && cacheTtl > 0) {
+            groups = index().groups(classPrefix);
+        } else {
+            final Map<MetricName, Metric> metrics = tags == null ? metricsRegistry.allMetrics() : metricsRegistry.taggedMetrics(tags);
+            groups = Utils.sortAndFilterMetricNames(metrics, MetricPredicate.ALL);
+        }
+        for (Entry<String, ? extends Map<MetricName, Metric>> entry : groups.entrySet()) {
             if (classPrefix == null || entry.getKey().startsWith(classPrefix)) {
                 json.writeFieldName(entry.getKey());
                 json.writeStartObject();
                 {
-                    for (Entry<String, Metric> subEntry : entry.getValue().entrySet()) {
+                    for (Entry<MetricName, Metric> subEntry : entry.getValue().entrySet()) {
                         writeMetric(json, subEntry.getKey(), subEntry.getValue(), showFullSamples);
                     }
                 }
@@ -265,35 +487,54 @@ public class MetricsServlet extends HttpServlet {
         }
     }
 
-    private void writeMetric(JsonGenerator json, String key, Metric metric, boolean showFullSamples) throws IOException {
+    private void writeMetric(JsonGenerator json, MetricName name, Metric metric, boolean showFullSamples) throws IOException {
+        // tagged metrics are keyed by name and tags so that metrics which
+        // only differ by their tags don't collide
+        final String key = name.hasTags() ? name.getName() + name.getTags() : name.getName();
+        final MetricTags tags = name.getTags();
         if (metric instanceof GaugeMetric<?>) {
             json.writeFieldName(key);
-            writeGauge(json, (GaugeMetric<?>) metric);
+            writeGauge(json, tags, (GaugeMetric<?>) metric);
         } else if (metric instanceof CounterMetric) {
             json.writeFieldName(key);
-            writeCounter(json, (CounterMetric) metric);
+            writeCounter(json, tags, (CounterMetric) metric);
         } else if (metric instanceof MeterMetric) {
             json.writeFieldName(key);
-            writeMeter(json, (MeterMetric) metric);
+            writeMeter(json, tags, (MeterMetric) metric);
         } else if (metric instanceof HistogramMetric) {
             json.writeFieldName(key);
-            writeHistogram(json, (HistogramMetric) metric, showFullSamples);
+            writeHistogram(json, tags, (HistogramMetric) metric, showFullSamples);
         } else if (metric instanceof TimerMetric) {
             json.writeFieldName(key);
-            writeTimer(json, (TimerMetric) metric, showFullSamples);
+            writeTimer(json, tags, (TimerMetric) metric, showFullSamples);
         }
     }
 
-    private void writeHistogram(JsonGenerator json, HistogramMetric histogram, boolean showFullSamples) throws IOException {
+    private void writeTags(JsonGenerator json, MetricTags tags) throws IOException {
+        if (!tags.isEmpty()) {
+            json.writeFieldName("tags");
+            json.writeStartObject();
+            {
+                for (int i = 0; i < tags.size(); i++) {
+                    json.writeStringField(tags.key(i), tags.value(i));
+                }
+            }
+            json.writeEndObject();
+        }
+    }
+
+    private void writeHistogram(JsonGenerator json, MetricTags tags, HistogramMetric histogram, boolean showFullSamples) throws IOException {
         json.writeStartObject();
         {
             json.writeStringField("type", "histogram");
-            json.writeNumberField("min", histogram.min());
-            json.writeNumberField("max", histogram.max());
-            json.writeNumberField("mean", histogram.mean());
-            json.writeNumberField("std_dev", histogram.stdDev());
-
-            final double[] percentiles = histogram.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+            writeTags(json, tags);
+            final Snapshot snapshot = histogram.snapshot();
+            json.writeNumberField("min", snapshot.min());
+            json.writeNumberField("max", snapshot.max());
+            json.writeNumberField("mean", snapshot.mean());
+            json.writeNumberField("std_dev", snapshot.stdDev());
+
+            final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
             json.writeNumberField("median", percentiles[0]);
             json.writeNumberField("p75", percentiles[1]);
             json.writeNumberField("p95", percentiles[2]);
@@ -308,19 +549,21 @@ public class MetricsServlet extends HttpServlet {
         json.writeEndObject();
     }
 
-    private void writeCounter(JsonGenerator json, CounterMetric counter) throws IOException {
+    private void writeCounter(JsonGenerator json, MetricTags tags, CounterMetric counter) throws IOException {
         json.writeStartObject();
         {
             json.writeStringField("type", "counter");
+            writeTags(json, tags);
             json.writeNumberField("count", counter.count());
         }
         json.writeEndObject();
     }
 
-    private void writeGauge(JsonGenerator json, GaugeMetric<?> gauge) throws IOException {
+    private void writeGauge(JsonGenerator json, MetricTags tags, GaugeMetric<?> gauge) throws IOException {
         json.writeStartObject();
         {
             json.writeStringField("type", "gauge");
+            writeTags(json, tags);
             json.writeFieldName("value");
             try {
                 final Object value = gauge.value();
@@ -395,10 +638,11 @@ public class MetricsServlet extends HttpServlet {
         json.writeEndObject();
     }
 
-    private void writeMeter(JsonGenerator json, MeterMetric meter) throws IOException {
+    private void writeMeter(JsonGenerator json, MetricTags tags, MeterMetric meter) throws IOException {
         json.writeStartObject();
         {
             json.writeStringField("type", "meter");
+            writeTags(json, tags);
             json.writeStringField("event_type", meter.eventType());
             json.writeStringField("unit", meter.rateUnit().toString().toLowerCase());
             json.writeNumberField("count", meter.count());
@@ -410,20 +654,22 @@ public class MetricsServlet extends HttpServlet {
         json.writeEndObject();
     }
 
-    private void writeTimer(JsonGenerator json, TimerMetric timer, boolean showFullSamples) throws IOException {
+    private void writeTimer(JsonGenerator json, MetricTags tags, TimerMetric timer, boolean showFullSamples) throws IOException {
         json.writeStartObject();
         {
             json.writeStringField("type", "timer");
+            writeTags(json, tags);
             json.writeFieldName("duration");
             json.writeStartObject();
             {
                 json.writeStringField("unit", timer.durationUnit().toString().toLowerCase());
-                json.writeNumberField("min", timer.min());
-                json.writeNumberField("max", timer.max());
-                json.writeNumberField("mean", timer.mean());
-                json.writeNumberField("std_dev", timer.stdDev());
+                final Snapshot snapshot = timer.snapshot();
+                json.writeNumberField("min", snapshot.min());
+                json.writeNumberField("max", snapshot.max());
+                json.writeNumberField("mean", snapshot.mean());
+                json.writeNumberField("std_dev", snapshot.stdDev());
 
-                final double[] percentiles = timer.percentiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
+                final double[] percentiles = snapshot.quantiles(0.5, 0.75, 0.95, 0.98, 0.99, 0.999);
                 json.writeNumberField("median", percentiles[0]);
                 json.writeNumberField("p75", percentiles[1]);
                 json.writeNumberField("p95", percentiles[2]);
@@ -451,4 +697,25 @@ public class MetricsServlet extends HttpServlet {
         }
         json.writeEndObject();
     }
+
+    /**
+     * The latest rendering of one distinct {@code /metrics} request.
+     */
+    private static class CachedResponse {
+        volatile Rendering rendering;
+    }
+
+    private static class Rendering {
+        final byte[] body;
+        final String etag;
+        final long expires;
+
+        Rendering(byte[] body, long expires) {
+            this.body = body;
+            this.expires = expires;
+            final CRC32 crc = new CRC32();
+            crc.update(body);
+            this.etag = "\"" + Integer.toHexString(body.length) + "-" + Long.toHexString(crc.getValue()) + "\"";
+        }
+    }
 }